@@ -10,26 +10,24 @@
 package component.BooleanAnd;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+import component.Index.IndexReader;
+import component.Index.PostingsCursor;
+import component.Index.TermDictionary;
 import component.IndexEngine.IndexEngine;
+import component.Primitive.IntList;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.FileInputStream;
 import java.io.FileReader;
-import java.util.Comparator;
 
 public class BooleanAnd {
 
-	@SuppressWarnings({ "unchecked" })
-	public static void main(String[] args) throws ClassNotFoundException, IOException {
+	public static void main(String[] args) throws IOException {
 		if(args.length < 3) {
 			System.out.println("\nThe BooleanAnd program requires three parameters: <path/root_directory_of_index> <path/queries_text_file> <path/write_output_filename>\n"
 					+ "\nThe first parameter is the path to the location holding the set of documents. The second parameter is the path to the queries file. The"
@@ -59,13 +57,10 @@ public class BooleanAnd {
 		
 		try {
 			// Reading in the lexicon and inverted index
-            ObjectInputStream lexiconObject = new ObjectInputStream(new FileInputStream(indexDir + "/lexicon.ser"));
-            ObjectInputStream invertedIndexObject = new ObjectInputStream(new FileInputStream(indexDir + "/invertedIndex.ser"));
-			Map<String, Integer> lexicon = (Map<String, Integer>) lexiconObject.readObject();
-			ArrayList<ArrayList<Integer>> invertedIndex = (ArrayList<ArrayList<Integer>>) invertedIndexObject.readObject();
-            
-            Map <Integer, String> indexMap = new HashMap<>();
-            parseDocIndex(indexDir, indexMap); // Parse index file into a map
+			TermDictionary lexicon = new TermDictionary(indexDir);
+			
+			// Memory-map the postings and DOCNOs
+			IndexReader invertedIndex = new IndexReader(indexDir);
 
 			// Read query file
 			BufferedReader br = new BufferedReader(new FileReader(args[1]));
@@ -84,66 +79,34 @@ public class BooleanAnd {
 				query = br.readLine();
 				queryTokens = IndexEngine.tokenizeText(query); // Breaking query into tokens
 				
-				ArrayList<ArrayList<Integer>> postingsList = new ArrayList<ArrayList<Integer>>(); 
+				ArrayList<PostingsCursor> cursors = new ArrayList<PostingsCursor>(); 
 				
 				boolean isTermFound = true; // Used to flag if a token does not exist in lexicon 
 
 				for (int i = 0; i < queryTokens.size(); i++) {
 					String token = queryTokens.get(i);
-					if(!lexicon.containsKey(token)) {
+					int tokenId = lexicon.getTermId(token);
+					if(tokenId == -1) {
 						isTermFound = false; // Token not found in lexicon
 						break;
 					} else {
-						int tokenId = lexicon.get(token);
-						postingsList.add(invertedIndex.get(tokenId));
+						cursors.add(invertedIndex.getCursor(tokenId));
 					}
 				}
 				
 				
-				if (isTermFound && postingsList.size() > 0) {
-
-					ArrayList<Integer> docSet = new ArrayList<Integer>(); // Stores IDs of docs that have all query tokens
-					
-					if (postingsList.size() > 1) {
-						
-						// Code from https://stackoverflow.com/questions/3477272/java-how-to-sort-list-of-lists-by-their-size
-						// Sorts the array of postings lists from smallest to biggest size
-						Collections.sort(postingsList, new Comparator<ArrayList<Integer>>(){
-						    public int compare(ArrayList<Integer> a1, ArrayList<Integer> a2) {
-						        return a1.size() - a2.size();
-						    }
-						});
-						
-						
-						for (int j = 0; j < postingsList.size(); j++) {
-							// Initial intersect algorithm (using true flag)
-							if (j == 0) {
-								docSet = intersect(postingsList.get(j), postingsList.get(j+1), true);
-								j += 1;
-							} else {
-								docSet = intersect(docSet, postingsList.get(j), false);
-							}
-						}
-
-						
-					} else {
-						// For single query terms, need to strip the term counts
-						ArrayList<Integer> singleQueryResult = postingsList.get(0);
-						for (int i = 0; i < singleQueryResult.size(); i++) {
-							int docId = singleQueryResult.get(i);
-							docSet.add(docId); // Store the doc ids into doc set
-							i += 1;
-						}
-					}
+				if (isTermFound && cursors.size() > 0) {
 
+					// Stores IDs of docs that have all query tokens
+					int[] docSet = intersect(cursors.toArray(new PostingsCursor[cursors.size()]), invertedIndex);
 					
 					// Storing the query's results
 					int rank = 1;
-					for (int k = 0; k < docSet.size(); k ++) {
-						int docId = docSet.get(k);
-						int score = docSet.size() - rank;
+					for (int k = 0; k < docSet.length; k ++) {
+						int docId = docSet[k];
+						int score = docSet.length - rank;
 					
-						String result = topicId + " Q0 " + indexMap.get(docId) + " " + rank + " " + score + " lmtroperAND";
+						String result = topicId + " Q0 " + invertedIndex.getDocno(docId) + " " + rank + " " + score + " lmtroperAND";
 						queryResults.add(result);
 						
 						rank += 1;
@@ -163,9 +126,6 @@ public class BooleanAnd {
 				}
 			}
 			
-			lexiconObject.close();
-			invertedIndexObject.close();
-			
 			br.close();
 			bwResults.close();
 			
@@ -176,70 +136,92 @@ public class BooleanAnd {
 	
 	
 	/*
-	 * The method parses the doc index file to populate a map of internal ids to
-	 * DOCNOs. The code segment is taken from GetDoc.java.
-
-	 * @param dir  		  The file representing the directory location of the index.
-	 * @param indexMap 	  The map holding the mapping between internal ID and DOCNO.
+	 * The method intersects the postings of any number of terms, leaving out deleted documents.
+	 * The rarest term's postings lead: each of its doc IDs is looked up in the other terms'
+	 * postings (in increasing document frequency order), and on a miss the lead skips ahead to
+	 * the doc ID that was found instead. Cursors skip over whole blocks of postings without
+	 * decoding them, so a common term costs about a skip table search per candidate rather
+	 * than a pass over its whole list.
+	 *
+	 * @param cursors		Unpositioned cursors over the postings of each term
+	 * @param index			The index whose deleted documents are left out
+	 * @return An array of the live doc IDs that appeared in every term's postings, in increasing order.
 	 */
-	public static void parseDocIndex(File dir, Map <Integer, String> indexMap) {
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(dir+"/index.txt"));
-			
-			String line;
-			int count = 0;
-			
-			while ((line = br.readLine()) != null) {
-				indexMap.put(count, line);
-				count += 1;
+	public static int[] intersect(PostingsCursor[] cursors, IndexReader index) {
+		PostingsCursor[] byDocFreq = cursors.clone();
+		Arrays.sort(byDocFreq, (c1, c2) -> Integer.compare(c1.docFreq(), c2.docFreq()));
+		PostingsCursor lead = byDocFreq[0];
+		
+		IntList answers = new IntList();
+		int docId = lead.nextDoc();
+		
+		while (docId != PostingsCursor.NO_MORE_DOCS) {
+			int next = docId;
+			for (int k = 1; k < byDocFreq.length && next == docId; k++) {
+				next = byDocFreq[k].advance(docId);
 			}
 			
-			br.close();
-			
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-		}	
+			if (next == docId) {
+				if (!index.isDeleted(docId)) {
+					answers.add(docId);
+				}
+				docId = lead.nextDoc();
+			} else if (next == PostingsCursor.NO_MORE_DOCS) {
+				break; // A term has no more documents
+			} else {
+				docId = lead.advance(next);
+			}
+		}
+		return answers.toArray();
 	}
 	
 	/*
-	 * The method takes two lists and returns a merged list based on common doc IDs. If
-	 * a flag of true is passed, the two array lists passed are posting lists and need to
-	 * be incremented by two's (doc ID, count of term). Otherwise, the first array list 
-	 * represents an array of doc IDs and only needs to be incremented by 1 each loop.
+	 * The method takes two sorted arrays of doc IDs and returns an array of the doc IDs
+	 * common to both.
 	 *
 	 * Algorithm implemented by referencing pseudocode from lecture (Oct 3 2023)
 	 *
-	 * @param p1  		  		A list representing the shorter of the two posting lists.
-	 * @param p2  		  		A list representing the longer of the two posting lists..
-	 * @param initialIntersect 	Boolean to flag for the first intersection
-	 * @return An array of the doc IDs that appeared in both array lists.  
+	 * @param p1  		  		An array representing the shorter of the two lists of doc IDs.
+	 * @param p2  		  		An array representing the longer of the two lists of doc IDs.
+	 * @return An array of the doc IDs that appeared in both arrays.  
 	 */
-	public static ArrayList<Integer> intersect(ArrayList<Integer> p1, ArrayList<Integer> p2, boolean initialIntersect) {
+	public static int[] intersect(int[] p1, int[] p2) {
+		return intersect(p1, p2, null);
+	}
+	
+	/*
+	 * The method intersects two sorted arrays of doc IDs, leaving out deleted documents.
+	 * Deleted documents are only checked when they match, so the cost is a bit test per
+	 * common doc ID.
+	 *
+	 * @param p1  		  		An array representing the shorter of the two lists of doc IDs.
+	 * @param p2  		  		An array representing the longer of the two lists of doc IDs.
+	 * @param index				The index whose deleted documents are left out (or null)
+	 * @return An array of the live doc IDs that appeared in both arrays.  
+	 */
+	public static int[] intersect(int[] p1, int[] p2, IndexReader index) {
+		boolean skipDeleted = index != null && index.hasDeletions();
 		
 		int i = 0;
 		int j = 0;
+		int count = 0;
 		
-		ArrayList<Integer> answers = new ArrayList<Integer>();
-		
-		int increase;
-		if (initialIntersect) {
-			increase = 2;
-		} else {
-			increase = 1;
-		}
+		int[] answers = new int[Math.min(p1.length, p2.length)];
 		
-		while (i != p1.size() && j != p2.size()) {
-			if (p1.get(i).equals(p2.get(j))) {
-				answers.add(p1.get(i));
-				i += increase;
-				j += 2;
-			} else if (p1.get(i) < p2.get(j)) {
-				i += increase;
+		while (i != p1.length && j != p2.length) {
+			if (p1[i] == p2[j]) {
+				if (!skipDeleted || !index.isDeleted(p1[i])) {
+					answers[count++] = p1[i];
+				}
+				i += 1;
+				j += 1;
+			} else if (p1[i] < p2[j]) {
+				i += 1;
 			} else {
-				j += 2;
+				j += 1;
 			}
 		}
-		return answers;
+		return Arrays.copyOf(answers, count);
 	}
 	
 
@@ -0,0 +1,96 @@
+/* Description: This program deletes documents from an index by their DOCNO. The documents are
+ * marked as deleted in their segments' live docs and are skipped by every query program from then
+ * on; their space is reclaimed when their segments are merged, which is done before the program exits
+ * if the merge policy finds a merge.
+ * Input: File path to the index directory and one or more DOCNOs.
+ * Output: A line per DOCNO saying whether it was deleted.
+*/
+
+package component.DeleteDoc;
+
+import component.DocStore.DocStoreReader;
+import component.Index.DocDeleter;
+import component.Index.IndexLock;
+import component.Index.SegmentInfos;
+import component.Merge.MergeScheduler;
+import component.Merge.TieredMergePolicy;
+
+import java.io.File;
+import java.io.IOException;
+
+public class DeleteDoc {
+	
+	public static void main(String[] args) {
+		if(args.length < 2) {
+			System.out.println("\nThe DeleteDoc program requires two parameters: <path/root_directory_of_index> <DOCNO> [<DOCNO> ...]\n"
+					+ "\nThe first parameter is the path to the index directory. The following parameters are the DOCNOs of the documents"
+					+ " to delete. \n");
+			System.exit(1);
+		};
+		
+		File rootDir = new File(args[0]);
+		
+		if (!rootDir.exists() || !SegmentInfos.exists(rootDir)) {
+			System.out.println("\nERROR: " + rootDir + " is not an existing index directory. Please enter an existing index directory\n");
+			System.exit(2);
+		}
+		
+		String[] docnos = new String[args.length - 1];
+		System.arraycopy(args, 1, docnos, 0, docnos.length);
+		
+		int numDeleted = deleteByDocno(rootDir, docnos);
+		
+		// Merging reclaims the deleted documents once enough of a segment is deleted
+		if (numDeleted > 0) {
+			new MergeScheduler(rootDir, new TieredMergePolicy(), MergeScheduler.DEFAULT_MB_PER_SEC, null).merge();
+		}
+		if (numDeleted < docnos.length) {
+			System.exit(5);
+		}
+	}
+	
+	/*
+	 * The method deletes documents by DOCNO and commits the deletions to the index.
+	 * 
+	 * @param rootDir  The file representing the root directory of the index.
+	 * @param docnos   The DOCNOs of the documents to delete.
+	 * @return		   The number of documents deleted.
+	 */
+	public static int deleteByDocno(File rootDir, String[] docnos) {
+		int numDeleted = 0;
+		
+		try {
+			IndexLock lock = IndexLock.obtain(rootDir);
+			try {
+				SegmentInfos segmentInfos = SegmentInfos.read(rootDir);
+				DocStoreReader docStore = new DocStoreReader(rootDir, segmentInfos, 1);
+				DocDeleter deleter = new DocDeleter(rootDir, segmentInfos);
+				
+				for (String docno : docnos) {
+					int id = docStore.getInternalId(docno);
+					
+					if (id == -1 || !deleter.delete(id)) {
+						System.out.println("ERROR: There is no document corresponding to the DOCNO: '" + docno + "'");
+					} else {
+						System.out.println("Deleted " + docno + " (internal id " + id + ")");
+						numDeleted += 1;
+					}
+				}
+				docStore.close();
+				
+				if (numDeleted > 0) {
+					deleter.apply();
+					segmentInfos.deleteObsolete(rootDir);
+					segmentInfos.write(rootDir);
+				}
+			} finally {
+				lock.release();
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+		
+		return numDeleted;
+	}
+
+}
@@ -0,0 +1,55 @@
+package component.DocStore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A small least recently used cache of decompressed document store blocks, so that
+ * fetching several documents from the same block (or the same document repeatedly)
+ * only decompresses the block once. Blocks are keyed by their segment and block number
+ * (see DocStoreReader). Access is synchronized so one reader can be shared by concurrent
+ * queries.
+ */
+public class BlockCache {
+	private final LinkedHashMap<Long, byte[]> blocks;
+	private long hits = 0;
+	private long misses = 0;
+	
+	/*
+	 * @param capacity	The maximum number of decompressed blocks to keep
+	 */
+	public BlockCache(int capacity) {
+		blocks = new LinkedHashMap<Long, byte[]>(capacity * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/*
+	 * Returns the decompressed block, or null if it is not cached.
+	 */
+	public synchronized byte[] get(long blockKey) {
+		byte[] block = blocks.get(blockKey);
+		if (block == null) {
+			misses += 1;
+		} else {
+			hits += 1;
+		}
+		return block;
+	}
+	
+	public synchronized void put(long blockKey, byte[] block) {
+		blocks.put(blockKey, block);
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
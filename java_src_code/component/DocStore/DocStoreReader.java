@@ -0,0 +1,238 @@
+package component.DocStore;
+
+import component.Index.LiveDocs;
+import component.Index.MappedFile;
+import component.Index.SegmentInfo;
+import component.Index.SegmentInfos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * Random access to the stored documents written by DocStoreWriter in each segment of an
+ * index. The offset, block and DOCNO tables are memory-mapped. A document is fetched by
+ * locating its segment and block, reading and decompressing the block with a single
+ * positioned read (unless it is already in the block cache), and slicing the document's
+ * record out of it.
+ */
+public class DocStoreReader {
+	public static final int DEFAULT_CACHE_BLOCKS = 64;
+	
+	private final SegmentStore[] segments;
+	private final BlockCache cache;
+	private final int numDocs;
+	
+	public DocStoreReader(File indexDir) throws IOException {
+		this(indexDir, DEFAULT_CACHE_BLOCKS);
+	}
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param cacheBlocks	The number of decompressed blocks to cache (shared by all segments)
+	 */
+	public DocStoreReader(File indexDir, int cacheBlocks) throws IOException {
+		this(indexDir, SegmentInfos.read(indexDir), cacheBlocks);
+	}
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param segmentInfos	The segments to open (e.g., a snapshot of the segments file)
+	 * @param cacheBlocks	The number of decompressed blocks to cache (shared by all segments)
+	 */
+	public DocStoreReader(File indexDir, SegmentInfos segmentInfos, int cacheBlocks) throws IOException {
+		segments = new SegmentStore[segmentInfos.size()];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new SegmentStore(segmentInfos.get(i), indexDir);
+		}
+		
+		cache = new BlockCache(cacheBlocks);
+		numDocs = segmentInfos.getNumDocs();
+	}
+	
+	public int getNumDocs() {
+		return numDocs;
+	}
+	
+	/*
+	 * The method fetches a document by its internal id.
+	 * 
+	 * @param docId		The internal id of the document
+	 * @return 			The stored document, or null if the id is out of range
+	 */
+	public StoredDocument getDocument(int docId) throws IOException {
+		if (docId < 0 || docId >= numDocs) {
+			return null;
+		}
+		
+		int segmentNumber = findSegment(docId);
+		SegmentStore segment = segments[segmentNumber];
+		
+		long entry = (long) (docId - segment.baseDocId) * DocStoreWriter.OFFSET_ENTRY_SIZE;
+		int blockNumber = segment.offsets.getInt(entry);
+		int start = segment.offsets.getInt(entry + 4);
+		int length = segment.offsets.getInt(entry + 8);
+		
+		byte[] block = getBlock(segmentNumber, blockNumber);
+		int metadataLength = ByteBuffer.wrap(block, start, 4).getInt();
+		String metadata = new String(block, start + 4, metadataLength, StandardCharsets.UTF_8);
+		String content = new String(block, start + 4 + metadataLength, length - 4 - metadataLength, StandardCharsets.UTF_8);
+		
+		return new StoredDocument(metadata, content);
+	}
+	
+	/*
+	 * The method returns a decompressed block, reading it from disk on a cache miss.
+	 * 
+	 * @param segmentNumber		The position of the segment in the segment list
+	 * @param blockNumber		The block's position in the segment's block table
+	 * @return 					The uncompressed bytes of the block
+	 */
+	private byte[] getBlock(int segmentNumber, int blockNumber) throws IOException {
+		long blockKey = ((long) segmentNumber << 32) | blockNumber;
+		byte[] block = cache.get(blockKey);
+		if (block != null) {
+			return block;
+		}
+		
+		SegmentStore segment = segments[segmentNumber];
+		long entry = (long) blockNumber * DocStoreWriter.BLOCK_ENTRY_SIZE;
+		long start = segment.blocks.getLong(entry);
+		int compressedLength = segment.blocks.getInt(entry + 8);
+		int uncompressedLength = segment.blocks.getInt(entry + 12);
+		
+		ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+		while (compressed.hasRemaining()) {
+			if (segment.data.read(compressed, start + compressed.position()) < 0) {
+				throw new IOException("Unexpected end of " + DocStoreWriter.DATA_FILE);
+			}
+		}
+		
+		block = new byte[uncompressedLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array());
+			int n = 0;
+			while (n < uncompressedLength && !inflater.finished()) {
+				n += inflater.inflate(block, n, uncompressedLength - n);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt block " + blockNumber + " in " + DocStoreWriter.DATA_FILE, e);
+		} finally {
+			inflater.end();
+		}
+		
+		cache.put(blockKey, block);
+		return block;
+	}
+	
+	/*
+	 * Returns the cache of decompressed blocks (e.g., to report its hit rate).
+	 */
+	public BlockCache getCache() {
+		return cache;
+	}
+	
+	/*
+	 * The method finds a document's internal id by binary searching the DOCNO lookup
+	 * table of each segment. Deleted documents are not found.
+	 * 
+	 * @param docno		The DOCNO of the document
+	 * @return 			The internal id, or -1 if there is no document with the DOCNO
+	 */
+	public int getInternalId(String docno) {
+		byte[] target = docno.getBytes(StandardCharsets.UTF_8);
+		if (target.length > DocStoreWriter.DOCNO_WIDTH) {
+			return -1;
+		}
+		
+		byte[] entry = new byte[DocStoreWriter.DOCNO_WIDTH];
+		for (SegmentStore segment : segments) {
+			int lo = 0;
+			int hi = segment.numDocs - 1;
+			
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				long pos = (long) mid * DocStoreWriter.DOCNO_ENTRY_SIZE;
+				segment.docnoLookup.getBytes(pos, entry, 0, entry.length);
+				
+				int cmp = DocStoreWriter.compareDocnos(entry, target);
+				if (cmp == 0) {
+					int localId = segment.docnoLookup.getInt(pos + DocStoreWriter.DOCNO_WIDTH);
+					if (segment.liveDocs != null && !segment.liveDocs.isLive(localId)) {
+						break; // Deleted (an updated version may be in a later segment)
+					}
+					return segment.baseDocId + localId;
+				} else if (cmp < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * Returns whether a document has been deleted.
+	 * 
+	 * @param docId		The internal id of the document
+	 */
+	public boolean isDeleted(int docId) {
+		SegmentStore segment = segments[findSegment(docId)];
+		return segment.liveDocs != null && !segment.liveDocs.isLive(docId - segment.baseDocId);
+	}
+	
+	/*
+	 * The method finds the segment holding an internal id by binary searching the base ids.
+	 */
+	private int findSegment(int docId) {
+		int lo = 0;
+		int hi = segments.length - 1;
+		
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (segments[mid].baseDocId <= docId) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+	
+	public void close() throws IOException {
+		for (SegmentStore segment : segments) {
+			segment.data.close();
+		}
+	}
+	
+	/*
+	 * The open files of one segment's document store.
+	 */
+	private static class SegmentStore {
+		final FileChannel data;
+		final MappedFile offsets;
+		final MappedFile blocks;
+		final MappedFile docnoLookup;
+		final LiveDocs liveDocs;
+		final int baseDocId;
+		final int numDocs;
+		
+		SegmentStore(SegmentInfo info, File indexDir) throws IOException {
+			File segmentDir = info.getDir(indexDir);
+			data = FileChannel.open(new File(segmentDir, DocStoreWriter.DATA_FILE).toPath(), StandardOpenOption.READ);
+			offsets = new MappedFile(new File(segmentDir, DocStoreWriter.OFFSETS_FILE));
+			blocks = new MappedFile(new File(segmentDir, DocStoreWriter.BLOCKS_FILE));
+			docnoLookup = new MappedFile(new File(segmentDir, DocStoreWriter.DOCNO_FILE));
+			liveDocs = LiveDocs.read(indexDir, info);
+			baseDocId = info.getBaseDocId();
+			numDocs = (int) (offsets.length() / DocStoreWriter.OFFSET_ENTRY_SIZE);
+		}
+	}
+}
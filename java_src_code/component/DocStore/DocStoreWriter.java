@@ -0,0 +1,174 @@
+package component.DocStore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/*
+ * Writes the stored documents of an index segment as four files:
+ * 
+ * docs.dat			append-only Deflate compressed blocks. Each block holds the records of
+ * 					consecutive documents (an int metadata length, the metadata bytes and the raw
+ * 					document bytes), and is closed once it reaches BLOCK_SIZE uncompressed bytes
+ * docs-blocks.idx	a fixed-width entry per block: long file offset, int compressed length and
+ * 					int uncompressed length
+ * docs.idx			a fixed-width entry per internal id: int block number, int offset of the record
+ * 					within the uncompressed block and int record length
+ * docs-docno.idx	fixed-width (DOCNO, internal id) entries sorted by DOCNO for docno lookups
+ * 
+ * A record never spans blocks, so a document is fetched by decompressing a single block.
+ * Text is encoded as UTF-8.
+ */
+public class DocStoreWriter {
+	public static final String DATA_FILE = "docs.dat";
+	public static final String OFFSETS_FILE = "docs.idx";
+	public static final String BLOCKS_FILE = "docs-blocks.idx";
+	
+	public static final int BLOCK_SIZE = 64 * 1024;
+	public static final int OFFSET_ENTRY_SIZE = 12;
+	public static final int BLOCK_ENTRY_SIZE = 16;
+	public static final String DOCNO_FILE = "docs-docno.idx";
+	
+	public static final int DOCNO_WIDTH = 32;
+	public static final int DOCNO_ENTRY_SIZE = DOCNO_WIDTH + 4;
+	
+	private final File indexDir;
+	private DataOutputStream dataOut;
+	private DataOutputStream offsetsOut;
+	private DataOutputStream blocksOut;
+	private ArrayList<String> docnos = new ArrayList<String>();
+	
+	// Uncompressed contents of the current block
+	private ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+	private DataOutputStream blockOut = new DataOutputStream(block);
+	private int numBlocks = 0;
+	private long offset = 0;
+	
+	private final Deflater deflater = new Deflater();
+	private byte[] compressed = new byte[BLOCK_SIZE];
+	
+	public DocStoreWriter(File indexDir) throws IOException {
+		this.indexDir = indexDir;
+		dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + DATA_FILE), 1 << 16));
+		offsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + OFFSETS_FILE), 1 << 16));
+		blocksOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + BLOCKS_FILE), 1 << 16));
+	}
+	
+	/*
+	 * The method appends the next document (in internal id order) to the store.
+	 * 
+	 * @param docno		The document's DOCNO
+	 * @param metadata	The document's metadata text
+	 * @param content	The document's raw text
+	 */
+	public void addDocument(String docno, String metadata, String content) throws IOException {
+		if (docno.getBytes(StandardCharsets.UTF_8).length > DOCNO_WIDTH) {
+			throw new IOException("DOCNO '" + docno + "' is longer than " + DOCNO_WIDTH + " bytes");
+		}
+		
+		byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+		byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+		
+		offsetsOut.writeInt(numBlocks);
+		offsetsOut.writeInt(block.size());
+		offsetsOut.writeInt(4 + metadataBytes.length + contentBytes.length);
+		
+		blockOut.writeInt(metadataBytes.length);
+		blockOut.write(metadataBytes);
+		blockOut.write(contentBytes);
+		
+		docnos.add(docno);
+		
+		if (block.size() >= BLOCK_SIZE) {
+			flushBlock();
+		}
+	}
+	
+	public void close() throws IOException {
+		if (block.size() > 0) {
+			flushBlock();
+		}
+		deflater.end();
+		
+		offsetsOut.close();
+		blocksOut.close();
+		dataOut.close();
+		writeDocnoLookup();
+	}
+	
+	/*
+	 * The method compresses the current block, appends it to the data file and records
+	 * its entry in the block table.
+	 */
+	private void flushBlock() throws IOException {
+		byte[] uncompressed = block.toByteArray();
+		
+		deflater.reset();
+		deflater.setInput(uncompressed);
+		deflater.finish();
+		
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		
+		dataOut.write(compressed, 0, compressedLength);
+		blocksOut.writeLong(offset);
+		blocksOut.writeInt(compressedLength);
+		blocksOut.writeInt(uncompressed.length);
+		
+		offset += compressedLength;
+		numBlocks += 1;
+		block.reset();
+	}
+	
+	/*
+	 * The method writes the DOCNO lookup table, sorted by DOCNO so it can be binary searched.
+	 */
+	private void writeDocnoLookup() throws IOException {
+		Integer[] ids = new Integer[docnos.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i;
+		}
+		Arrays.sort(ids, (a, b) -> compareDocnos(docnos.get(a).getBytes(StandardCharsets.UTF_8), docnos.get(b).getBytes(StandardCharsets.UTF_8)));
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + DOCNO_FILE), 1 << 16));
+		byte[] entry = new byte[DOCNO_WIDTH];
+		
+		for (int id : ids) {
+			Arrays.fill(entry, (byte) 0);
+			byte[] docno = docnos.get(id).getBytes(StandardCharsets.UTF_8);
+			System.arraycopy(docno, 0, entry, 0, docno.length);
+			out.write(entry);
+			out.writeInt(id);
+		}
+		
+		out.close();
+		docnos = null;
+	}
+	
+	/*
+	 * Compares two zero padded DOCNOs byte by byte (as unsigned values).
+	 */
+	static int compareDocnos(byte[] a, byte[] b) {
+		int length = Math.max(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int x = i < a.length ? a[i] & 0xFF : 0;
+			int y = i < b.length ? b[i] & 0xFF : 0;
+			if (x != y) {
+				return x - y;
+			}
+		}
+		return 0;
+	}
+}
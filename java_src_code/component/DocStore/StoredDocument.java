@@ -0,0 +1,23 @@
+package component.DocStore;
+
+/*
+ * A document fetched from the document store: its metadata (DOCNO, internal id, date and
+ * headline lines) and its raw TREC formatted content.
+ */
+public class StoredDocument {
+	private final String metadata;
+	private final String content;
+	
+	public StoredDocument(String metadata, String content) {
+		this.metadata = metadata;
+		this.content = content;
+	}
+	
+	public String getMetadata() {
+		return metadata;
+	}
+	
+	public String getContent() {
+		return content;
+	}
+}
@@ -9,12 +9,13 @@
 
 package component.GetDoc;
 
+import component.DocStore.DocStoreReader;
+import component.DocStore.StoredDocument;
+
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.StringReader;
 
 public class GetDoc {
 
@@ -53,34 +54,29 @@ public class GetDoc {
 	}
 	
 	/*
-	 * The method uses the index mapping within the root directory to find the docno
-	 * of a document corresponding with an internal id. 
+	 * The method fetches a document's metadata and contents from the document store by its
+	 * internal id and outputs the data. Internal ids change when deleted documents are merged
+	 * away, so the store is opened over the current segments and released once the document
+	 * is read.
 	 * 
 	 * @param rootDir  The file representing the root directory of the document set.
 	 * @param id  	   An integer value representing the internal id of a document.
 	 */
 	public static void getDocnoById(File rootDir, int id) {
 		try {
-			// Parse the index mapping file into a dictionary
-			BufferedReader br = new BufferedReader(new FileReader(rootDir+"/index.txt"));
-			
-			Map <Integer, String> indexMap = new HashMap<>(); 
-			String line;
-			int count = 0;
-			
-			while ((line = br.readLine()) != null) {
-				indexMap.put(count, line);
-				count += 1;
-				
-			}
-						
-			if (!indexMap.containsKey(id)) {
-				System.out.println("\nERROR: There is no document corresponding to the provided internal id: " + id + "\n");
-				System.exit(5);
+			DocStoreReader docStore = new DocStoreReader(rootDir, 1); // A single document is read
+			StoredDocument doc;
+			try {
+				if (id < 0 || id >= docStore.getNumDocs() || docStore.isDeleted(id)) {
+					System.out.println("\nERROR: There is no document corresponding to the provided internal id: " + id + "\n");
+					System.exit(5);
+				}
+				doc = docStore.getDocument(id);
+			} finally {
+				docStore.close();
 			}
 			
-			getDataByDocno(rootDir, indexMap.get(id));
-			br.close();
+			printDocument(doc, id);
 			
 		} catch (IOException e) {
 			System.err.println(e.getMessage());
@@ -90,7 +86,7 @@ public class GetDoc {
 	
 	/*
 	 * The method uses a document's docno to fetch the document's metadata and contents
-	 * within the root directory and outputs the data.
+	 * from the document store within the root directory and outputs the data.
 	 * 
 	 * @param rootDir  The file representing the root directory of the document set.
 	 * @param docno    A string representing the docno of a unique document in the set.
@@ -103,40 +99,50 @@ public class GetDoc {
 				System.exit(6);
 			}
 			
-			String month = docno.substring(2,4);
-			String day = docno.substring(4,6);
-			String year = docno.substring(6,8);
-			
-			String basePath = rootDir+"/"+year+"/"+month+"/"+day+"/"; // Document parent directory 
+			DocStoreReader docStore = new DocStoreReader(rootDir);
+			int id = docStore.getInternalId(docno);
 			
-			if (!new File(basePath+docno+".txt").exists() 
-					|| !new File(basePath+docno+"-metadata.txt").exists()) {
+			if (id == -1) {
 				System.out.println("\nERROR: There is no document corresponding to the DOCNO: '" + docno + "'\n");
 				System.exit(5);
 			}
 			
-			BufferedReader brMeta = new BufferedReader(new FileReader(basePath+docno+"-metadata.txt"));
-			
-			String line;
-			while((line = brMeta.readLine()) != null){
-				System.out.println(line); // Print out metadata
-			}
-			
-			brMeta.close();
-			
-			BufferedReader brDoc = new BufferedReader(new FileReader(basePath+docno+".txt"));
-			
-			System.out.println("raw document:");
-			
-			while((line = brDoc.readLine()) != null){
-				System.out.println(line); // Print out document content
-			}
+			StoredDocument doc = docStore.getDocument(id);
+			docStore.close();
 			
-			brDoc.close();
+			printDocument(doc, id);
 			
 		} catch (IOException e) {
 			System.err.println(e.getMessage());
 		}
 	}
+	
+	/*
+	 * The method outputs a stored document's metadata and contents. It is shared with
+	 * programs that keep the document store open (e.g., Retrieval), so showing a document
+	 * does not reopen the store.
+	 * 
+	 * @param doc	The stored document
+	 * @param id	The document's current internal id
+	 */
+	public static void printDocument(StoredDocument doc, int id) throws IOException {
+		BufferedReader brMeta = new BufferedReader(new StringReader(doc.getMetadata()));
+		
+		String line;
+		while((line = brMeta.readLine()) != null){
+			if (line.startsWith("internal id: ")) {
+				line = "internal id: " + id; // The stored id is out of date once earlier deletions are merged away
+			}
+			System.out.println(line); // Print out metadata
+		}
+		
+		BufferedReader brDoc = new BufferedReader(new StringReader(doc.getContent()));
+		
+		System.out.println("raw document:");
+		
+		while((line = brDoc.readLine()) != null){
+			System.out.println(line); // Print out document content
+		}
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,299 @@
+package component.ImpactEval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import component.Index.IndexReader;
+import component.Index.PostingsList;
+import component.Index.PostingsWriter;
+import component.Index.TermDictionary;
+import component.IndexEngine.IndexEngine;
+import component.Proximity.ProximityQuery;
+import component.Ranking.BM25Ranking;
+import component.Ranking.ImpactScorer;
+import component.Ranking.ScoreAccumulator;
+import component.Ranking.TopKHeap;
+import component.Stemmer.PorterStemmer;
+
+/*
+ * Measures how much quantizing the BM25 term frequency components to impacts of a given number
+ * of bits changes the rankings, so the precision of an index built with 'impacts=bits' can be
+ * chosen before building it. Each query of a queries file is ranked with exact BM25, and again
+ * with each number of bits: the postings' impacts are quantized at query time (normalized with
+ * the collection's average document length), and if the index stores impacts, its stored
+ * impacts are compared as well.
+ * 
+ * For each number of bits, the program prints the averages over the queries of the share of
+ * the exact top 10 and top k found in the quantized top 10 and top k, the share of queries whose
+ * top 10 is ranked exactly the same, and the absolute difference between the quantized and exact
+ * scores of the exact top k.
+ * 
+ * Phrases and proximity windows are ranked as their separate terms.
+ */
+public class ImpactEval {
+	// The numbers of bits compared by default
+	private static final int[] DEFAULT_BITS = { 4, 6, 8, 10, 12, 16 };
+	
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("\nThe ImpactEval program requires two parameters: <path/root_directory_of_index> <path/queries_text_file> <stem> <k=n> <bits=list>\n"
+					+ "\nThe first parameter is the path to the index. The second parameter is the path to the queries file (a topic id line followed"
+					+ " by a query line, as for the BM25 program). The optional argument 'stem' applies Porter Stemming to the query terms, for an"
+					+ " index built with 'stem'. The optional argument 'k=n' sets the number of results compared for each query (defaults to 1000)."
+					+ " The optional argument 'bits=list' sets the comma separated numbers of bits to compare (defaults to 4,6,8,10,12,16).\n");
+			System.exit(1);
+		}
+		
+		File indexDir = new File(args[0]);
+		File queryFile = new File(args[1]);
+		
+		if (!indexDir.exists()) {
+			System.out.println("\nERROR: " + indexDir + " does not exist. Please enter an existing index directory\n");
+			System.exit(2);
+		}
+		
+		if (!queryFile.exists()) {
+			System.out.println("\nERROR: " + queryFile + " does not exist. Please enter an existing file\n");
+			System.exit(3);
+		}
+		
+		boolean stem = false;
+		int k = 1000;
+		int[] levels = DEFAULT_BITS;
+		
+		for (int i = 2; i < args.length; i++) {
+			String option = args[i].toLowerCase();
+			if (option.equals("stem")) {
+				stem = true;
+			} else if (option.startsWith("k=")) {
+				try {
+					k = Integer.parseInt(option.substring("k=".length()));
+				} catch (NumberFormatException e) {
+					k = 0;
+				}
+				if (k < 1) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid number of results. Please provide a positive integer (e.g., k=1000).\n");
+					System.exit(4);
+				}
+			} else if (option.startsWith("bits=")) {
+				String[] values = option.substring("bits=".length()).split(",");
+				levels = new int[values.length];
+				for (int j = 0; j < values.length; j++) {
+					try {
+						levels[j] = Integer.parseInt(values[j].trim());
+					} catch (NumberFormatException e) {
+						levels[j] = 0;
+					}
+					if (levels[j] < 1 || levels[j] > PostingsWriter.MAX_IMPACT_BITS) {
+						System.out.println("\nERROR: '" + args[i] + "' is not a valid list of bits. Please provide numbers from 1 to "
+								+ PostingsWriter.MAX_IMPACT_BITS + " (e.g., bits=8,16).\n");
+						System.exit(4);
+					}
+				}
+			} else {
+				System.out.println("\nERROR: '" + args[i] + "' is not a valid option. Valid options are 'stem', 'k=<n>' and 'bits=<list>'.\n");
+				System.exit(4);
+			}
+		}
+		
+		try {
+			TermDictionary lexicon = new TermDictionary(indexDir);
+			IndexReader index = new IndexReader(indexDir);
+			
+			// The levels quantized at query time, then the index's stored impacts (if any)
+			int storedBits = index.getImpactBits();
+			int numLevels = levels.length + (storedBits > 0 ? 1 : 0);
+			Agreement[] agreements = new Agreement[numLevels];
+			for (int i = 0; i < numLevels; i++) {
+				agreements[i] = new Agreement();
+			}
+			
+			BufferedReader br = new BufferedReader(new FileReader(queryFile));
+			String line;
+			int numQueries = 0;
+			
+			while ((line = br.readLine()) != null) {
+				String query = br.readLine();
+				if (query == null) {
+					break;
+				}
+				
+				ArrayList<Integer> termIds = getTermIds(query, stem, lexicon);
+				ArrayList<PostingsList> postings = new ArrayList<PostingsList>();
+				for (int termId : termIds) {
+					postings.add(index.getPostings(termId));
+				}
+				
+				// Exact BM25 (the accumulators are reused by each ranking, so the results are kept first)
+				ScoreAccumulator docScores = ScoreAccumulator.get(index.getNumDocs());
+				for (PostingsList termPostings : postings) {
+					BM25Ranking.termAtATime(docScores, termPostings, index);
+				}
+				TopKHeap exact = docScores.topK(k);
+				if (exact.size() == 0) {
+					continue;
+				}
+				numQueries += 1;
+				
+				for (int i = 0; i < numLevels; i++) {
+					ImpactScorer scorer;
+					if (i < levels.length) {
+						scorer = new ImpactScorer(index, levels[i]);
+						for (PostingsList termPostings : postings) {
+							scorer.addImpacts(termPostings, quantize(termPostings, levels[i], index));
+						}
+					} else {
+						scorer = new ImpactScorer(index);
+						for (int termId : termIds) {
+							scorer.addTerm(termId);
+						}
+					}
+					agreements[i].add(exact, scorer, k);
+				}
+			}
+			br.close();
+			
+			System.out.println("Quantized impacts compared to exact BM25 over " + numQueries + " queries (top " + k + "):");
+			System.out.println(String.format("%-12s %14s %12s %12s %12s %14s", "bits", "bytes/posting", "overlap@10", "overlap@" + k, "same top 10", "score error"));
+			for (int i = 0; i < numLevels; i++) {
+				int bits = i < levels.length ? levels[i] : storedBits;
+				String label = i < levels.length ? Integer.toString(bits) : bits + " (index)";
+				System.out.println(String.format("%-12s %14d %12.4f %12.4f %12.4f %14.6f", label, PostingsWriter.getImpactSize(bits),
+						agreements[i].getOverlap10(numQueries), agreements[i].getOverlapK(numQueries), agreements[i].getSameTop10(numQueries),
+						agreements[i].getScoreError()));
+			}
+		
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+	
+	/*
+	 * Returns the term ids of a query's terms that are in the lexicon, as the BM25 program
+	 * finds them for an index without positions.
+	 */
+	private static ArrayList<Integer> getTermIds(String query, boolean stem, TermDictionary lexicon) {
+		ArrayList<Integer> termIds = new ArrayList<Integer>();
+		ArrayList<ProximityQuery> operators = new ArrayList<ProximityQuery>();
+		ArrayList<String> tokens = IndexEngine.tokenizeText(ProximityQuery.parse(query, stem, operators));
+		
+		for (ProximityQuery operator : operators) {
+			for (String term : operator.getTerms()) {
+				int termId = lexicon.getTermId(term);
+				if (termId != -1) {
+					termIds.add(termId);
+				}
+			}
+		}
+		for (String token : tokens) {
+			int termId = lexicon.getTermId(stem ? PorterStemmer.stem(token) : token);
+			if (termId != -1) {
+				termIds.add(termId);
+			}
+		}
+		return termIds;
+	}
+	
+	/*
+	 * Returns the impacts of a term's postings quantized to a number of bits, as PostingsWriter
+	 * would store them for a single segment holding the whole collection.
+	 */
+	private static int[] quantize(PostingsList postings, int bits, IndexReader index) {
+		double averageDocLength = index.getAverageDocLength();
+		int[] impacts = new int[postings.size()];
+		for (int i = 0; i < postings.size(); i++) {
+			float impact = PostingsWriter.getImpact(postings.getFreq(i), index.getDocLength(postings.getDocId(i)), averageDocLength);
+			impacts[i] = PostingsWriter.quantizeImpact(impact, bits);
+		}
+		return impacts;
+	}
+	
+	/*
+	 * The summed agreement of one number of bits' rankings with the exact rankings.
+	 */
+	private static class Agreement {
+		private double overlap10 = 0;
+		private double overlapK = 0;
+		private int sameTop10 = 0;
+		private double scoreError = 0;
+		private long numScores = 0;
+		
+		/*
+		 * The method compares a query's quantized ranking to its exact ranking.
+		 * 
+		 * @param exact		The exact top k
+		 * @param scorer	The scorer holding the query's quantized scores
+		 * @param k			The number of results compared
+		 */
+		void add(TopKHeap exact, ImpactScorer scorer, int k) {
+			TopKHeap quantized = scorer.topK(k);
+			
+			overlap10 += overlap(exact, quantized, 10);
+			overlapK += overlap(exact, quantized, k);
+			
+			boolean same = Math.min(exact.size(), 10) == Math.min(quantized.size(), 10);
+			for (int i = 0; same && i < Math.min(exact.size(), 10); i++) {
+				same = exact.getDocId(i) == quantized.getDocId(i);
+			}
+			if (same) {
+				sameTop10 += 1;
+			}
+			
+			for (int i = 0; i < exact.size(); i++) {
+				scoreError += Math.abs(scorer.getScore(exact.getDocId(i)) - exact.getScore(i));
+			}
+			numScores += exact.size();
+		}
+		
+		/*
+		 * Returns the share of the exact top n that is in the quantized top n.
+		 */
+		private static double overlap(TopKHeap exact, TopKHeap quantized, int n) {
+			int[] exactIds = getDocIds(exact, n);
+			int[] quantizedIds = getDocIds(quantized, n);
+			int found = 0;
+			int j = 0;
+			for (int i = 0; i < exactIds.length; i++) {
+				while (j < quantizedIds.length && quantizedIds[j] < exactIds[i]) {
+					j++;
+				}
+				if (j < quantizedIds.length && quantizedIds[j] == exactIds[i]) {
+					found += 1;
+				}
+			}
+			return (double) found / exactIds.length;
+		}
+		
+		/*
+		 * Returns the doc ids of the top n results, in increasing order.
+		 */
+		private static int[] getDocIds(TopKHeap top, int n) {
+			int[] docIds = new int[Math.min(top.size(), n)];
+			for (int i = 0; i < docIds.length; i++) {
+				docIds[i] = top.getDocId(i);
+			}
+			Arrays.sort(docIds);
+			return docIds;
+		}
+		
+		double getOverlap10(int numQueries) {
+			return numQueries == 0 ? 0 : overlap10 / numQueries;
+		}
+		
+		double getOverlapK(int numQueries) {
+			return numQueries == 0 ? 0 : overlapK / numQueries;
+		}
+		
+		double getSameTop10(int numQueries) {
+			return numQueries == 0 ? 0 : (double) sameTop10 / numQueries;
+		}
+		
+		double getScoreError() {
+			return numScores == 0 ? 0 : scoreError / numScores;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/*
+ * Deletes documents from an index by internal id. Deletions are buffered per segment and
+ * apply writes them as new generations of the segments' live docs files and updates the
+ * segment list in memory. The caller must hold the IndexLock from reading the segment list
+ * until it has written the updated list, which is what makes the deletions visible.
+ */
+public class DocDeleter {
+	private final File indexDir;
+	private final SegmentInfos segmentInfos;
+	private final HashMap<Integer, LiveDocs> liveDocs = new HashMap<Integer, LiveDocs>();
+	private final HashSet<Integer> changed = new HashSet<Integer>();
+	private int numDeleted = 0;
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param segmentInfos	The index's current segments (updated by apply)
+	 */
+	public DocDeleter(File indexDir, SegmentInfos segmentInfos) {
+		this.indexDir = indexDir;
+		this.segmentInfos = segmentInfos;
+	}
+	
+	/*
+	 * The method marks a document as deleted.
+	 * 
+	 * @param docId		The internal id of the document
+	 * @return			Whether the document existed and was not already deleted
+	 */
+	public boolean delete(int docId) throws IOException {
+		if (docId < 0 || docId >= segmentInfos.getNumDocs()) {
+			return false;
+		}
+		
+		int segmentNumber = segmentInfos.findSegment(docId);
+		SegmentInfo segment = segmentInfos.get(segmentNumber);
+		
+		LiveDocs segmentLiveDocs = liveDocs.get(segmentNumber);
+		if (segmentLiveDocs == null) {
+			segmentLiveDocs = LiveDocs.read(indexDir, segment);
+			if (segmentLiveDocs == null) {
+				segmentLiveDocs = new LiveDocs(segment.getNumDocs());
+			}
+			liveDocs.put(segmentNumber, segmentLiveDocs);
+		}
+		
+		if (!segmentLiveDocs.delete(docId - segment.getBaseDocId())) {
+			return false;
+		}
+		changed.add(segmentNumber);
+		numDeleted += 1;
+		return true;
+	}
+	
+	/*
+	 * Returns the number of documents deleted so far.
+	 */
+	public int getNumDeleted() {
+		return numDeleted;
+	}
+	
+	/*
+	 * The method writes the live docs of every segment with new deletions and records the
+	 * new generations in the segment list. The previous generation is kept for readers that
+	 * are opening the old segment list; older generations are removed.
+	 */
+	public void apply() throws IOException {
+		for (int segmentNumber : changed) {
+			SegmentInfo segment = segmentInfos.get(segmentNumber);
+			LiveDocs segmentLiveDocs = liveDocs.get(segmentNumber);
+			File segmentDir = segment.getDir(indexDir);
+			
+			long delGen = segment.getDelGen() + 1;
+			segmentLiveDocs.write(segmentDir, delGen);
+			segmentInfos.set(segmentNumber, segment.withDeletes(segmentLiveDocs.getNumDeleted(), delGen));
+			
+			if (delGen > 2) {
+				new File(segmentDir, LiveDocs.getFileName(delGen - 2)).delete();
+			}
+		}
+		changed.clear();
+	}
+}
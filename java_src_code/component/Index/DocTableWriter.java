@@ -0,0 +1,74 @@
+package component.Index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Writes the per-document tables used at query time:
+ * 
+ * doc-lengths.bin	header (int number of docs, double average doc length) followed by one
+ * 					int length per internal id
+ * docnos.bin		one fixed-width, zero padded DOCNO per internal id
+ * 
+ * Documents must be added in internal id order.
+ */
+public class DocTableWriter {
+	public static final String DOC_LENGTHS_FILE = "doc-lengths.bin";
+	public static final String DOCNOS_FILE = "docnos.bin";
+	
+	public static final int DOC_LENGTHS_HEADER_SIZE = 12;
+	public static final int DOCNO_WIDTH = 32;
+	
+	private final File indexDir;
+	private DataOutputStream lengthsOut;
+	private DataOutputStream docnosOut;
+	private int numDocs = 0;
+	private long totalLength = 0;
+	private final byte[] docnoBuffer = new byte[DOCNO_WIDTH];
+	
+	public DocTableWriter(File indexDir) throws IOException {
+		this.indexDir = indexDir;
+		lengthsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + DOC_LENGTHS_FILE), 1 << 16));
+		docnosOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + DOCNOS_FILE), 1 << 16));
+		
+		// Header is filled in once all documents have been added
+		lengthsOut.write(new byte[DOC_LENGTHS_HEADER_SIZE]);
+	}
+	
+	/*
+	 * The method appends the next document's DOCNO and length.
+	 * 
+	 * @param docno		The document's DOCNO
+	 * @param length	The number of tokens in the document
+	 */
+	public void addDoc(String docno, int length) throws IOException {
+		byte[] bytes = docno.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > DOCNO_WIDTH) {
+			throw new IOException("DOCNO '" + docno + "' is longer than " + DOCNO_WIDTH + " bytes");
+		}
+		
+		Arrays.fill(docnoBuffer, (byte) 0);
+		System.arraycopy(bytes, 0, docnoBuffer, 0, bytes.length);
+		docnosOut.write(docnoBuffer);
+		lengthsOut.writeInt(length);
+		
+		numDocs += 1;
+		totalLength += length;
+	}
+	
+	public void close() throws IOException {
+		docnosOut.close();
+		lengthsOut.close();
+		
+		RandomAccessFile header = new RandomAccessFile(indexDir + "/" + DOC_LENGTHS_FILE, "rw");
+		header.writeInt(numDocs);
+		header.writeDouble(numDocs == 0 ? 0.0 : (double) totalLength / numDocs);
+		header.close();
+	}
+}
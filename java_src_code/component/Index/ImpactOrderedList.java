@@ -0,0 +1,99 @@
+package component.Index;
+
+/*
+ * A term's impact-ordered postings in one segment (see PostingsWriter): groups of doc ids that
+ * share a quantized impact, from the highest impact down. The group table is decoded when the
+ * list is opened, and a group's doc ids are only decoded when they are read, so a query that
+ * stops early never touches the groups it did not reach.
+ */
+public class ImpactOrderedList {
+	private final MappedFile file;
+	private final int docBase;
+	private final int[] impacts;
+	private final int[] counts;
+	private final long[] starts;
+	
+	/*
+	 * @param file		The segment's impact-ordered postings
+	 * @param offset	The offset of the term's group table
+	 * @param docBase	The value added to each decoded doc id
+	 */
+	ImpactOrderedList(MappedFile file, long offset, int docBase) {
+		this.file = file;
+		this.docBase = docBase;
+		
+		long[] pos = { offset };
+		int numGroups = readVByte(pos);
+		impacts = new int[numGroups];
+		counts = new int[numGroups];
+		starts = new long[numGroups];
+		
+		int[] lengths = new int[numGroups];
+		for (int i = 0; i < numGroups; i++) {
+			impacts[i] = readVByte(pos);
+			counts[i] = readVByte(pos);
+			lengths[i] = readVByte(pos);
+		}
+		long start = pos[0];
+		for (int i = 0; i < numGroups; i++) {
+			starts[i] = start;
+			start += lengths[i];
+		}
+	}
+	
+	/*
+	 * Returns the number of groups (distinct impacts) of the list.
+	 */
+	public int getNumGroups() {
+		return impacts.length;
+	}
+	
+	/*
+	 * Returns the quantized impact of every posting in a group.
+	 */
+	public int getImpact(int group) {
+		return impacts[group];
+	}
+	
+	/*
+	 * Returns the number of postings in a group.
+	 */
+	public int getCount(int group) {
+		return counts[group];
+	}
+	
+	/*
+	 * The method decodes the first doc ids of a group.
+	 * 
+	 * @param group		The group, from 0 (the highest impact)
+	 * @param docIds	The array receiving the doc ids, in increasing order
+	 * @param count		The number of doc ids to decode, at most the group's count
+	 */
+	public void readDocIds(int group, int[] docIds, int count) {
+		long pos = starts[group];
+		int docId = docBase;
+		
+		for (int i = 0; i < count; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			while (((b = file.getByte(pos++)) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			docId += value | ((b & 0x7F) << shift);
+			docIds[i] = docId;
+		}
+	}
+	
+	private int readVByte(long[] pos) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		while (((b = file.getByte(pos[0]++)) & 0x80) == 0) {
+			value |= b << shift;
+			shift += 7;
+		}
+		return value | ((b & 0x7F) << shift);
+	}
+}
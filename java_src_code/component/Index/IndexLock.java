@@ -0,0 +1,61 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * An exclusive lock on an index's segments file, held while the list of segments is read
+ * and rewritten (appending a batch, reserving a merge or committing a merge) so that two
+ * writers never overwrite each other's changes. The lock is an OS file lock on write.lock
+ * in the index directory, so it also excludes writers in other processes. OS file locks are
+ * held per process, so threads of the same process are excluded by an in-process lock first.
+ */
+public class IndexLock {
+	public static final String LOCK_FILE = "write.lock";
+	
+	private static final ReentrantLock PROCESS_LOCK = new ReentrantLock();
+	
+	private final FileChannel channel;
+	private final FileLock lock;
+	
+	private IndexLock(FileChannel channel, FileLock lock) {
+		this.channel = channel;
+		this.lock = lock;
+	}
+	
+	/*
+	 * The method waits until the index's lock is free and takes it.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 * @return			The held lock
+	 */
+	public static IndexLock obtain(File indexDir) throws IOException {
+		PROCESS_LOCK.lock();
+		try {
+			FileChannel channel = FileChannel.open(new File(indexDir, LOCK_FILE).toPath(), 
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				return new IndexLock(channel, channel.lock());
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			PROCESS_LOCK.unlock();
+			throw e;
+		}
+	}
+	
+	public void release() throws IOException {
+		try {
+			lock.release();
+			channel.close();
+		} finally {
+			PROCESS_LOCK.unlock();
+		}
+	}
+}
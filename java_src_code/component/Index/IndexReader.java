@@ -0,0 +1,374 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/*
+ * Read access to an index directory for query processing. An index is a list of immutable
+ * segments (see SegmentInfos), each opened with a memory-mapped SegmentReader, so opening
+ * an index takes constant time regardless of its size. Internal ids are collection-wide:
+ * a segment's local ids are offset by the segment's base id, and a term's postings list is
+ * the concatenation of its lists in each segment (in increasing id order).
+ * 
+ * The collection statistics used for scoring (number of documents, average document length
+ * and document frequencies) are computed over all segments, so scores do not depend on how
+ * the collection was split into batches. Deleted documents still count towards the statistics
+ * (and remain in the postings) until their segment is merged, but isDeleted lets query
+ * processing skip them with a single bit test.
+ * 
+ * Positions are only available if every segment was written with a positions stream.
+ */
+public class IndexReader {
+	private final SegmentInfos segmentInfos;
+	private final SegmentReader[] segments;
+	private final int[] bases;
+	private final int numDocs;
+	private final double averageDocLength;
+	
+	// Collection-wide bitset of deleted internal ids (null if nothing is deleted)
+	private final long[] deleted;
+	private final int numLiveDocs;
+	
+	public IndexReader(File indexDir) throws IOException {
+		this(indexDir, SegmentInfos.read(indexDir));
+	}
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param segmentInfos	The segments to open (e.g., a snapshot of the segments file)
+	 */
+	public IndexReader(File indexDir, SegmentInfos segmentInfos) throws IOException {
+		this.segmentInfos = segmentInfos;
+		segments = new SegmentReader[segmentInfos.size()];
+		bases = new int[segmentInfos.size()];
+		
+		for (int i = 0; i < segments.length; i++) {
+			SegmentInfo info = segmentInfos.get(i);
+			segments[i] = new SegmentReader(info.getDir(indexDir));
+			bases[i] = info.getBaseDocId();
+		}
+		
+		numDocs = segmentInfos.getNumDocs();
+		averageDocLength = numDocs == 0 ? 0.0 : (double) segmentInfos.getTotalLength() / numDocs;
+		numLiveDocs = segmentInfos.getNumLiveDocs();
+		
+		long[] deletedBits = null;
+		for (int i = 0; i < segments.length; i++) {
+			LiveDocs liveDocs = LiveDocs.read(indexDir, segmentInfos.get(i));
+			if (liveDocs == null) {
+				continue;
+			}
+			if (deletedBits == null) {
+				deletedBits = new long[(numDocs + 63) >>> 6];
+			}
+			for (int localId = 0; localId < liveDocs.getNumDocs(); localId++) {
+				if (!liveDocs.isLive(localId)) {
+					int docId = bases[i] + localId;
+					deletedBits[docId >>> 6] |= 1L << docId;
+				}
+			}
+		}
+		deleted = deletedBits;
+	}
+	
+	/*
+	 * Returns the segments the index was opened with.
+	 */
+	public SegmentInfos getSegmentInfos() {
+		return segmentInfos;
+	}
+	
+	/*
+	 * Returns the number of term ids covered by the postings of any segment.
+	 */
+	public int getNumTerms() {
+		int numTerms = 0;
+		for (SegmentReader segment : segments) {
+			numTerms = Math.max(numTerms, segment.getNumTerms());
+		}
+		return numTerms;
+	}
+	
+	/*
+	 * Returns the number of documents in the collection containing a term.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public int getDocFreq(int termId) {
+		int df = 0;
+		for (SegmentReader segment : segments) {
+			df += segment.getDocFreq(termId);
+		}
+		return df;
+	}
+	
+	/*
+	 * The method decodes a term's postings list across all segments.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The term's internal ids and term frequencies
+	 */
+	public PostingsList getPostings(int termId) {
+		if (segments.length == 1) {
+			return segments[0].getPostings(termId);
+		}
+		
+		int df = getDocFreq(termId);
+		int[] docIds = new int[df];
+		int[] freqs = new int[df];
+		
+		int n = 0;
+		for (int i = 0; i < segments.length; i++) {
+			n += segments[i].readPostings(termId, bases[i], docIds, freqs, n);
+		}
+		
+		return new PostingsList(docIds, freqs);
+	}
+	
+	/*
+	 * Returns a cursor over a term's postings across all segments, which decodes the postings
+	 * as it goes and can skip ahead without decoding the postings in between.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public PostingsCursor getCursor(int termId) {
+		return newCursor(termId, false);
+	}
+	
+	/*
+	 * Returns a cursor over a term's postings across all segments (see getCursor) that can also
+	 * read the positions of the current posting.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The cursor, or null if the index does not have positions
+	 */
+	public PositionalPostingsCursor getPositionalCursor(int termId) {
+		if (!hasPositions()) {
+			return null;
+		}
+		return (PositionalPostingsCursor) newCursor(termId, true);
+	}
+	
+	private PostingsCursor newCursor(int termId, boolean positional) {
+		MappedFile[] files = new MappedFile[segments.length];
+		long[] starts = new long[segments.length];
+		long[] ends = new long[segments.length];
+		int[] dfs = new int[segments.length];
+		double[] impactScales = new double[segments.length];
+		
+		for (int i = 0; i < segments.length; i++) {
+			PostingsReader postings = segments[i].getPostingsReader();
+			files[i] = postings.getPostingsFile();
+			starts[i] = postings.getTermStart(termId);
+			ends[i] = postings.getTermEnd(termId);
+			dfs[i] = postings.getDocFreq(termId);
+			
+			// A BM25 term frequency component grows by at most the ratio of the average doc lengths
+			double segmentAverage = segments[i].getAverageDocLength();
+			impactScales[i] = segmentAverage > 0 ? Math.max(1.0, averageDocLength / segmentAverage) : 1.0;
+		}
+		
+		if (positional) {
+			return new PositionalPostingsCursor(files, starts, ends, dfs, bases, impactScales, segments, termId);
+		}
+		return new PostingsCursor(files, starts, ends, dfs, bases, impactScales);
+	}
+	
+	/*
+	 * Returns whether every segment of the index has positions.
+	 */
+	public boolean hasPositions() {
+		for (SegmentReader segment : segments) {
+			if (!segment.hasPositions()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * The method decodes a term's postings list across all segments, together with where
+	 * the positions of each posting are stored.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The term's postings, or null if the index does not have positions
+	 */
+	public PositionalPostingsList getPositionalPostings(int termId) {
+		if (!hasPositions()) {
+			return null;
+		}
+		
+		int df = getDocFreq(termId);
+		int[] docIds = new int[df];
+		int[] freqs = new int[df];
+		int[] postingSegments = new int[df];
+		long[] positionOffsets = new long[df];
+		
+		int n = 0;
+		for (int i = 0; i < segments.length; i++) {
+			int segmentDf = segments[i].readPostings(termId, bases[i], docIds, freqs, n);
+			segments[i].readPositionOffsets(termId, positionOffsets, n);
+			for (int j = n; j < n + segmentDf; j++) {
+				postingSegments[j] = i;
+			}
+			n += segmentDf;
+		}
+		
+		return new PositionalPostingsList(docIds, freqs, segments, postingSegments, positionOffsets);
+	}
+	
+	/*
+	 * Returns the number of bits of the index's quantized impacts, or 0 unless every segment
+	 * stores impacts with the same number of bits.
+	 */
+	public int getImpactBits() {
+		int bits = segments.length > 0 ? segments[0].getImpactBits() : 0;
+		for (SegmentReader segment : segments) {
+			if (segment.getImpactBits() != bits) {
+				return 0;
+			}
+		}
+		return bits;
+	}
+	
+	/*
+	 * The method reads the quantized impacts of a term's postings across all segments, in the
+	 * order of the postings returned by getPostings. Each segment's impacts are normalized with
+	 * that segment's average document length.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The term's impacts, or null if the index does not have impacts
+	 */
+	public int[] getImpacts(int termId) {
+		if (getImpactBits() == 0) {
+			return null;
+		}
+		
+		int[] impacts = new int[getDocFreq(termId)];
+		int n = 0;
+		for (SegmentReader segment : segments) {
+			n += segment.readImpacts(termId, impacts, n);
+		}
+		return impacts;
+	}
+	
+	/*
+	 * Returns whether every segment of the index has impact-ordered postings.
+	 */
+	public boolean hasImpactOrder() {
+		for (SegmentReader segment : segments) {
+			if (!segment.hasImpactOrder()) {
+				return false;
+			}
+		}
+		return getImpactBits() > 0;
+	}
+	
+	/*
+	 * Returns a term's impact-ordered postings in each segment that has postings of the term
+	 * (with the segments' doc ids mapped to internal ids).
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The term's lists, or null if the index does not have impact-ordered postings
+	 */
+	public ArrayList<ImpactOrderedList> getImpactOrderedLists(int termId) {
+		if (!hasImpactOrder()) {
+			return null;
+		}
+		
+		ArrayList<ImpactOrderedList> lists = new ArrayList<ImpactOrderedList>();
+		for (int i = 0; i < segments.length; i++) {
+			ImpactOrderedList list = segments[i].getImpactOrderedList(termId, bases[i]);
+			if (list != null) {
+				lists.add(list);
+			}
+		}
+		return lists;
+	}
+	
+	/*
+	 * Returns the number of documents in the collection.
+	 */
+	public int getNumDocs() {
+		return numDocs;
+	}
+	
+	/*
+	 * Returns the number of documents in the collection that are not deleted.
+	 */
+	public int getNumLiveDocs() {
+		return numLiveDocs;
+	}
+	
+	/*
+	 * Returns whether a document has been deleted.
+	 * 
+	 * @param docId		The internal id of the document
+	 */
+	public boolean isDeleted(int docId) {
+		return deleted != null && (deleted[docId >>> 6] & (1L << docId)) != 0;
+	}
+	
+	/*
+	 * Returns whether any document in the collection has been deleted.
+	 */
+	public boolean hasDeletions() {
+		return deleted != null;
+	}
+	
+	/*
+	 * Returns the average document length in the collection.
+	 */
+	public double getAverageDocLength() {
+		return averageDocLength;
+	}
+	
+	/*
+	 * Returns the number of tokens in a document.
+	 * 
+	 * @param docId		The internal id of the document
+	 */
+	public int getDocLength(int docId) {
+		if (segments.length == 1) {
+			return segments[0].getDocLength(docId);
+		}
+		int segment = findSegment(docId);
+		return segments[segment].getDocLength(docId - bases[segment]);
+	}
+	
+	/*
+	 * Returns the DOCNO of a document, or null if the internal id is out of range.
+	 * 
+	 * @param docId		The internal id of the document
+	 */
+	public String getDocno(int docId) {
+		if (docId < 0 || docId >= numDocs) {
+			return null;
+		}
+		
+		int segment = findSegment(docId);
+		return segments[segment].getDocno(docId - bases[segment]);
+	}
+	
+	/*
+	 * The method finds the segment holding an internal id by binary searching the base ids.
+	 * 
+	 * @param docId		The internal id of the document
+	 * @return			The position of the segment in the segment list
+	 */
+	private int findSegment(int docId) {
+		int lo = 0;
+		int hi = bases.length - 1;
+		
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (bases[mid] <= docId) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,115 @@
+package component.Index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/*
+ * A bitset of the live (not deleted) documents of a segment, indexed by local id. Segments
+ * are never modified, so deleting documents writes a new generation of the segment's live
+ * docs file (live-<gen>.bin, one long per 64 documents with a set bit for each live
+ * document), and the segment's entry in the segments file records the current generation.
+ * Deleted documents stay in the segment (and in the collection statistics) until the
+ * segment is merged.
+ */
+public class LiveDocs {
+	private final long[] bits;
+	private final int numDocs;
+	private int numDeleted = 0;
+	
+	/*
+	 * Creates the live docs of a segment with no deletions.
+	 * 
+	 * @param numDocs	The number of documents in the segment
+	 */
+	public LiveDocs(int numDocs) {
+		this.numDocs = numDocs;
+		this.bits = new long[(numDocs + 63) >>> 6];
+		for (int i = 0; i < numDocs; i++) {
+			bits[i >>> 6] |= 1L << i;
+		}
+	}
+	
+	/*
+	 * Returns the name of a generation of the live docs file.
+	 */
+	public static String getFileName(long gen) {
+		return "live-" + gen + ".bin";
+	}
+	
+	/*
+	 * The method reads a segment's current live docs.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 * @param segment	The segment
+	 * @return			The segment's live docs, or null if it has no deletions
+	 */
+	public static LiveDocs read(File indexDir, SegmentInfo segment) throws IOException {
+		if (segment.getDelGen() == 0) {
+			return null;
+		}
+		
+		LiveDocs liveDocs = new LiveDocs(segment.getNumDocs());
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(new File(segment.getDir(indexDir), getFileName(segment.getDelGen()))), 1 << 16));
+		for (int i = 0; i < liveDocs.bits.length; i++) {
+			liveDocs.bits[i] = in.readLong();
+		}
+		in.close();
+		
+		int numLive = 0;
+		for (long word : liveDocs.bits) {
+			numLive += Long.bitCount(word);
+		}
+		liveDocs.numDeleted = liveDocs.numDocs - numLive;
+		
+		return liveDocs;
+	}
+	
+	/*
+	 * The method writes the live docs as a new generation of the segment's live docs file.
+	 * 
+	 * @param segmentDir	The segment's directory
+	 * @param gen			The generation to write
+	 */
+	public void write(File segmentDir, long gen) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(segmentDir, getFileName(gen))), 1 << 16));
+		for (long word : bits) {
+			out.writeLong(word);
+		}
+		out.close();
+	}
+	
+	public boolean isLive(int docId) {
+		return (bits[docId >>> 6] & (1L << docId)) != 0;
+	}
+	
+	/*
+	 * The method marks a document as deleted.
+	 * 
+	 * @param docId		The local id of the document
+	 * @return			Whether the document was live before
+	 */
+	public boolean delete(int docId) {
+		if (!isLive(docId)) {
+			return false;
+		}
+		bits[docId >>> 6] &= ~(1L << docId);
+		numDeleted += 1;
+		return true;
+	}
+	
+	public int getNumDocs() {
+		return numDocs;
+	}
+	
+	public int getNumDeleted() {
+		return numDeleted;
+	}
+}
@@ -0,0 +1,88 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A read-only memory mapping of an index file. A single MappedByteBuffer is limited to
+ * 2 GB, so the file is mapped as a series of 1 GB chunks and addressed with long offsets.
+ * Pages are only read from disk when they are first touched, and the page cache is
+ * shared by every process mapping the same file.
+ */
+public class MappedFile {
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	
+	private final MappedByteBuffer[] chunks;
+	private final long length;
+	
+	public MappedFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			length = channel.size();
+			int numChunks = (int) ((length + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new MappedByteBuffer[Math.max(numChunks, 1)];
+			
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long) i << CHUNK_BITS;
+				long size = Math.min(CHUNK_MASK + 1, length - start);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(size, 0));
+			}
+		}
+	}
+	
+	public long length() {
+		return length;
+	}
+	
+	public byte getByte(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+	}
+	
+	public int getInt(long pos) {
+		int offset = (int) (pos & CHUNK_MASK);
+		if (offset + 4 <= CHUNK_MASK + 1) {
+			return chunks[(int) (pos >>> CHUNK_BITS)].getInt(offset);
+		}
+		// Value straddles two chunks
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (getByte(pos + i) & 0xFF);
+		}
+		return value;
+	}
+	
+	public long getLong(long pos) {
+		return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xFFFFFFFFL);
+	}
+	
+	public float getFloat(long pos) {
+		return Float.intBitsToFloat(getInt(pos));
+	}
+	
+	public double getDouble(long pos) {
+		return Double.longBitsToDouble(getLong(pos));
+	}
+	
+	/*
+	 * The method copies bytes from the mapping into an array.
+	 * 
+	 * @param pos		The file offset to start copying from
+	 * @param dest		The array to copy into
+	 * @param offset	The first index of dest to write to
+	 * @param len		The number of bytes to copy
+	 */
+	public void getBytes(long pos, byte[] dest, int offset, int len) {
+		while (len > 0) {
+			MappedByteBuffer chunk = chunks[(int) (pos >>> CHUNK_BITS)];
+			int chunkOffset = (int) (pos & CHUNK_MASK);
+			int n = Math.min(len, chunk.capacity() - chunkOffset);
+			chunk.get(chunkOffset, dest, offset, n);
+			pos += n;
+			offset += n;
+			len -= n;
+		}
+	}
+}
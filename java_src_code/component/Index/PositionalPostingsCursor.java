@@ -0,0 +1,34 @@
+package component.Index;
+
+/*
+ * A postings cursor that can also return the positions of the current posting. The positions
+ * are located through the positions skip table of the posting's block (see PostingsWriter), so
+ * reading them costs the same wherever the posting is in the list, and nothing is read for the
+ * postings the cursor skips over.
+ */
+public class PositionalPostingsCursor extends PostingsCursor {
+	private final SegmentReader[] segments;
+	private final int termId;
+	
+	/*
+	 * @param segments		The segments holding the positions
+	 * @param termId		The term id of the postings
+	 * See PostingsCursor for the other parameters.
+	 */
+	PositionalPostingsCursor(MappedFile[] files, long[] starts, long[] ends, int[] dfs, int[] bases, double[] impactScales,
+			SegmentReader[] segments, int termId) {
+		super(files, starts, ends, dfs, bases, impactScales);
+		this.segments = segments;
+		this.termId = termId;
+	}
+	
+	/*
+	 * The method decodes the positions (token offsets in the document) of the current posting.
+	 * 
+	 * @param dest		The array receiving the positions in increasing order, at least freq() long
+	 */
+	public void readPositions(int[] dest) {
+		SegmentReader segment = segments[getSegment()];
+		segment.readPositions(segment.getPositionsOffset(termId, getIndex()), freq(), dest);
+	}
+}
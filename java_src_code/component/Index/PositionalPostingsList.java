@@ -0,0 +1,36 @@
+package component.Index;
+
+/*
+ * A decoded postings list that can also return the positions of each posting. Only the
+ * offsets of the positions are found when the list is decoded; a posting's positions are
+ * decoded on request, so positions are only read for the documents a query needs them for.
+ */
+public class PositionalPostingsList extends PostingsList {
+	private final SegmentReader[] segments;
+	private final int[] postingSegments;
+	private final long[] positionOffsets;
+	
+	/*
+	 * @param docIds			The doc ids, in increasing order
+	 * @param freqs				The term frequency in each document
+	 * @param segments			The segments holding the positions
+	 * @param postingSegments	The position in segments of each posting's segment
+	 * @param positionOffsets	The offset of each posting's positions in its segment
+	 */
+	public PositionalPostingsList(int[] docIds, int[] freqs, SegmentReader[] segments, int[] postingSegments, long[] positionOffsets) {
+		super(docIds, freqs);
+		this.segments = segments;
+		this.postingSegments = postingSegments;
+		this.positionOffsets = positionOffsets;
+	}
+	
+	/*
+	 * The method decodes the positions (token offsets in the document) of a posting.
+	 * 
+	 * @param i			The index of the posting in the list
+	 * @param dest		The array receiving the positions in increasing order, at least getFreq(i) long
+	 */
+	public void readPositions(int i, int[] dest) {
+		segments[postingSegments[i]].readPositions(positionOffsets[i], getFreq(i), dest);
+	}
+}
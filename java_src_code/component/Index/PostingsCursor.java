@@ -0,0 +1,303 @@
+package component.Index;
+
+/*
+ * A cursor over a term's postings that decodes them one at a time and can skip ahead to a
+ * doc id without decoding the postings in between. Skipping gallops through the list's skip
+ * table (doubling the step, then binary searching the last step) to the first block that can
+ * hold the target, and then decodes at most SKIP_INTERVAL postings of that block, so advancing
+ * by d documents costs O(log(d / SKIP_INTERVAL) + SKIP_INTERVAL) instead of O(d).
+ * 
+ * Over several segments, the cursor walks each segment's list in turn (with the segment's base
+ * id added to its doc ids), and skipping to a doc id in a later segment moves straight there.
+ * 
+ * The cursor also reads the lists' block max tables (see PostingsWriter): advanceShallow finds
+ * the block that would hold a doc id and the bound on its postings' BM25 term frequency
+ * components without moving the cursor, so a query can skip blocks whose bound is too low
+ * before decoding them. A segment's bounds were computed with its own average doc length, so
+ * they are scaled by the segment's impact scale to hold for the collection's.
+ * 
+ * Typical use:
+ * 
+ * 		for (int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+ * 			... cursor.freq() ...
+ * 		}
+ */
+public class PostingsCursor {
+	// Returned once the postings are exhausted (greater than any doc id)
+	public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+	
+	private final MappedFile[] files;
+	private final long[] starts;
+	private final long[] ends;
+	private final int[] dfs;
+	private final int[] bases;
+	private final double[] impactScales;
+	private final int docFreq;
+	
+	// The current segment's list
+	private int segment = -1;
+	private MappedFile postings;
+	private long start;
+	private long skipStart;
+	private int numSkips;
+	private int df = 0;
+	private int base;
+	
+	// Decoding state (doc is local to the segment, docId is the current internal id)
+	private long pos;
+	private int count = 0;
+	private int doc;
+	private int freq;
+	private int docId = -1;
+	
+	// The block last found by advanceShallow, the last id it covers and its bound
+	private int shallowSegment = 0;
+	private int shallowBlock = 0;
+	private int shallowEnd = -1;
+	private double shallowMaxImpact = 0;
+	
+	/*
+	 * @param files			The postings file of each segment
+	 * @param starts		The offset of the term's list in each file
+	 * @param ends			The offset after the term's list (and its skip and block max tables) in each file
+	 * @param dfs			The number of postings of the term in each segment
+	 * @param bases			The base id of each segment
+	 * @param impactScales	The factor to scale each segment's block maxima by
+	 */
+	PostingsCursor(MappedFile[] files, long[] starts, long[] ends, int[] dfs, int[] bases, double[] impactScales) {
+		this.files = files;
+		this.starts = starts;
+		this.ends = ends;
+		this.dfs = dfs;
+		this.bases = bases;
+		this.impactScales = impactScales;
+		
+		int total = 0;
+		for (int n : dfs) {
+			total += n;
+		}
+		docFreq = total;
+	}
+	
+	/*
+	 * Returns the number of documents in the postings (the term's document frequency).
+	 */
+	public int docFreq() {
+		return docFreq;
+	}
+	
+	/*
+	 * Returns the current internal id, -1 before the first call to nextDoc or advance, or
+	 * NO_MORE_DOCS once the postings are exhausted.
+	 */
+	public int docId() {
+		return docId;
+	}
+	
+	/*
+	 * Returns the term frequency in the current document.
+	 */
+	public int freq() {
+		return freq;
+	}
+	
+	/*
+	 * Returns the position in the segments of the current posting's segment.
+	 */
+	int getSegment() {
+		return segment;
+	}
+	
+	/*
+	 * Returns the index of the current posting in its segment's list.
+	 */
+	int getIndex() {
+		return count - 1;
+	}
+	
+	/*
+	 * The method moves to the next document.
+	 * 
+	 * @return		The next internal id, or NO_MORE_DOCS
+	 */
+	public int nextDoc() {
+		while (count == df) {
+			if (!nextSegment()) {
+				return docId = NO_MORE_DOCS;
+			}
+		}
+		decodeNext();
+		return docId = base + doc;
+	}
+	
+	/*
+	 * The method moves to the first document at or after a target. The cursor never moves
+	 * backwards, so if it is already at or after the target it stays where it is.
+	 * 
+	 * @param target	The internal id to move to
+	 * @return			The first internal id >= target, or NO_MORE_DOCS
+	 */
+	public int advance(int target) {
+		if (docId >= target) {
+			return docId;
+		}
+		
+		// Leave segments that end before the target
+		while (count == df || (segment + 1 < files.length && target >= bases[segment + 1])) {
+			if (!nextSegment()) {
+				return docId = NO_MORE_DOCS;
+			}
+		}
+		
+		int localTarget = target - base;
+		skipTo(localTarget);
+		while (count < df) {
+			decodeNext();
+			if (doc >= localTarget) {
+				return docId = base + doc;
+			}
+		}
+		return nextDoc(); // The next segment's ids are all after the target
+	}
+	
+	/*
+	 * The method finds the block that would hold the first posting at or after a target, without
+	 * moving the cursor or decoding any postings. Targets must not decrease between calls.
+	 * 
+	 * @param target	An internal id
+	 * @return			The last internal id covered by the block (every posting of the term from the
+	 * 					target up to this id is in the block), or NO_MORE_DOCS if no later segment follows it
+	 */
+	public int advanceShallow(int target) {
+		if (target <= shallowEnd) {
+			return shallowEnd;
+		}
+		
+		while (shallowSegment + 1 < files.length && target >= bases[shallowSegment + 1]) {
+			shallowSegment += 1;
+			shallowBlock = 0;
+		}
+		int s = shallowSegment;
+		int segmentEnd = s + 1 < files.length ? bases[s + 1] - 1 : NO_MORE_DOCS;
+		int numBlocks = PostingsWriter.getNumBlocks(dfs[s]);
+		if (numBlocks == 0) {
+			shallowMaxImpact = 0;
+			return shallowEnd = segmentEnd;
+		}
+		
+		// The first block whose last doc id is at least the target (the last block covers the rest of the segment)
+		int lastBlock = numBlocks - 1; // Every block but the last has a skip entry
+		long blockMaxStart = ends[s] - (long) numBlocks * PostingsWriter.BLOCK_MAX_ENTRY_SIZE;
+		long skipTableStart = blockMaxStart - (long) lastBlock * PostingsWriter.SKIP_ENTRY_SIZE;
+		int localTarget = target - bases[s];
+		int lo = shallowBlock;
+		int hi = lastBlock;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (files[s].getInt(skipTableStart + (long) mid * PostingsWriter.SKIP_ENTRY_SIZE) < localTarget) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		shallowBlock = lo;
+		shallowMaxImpact = files[s].getFloat(blockMaxStart + (long) lo * PostingsWriter.BLOCK_MAX_ENTRY_SIZE) * impactScales[s];
+		if (lo == lastBlock) {
+			return shallowEnd = segmentEnd;
+		}
+		return shallowEnd = bases[s] + files[s].getInt(skipTableStart + (long) lo * PostingsWriter.SKIP_ENTRY_SIZE);
+	}
+	
+	/*
+	 * Returns the bound on the BM25 term frequency component of the postings in the block last
+	 * found by advanceShallow.
+	 */
+	public double getShallowMaxImpact() {
+		return shallowMaxImpact;
+	}
+	
+	/*
+	 * The method jumps to the first block (at or after the next posting's block) whose last doc
+	 * id is at least the target, using the skip table. The block's first posting is then the
+	 * next one decoded.
+	 */
+	private void skipTo(int localTarget) {
+		int block = count / PostingsWriter.SKIP_INTERVAL;
+		if (block >= numSkips || skipDocId(block) >= localTarget) {
+			return; // The target is in the current block (or the current block is the last)
+		}
+		
+		// Gallop to a skip entry at or after the target, then binary search the last step
+		int lo = block + 1;
+		int hi = lo;
+		int step = 1;
+		while (hi < numSkips && skipDocId(hi) < localTarget) {
+			lo = hi + 1;
+			hi += step;
+			step <<= 1;
+		}
+		hi = Math.min(hi, numSkips);
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (skipDocId(mid) < localTarget) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		// Block lo is the first that can hold the target, and entry lo - 1 tells where it starts
+		doc = skipDocId(lo - 1);
+		pos = start + postings.getInt(skipStart + (long) (lo - 1) * PostingsWriter.SKIP_ENTRY_SIZE + 4);
+		count = lo * PostingsWriter.SKIP_INTERVAL;
+	}
+	
+	private int skipDocId(int entry) {
+		return postings.getInt(skipStart + (long) entry * PostingsWriter.SKIP_ENTRY_SIZE);
+	}
+	
+	private boolean nextSegment() {
+		if (segment + 1 >= files.length) {
+			count = df; // Stay exhausted
+			return false;
+		}
+		
+		segment += 1;
+		postings = files[segment];
+		start = starts[segment];
+		df = dfs[segment];
+		numSkips = PostingsWriter.getNumSkips(df);
+		skipStart = ends[segment] - (long) PostingsWriter.getNumBlocks(df) * PostingsWriter.BLOCK_MAX_ENTRY_SIZE
+				- (long) numSkips * PostingsWriter.SKIP_ENTRY_SIZE;
+		base = bases[segment];
+		
+		pos = start;
+		count = 0;
+		doc = 0;
+		return true;
+	}
+	
+	private void decodeNext() {
+		// Decode doc id gap
+		int value = 0;
+		int shift = 0;
+		byte b;
+		while (((b = postings.getByte(pos++)) & 0x80) == 0) {
+			value |= b << shift;
+			shift += 7;
+		}
+		doc += value | ((b & 0x7F) << shift);
+		
+		// Decode term frequency
+		value = 0;
+		shift = 0;
+		while (((b = postings.getByte(pos++)) & 0x80) == 0) {
+			value |= b << shift;
+			shift += 7;
+		}
+		freq = value | ((b & 0x7F) << shift);
+		count += 1;
+	}
+}
@@ -0,0 +1,38 @@
+package component.Index;
+
+/*
+ * A decoded postings list for a single term, held as parallel primitive arrays of
+ * doc ids (in increasing order) and term frequencies.
+ */
+public class PostingsList {
+	private final int[] docIds;
+	private final int[] freqs;
+	
+	public PostingsList(int[] docIds, int[] freqs) {
+		this.docIds = docIds;
+		this.freqs = freqs;
+	}
+	
+	/*
+	 * Returns the number of documents in the postings list (the term's document frequency).
+	 */
+	public int size() {
+		return docIds.length;
+	}
+	
+	public int getDocId(int i) {
+		return docIds[i];
+	}
+	
+	public int getFreq(int i) {
+		return freqs[i];
+	}
+	
+	public int[] getDocIds() {
+		return docIds;
+	}
+	
+	public int[] getFreqs() {
+		return freqs;
+	}
+}
@@ -0,0 +1,335 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Reads the binary postings file written by PostingsWriter. Both the postings and the
+ * term offset table are memory-mapped, so opening the reader does not depend on the size
+ * of the index, and each term's list is only decoded when it is requested. If the segment
+ * is positional, its positions stream is mapped as well, and so are its quantized impacts and
+ * impact-ordered postings if it stores them.
+ */
+public class PostingsReader {
+	private final MappedFile postings;
+	private final MappedFile offsets;
+	private final int numTerms;
+	
+	// Positions stream (null if the segment is not positional)
+	private final MappedFile positions;
+	private final MappedFile positionsOffsets;
+	
+	// Impacts stream (null if the segment has no impacts)
+	private final MappedFile impacts;
+	private final MappedFile impactsOffsets;
+	private final int impactBits;
+	
+	// Impact-ordered postings (null if the segment has none)
+	private final MappedFile impactOrder;
+	private final MappedFile impactOrderOffsets;
+	
+	public PostingsReader(File indexDir) throws IOException {
+		postings = new MappedFile(new File(indexDir, PostingsWriter.POSTINGS_FILE));
+		offsets = new MappedFile(new File(indexDir, PostingsWriter.OFFSETS_FILE));
+		numTerms = (int) (offsets.length() / PostingsWriter.OFFSET_ENTRY_SIZE);
+		
+		File positionsFile = new File(indexDir, PostingsWriter.POSITIONS_FILE);
+		if (positionsFile.exists()) {
+			positions = new MappedFile(positionsFile);
+			positionsOffsets = new MappedFile(new File(indexDir, PostingsWriter.POSITIONS_OFFSETS_FILE));
+		} else {
+			positions = null;
+			positionsOffsets = null;
+		}
+		
+		File impactsFile = new File(indexDir, PostingsWriter.IMPACTS_FILE);
+		if (impactsFile.exists()) {
+			impacts = new MappedFile(impactsFile);
+			impactsOffsets = new MappedFile(new File(indexDir, PostingsWriter.IMPACTS_OFFSETS_FILE));
+			impactBits = impacts.getInt(0);
+		} else {
+			impacts = null;
+			impactsOffsets = null;
+			impactBits = 0;
+		}
+		
+		File impactOrderFile = new File(indexDir, PostingsWriter.IMPACT_ORDER_FILE);
+		if (impactOrderFile.exists()) {
+			impactOrder = new MappedFile(impactOrderFile);
+			impactOrderOffsets = new MappedFile(new File(indexDir, PostingsWriter.IMPACT_ORDER_OFFSETS_FILE));
+		} else {
+			impactOrder = null;
+			impactOrderOffsets = null;
+		}
+	}
+	
+	/*
+	 * Returns whether the segment has a positions stream.
+	 */
+	public boolean hasPositions() {
+		return positions != null;
+	}
+	
+	/*
+	 * Returns the number of bits of the segment's quantized impacts, or 0 if it has none.
+	 */
+	public int getImpactBits() {
+		return impactBits;
+	}
+	
+	/*
+	 * Returns whether the segment has impact-ordered postings.
+	 */
+	public boolean hasImpactOrder() {
+		return impactOrder != null;
+	}
+	
+	/*
+	 * Returns the number of terms in the index.
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+	
+	/*
+	 * Returns the number of documents containing a term.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public int getDocFreq(int termId) {
+		if (termId >= numTerms) {
+			return 0; // Term was added to the lexicon after this postings file was written
+		}
+		return offsets.getInt((long) termId * PostingsWriter.OFFSET_ENTRY_SIZE + 8);
+	}
+	
+	/*
+	 * Returns the offset of a term's list in the postings file.
+	 */
+	long getTermStart(int termId) {
+		if (termId >= numTerms) {
+			return 0;
+		}
+		return offsets.getLong((long) termId * PostingsWriter.OFFSET_ENTRY_SIZE);
+	}
+	
+	/*
+	 * Returns the offset after a term's list, skip table and block max table in the postings file.
+	 */
+	long getTermEnd(int termId) {
+		if (termId >= numTerms) {
+			return 0;
+		}
+		if (termId + 1 == numTerms) {
+			return postings.length();
+		}
+		return offsets.getLong((long) (termId + 1) * PostingsWriter.OFFSET_ENTRY_SIZE);
+	}
+	
+	MappedFile getPostingsFile() {
+		return postings;
+	}
+	
+	/*
+	 * Returns a cursor over the postings list of a term.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public PostingsCursor getCursor(int termId) {
+		return new PostingsCursor(new MappedFile[] { postings }, new long[] { getTermStart(termId) },
+				new long[] { getTermEnd(termId) }, new int[] { getDocFreq(termId) }, new int[] { 0 }, new double[] { 1.0 });
+	}
+	
+	/*
+	 * The method decodes the postings list of a term.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @return 			The term's doc ids and term frequencies
+	 */
+	public PostingsList getPostings(int termId) {
+		int df = getDocFreq(termId);
+		int[] docIds = new int[df];
+		int[] freqs = new int[df];
+		readPostings(termId, 0, docIds, freqs, 0);
+		
+		return new PostingsList(docIds, freqs);
+	}
+	
+	/*
+	 * The method decodes the postings list of a term into the given arrays, adding a base
+	 * to every doc id (used to concatenate the lists of several segments).
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @param docBase	The value added to each decoded doc id
+	 * @param docIds	The array receiving the doc ids
+	 * @param freqs		The array receiving the term frequencies
+	 * @param start		The position in the arrays of the first posting
+	 * @return 			The number of postings decoded (the term's document frequency)
+	 */
+	public int readPostings(int termId, int docBase, int[] docIds, int[] freqs, int start) {
+		int df = getDocFreq(termId);
+		if (df == 0) {
+			return 0;
+		}
+		long pos = offsets.getLong((long) termId * PostingsWriter.OFFSET_ENTRY_SIZE);
+		int docId = docBase;
+		
+		for (int i = start; i < start + df; i++) {
+			// Decode doc id gap
+			int value = 0;
+			int shift = 0;
+			byte b;
+			while (((b = postings.getByte(pos++)) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			docId += value | ((b & 0x7F) << shift);
+			docIds[i] = docId;
+			
+			// Decode term frequency
+			value = 0;
+			shift = 0;
+			while (((b = postings.getByte(pos++)) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			freqs[i] = value | ((b & 0x7F) << shift);
+		}
+		
+		return df;
+	}
+	
+	/*
+	 * The method finds where each posting's positions start in the positions stream. Only the
+	 * length prefix of each posting is decoded, the positions themselves are stepped over.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @param offsets	The array receiving the offset of each posting's positions
+	 * @param start		The position in the array of the first posting
+	 * @return 			The number of postings (the term's document frequency)
+	 */
+	public int readPositionOffsets(int termId, long[] offsets, int start) {
+		int df = getDocFreq(termId);
+		if (df == 0) {
+			return 0;
+		}
+		long pos = positionsOffsets.getLong(8L * termId);
+		
+		for (int i = start; i < start + df; i++) {
+			int length = 0;
+			int shift = 0;
+			byte b;
+			while (((b = positions.getByte(pos++)) & 0x80) == 0) {
+				length |= b << shift;
+				shift += 7;
+			}
+			length |= (b & 0x7F) << shift;
+			
+			offsets[i] = pos;
+			pos += length;
+		}
+		
+		return df;
+	}
+	
+	/*
+	 * Returns where the positions of one of a term's postings start in the positions stream.
+	 * The positions skip table gives the offset of the posting's block, and only the length
+	 * prefixes of the postings before it in the block are decoded.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @param i			The index of the posting in the term's list
+	 */
+	public long getPositionsOffset(int termId, int i) {
+		long pos = positionsOffsets.getLong(8L * termId);
+		
+		int block = i / PostingsWriter.SKIP_INTERVAL;
+		if (block > 0) {
+			long termEnd = termId + 1 < numTerms ? positionsOffsets.getLong(8L * (termId + 1)) : positions.length();
+			int numSkips = PostingsWriter.getNumSkips(getDocFreq(termId));
+			long skipStart = termEnd - (long) numSkips * PostingsWriter.POSITION_SKIP_ENTRY_SIZE;
+			pos += positions.getInt(skipStart + (long) (block - 1) * PostingsWriter.POSITION_SKIP_ENTRY_SIZE);
+		}
+		
+		// Step over the positions of the postings before it in the block
+		for (int j = block * PostingsWriter.SKIP_INTERVAL; ; j++) {
+			int length = 0;
+			int shift = 0;
+			byte b;
+			while (((b = positions.getByte(pos++)) & 0x80) == 0) {
+				length |= b << shift;
+				shift += 7;
+			}
+			if (j == i) {
+				return pos;
+			}
+			pos += length | ((b & 0x7F) << shift);
+		}
+	}
+	
+	/*
+	 * The method decodes the positions of a posting.
+	 * 
+	 * @param offset	The offset of the posting's positions (see readPositionOffsets)
+	 * @param freq		The posting's term frequency (the number of positions)
+	 * @param dest		The array receiving the positions, at least freq long
+	 */
+	public void readPositions(long offset, int freq, int[] dest) {
+		long pos = offset;
+		int position = -1;
+		
+		for (int i = 0; i < freq; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			while (((b = positions.getByte(pos++)) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			position += value | ((b & 0x7F) << shift);
+			dest[i] = position;
+		}
+	}
+	
+	/*
+	 * The method reads the quantized impacts of a term's postings (see PostingsWriter.quantizeImpact).
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @param dest		The array receiving the impacts, in posting order
+	 * @param start		The position in the array of the first posting
+	 * @return 			The number of postings (the term's document frequency)
+	 */
+	public int readImpacts(int termId, int[] dest, int start) {
+		int df = getDocFreq(termId);
+		if (df == 0) {
+			return 0;
+		}
+		long pos = impactsOffsets.getLong(8L * termId);
+		
+		if (impactBits <= 8) {
+			for (int i = start; i < start + df; i++) {
+				dest[i] = impacts.getByte(pos++) & 0xFF;
+			}
+		} else {
+			for (int i = start; i < start + df; i++) {
+				dest[i] = ((impacts.getByte(pos) & 0xFF) << 8) | (impacts.getByte(pos + 1) & 0xFF);
+				pos += 2;
+			}
+		}
+		
+		return df;
+	}
+	
+	/*
+	 * Returns a term's impact-ordered postings, or null if the term has no postings.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 * @param docBase	The value added to each decoded doc id
+	 */
+	public ImpactOrderedList getImpactOrderedList(int termId, int docBase) {
+		if (getDocFreq(termId) == 0) {
+			return null;
+		}
+		return new ImpactOrderedList(impactOrder, impactOrderOffsets.getLong(8L * termId), docBase);
+	}
+}
@@ -0,0 +1,661 @@
+package component.Index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import component.Primitive.IntList;
+import component.Ranking.BM25Ranking;
+
+/*
+ * Writes the inverted index as a compact binary postings file. Each term's postings
+ * are stored as variable-byte encoded (doc id gap, term frequency) pairs in
+ * postings.bin, and postings-offsets.bin holds a fixed-width entry per term id
+ * (byte offset + document frequency) so a reader can seek straight to a term.
+ * 
+ * A list is split into blocks of SKIP_INTERVAL postings, and a list with more than one block
+ * is followed by a skip table with an entry per block boundary: the last doc id of the block
+ * and the byte offset (from the start of the list) of the next block, both as fixed-width ints.
+ * The first doc id gap of a block is relative to the previous block's last doc id, so a reader
+ * can binary search the skip table and start decoding at any block (see PostingsCursor). The
+ * table follows the postings, so sequential decoding is unaffected by it.
+ * 
+ * The skip table is followed by a block max table with a float per block (including the last):
+ * the largest BM25 term frequency component tf / (tf + K) of the block's postings, computed with
+ * the segment's doc lengths and average doc length (rounded up to a float). Multiplied by a term's
+ * idf, it bounds the score the term adds to any document of the block, so queries can skip blocks
+ * that cannot reach the top k (see PostingsCursor.advanceShallow). The segment's doc length table
+ * must be written before its postings.
+ * 
+ * In a positional index, positions.bin holds each posting's positions (a variable-byte length
+ * prefix, then the variable-byte position gaps), and positions-offsets.bin the offset of each
+ * term's positions as a long. A term whose list has more than one block is followed by a
+ * positions skip table with an int per block boundary: the offset (from the start of the term's
+ * positions) of the next block's first posting. A reader can then find the positions of any
+ * posting by stepping over at most SKIP_INTERVAL - 1 length prefixes (see
+ * PostingsReader.getPositionsOffset).
+ * 
+ * Optionally, each posting's term frequency component is also quantized to an integer impact
+ * of a given number of bits (see quantizeImpact) and stored in impacts.bin, so a query can be
+ * scored from fixed-width integers instead of decoding and normalizing the frequencies (see
+ * ImpactScorer). The file starts with the number of bits, followed by each term's impacts in
+ * posting order (a byte each for up to 8 bits, otherwise 2 bytes), and impacts-offsets.bin
+ * holds the offset of each term's impacts as a long.
+ * 
+ * With impacts, each term's postings can also be written impact-ordered to impact-order.bin:
+ * grouped by quantized impact, with the groups (impact segments) in decreasing impact order and
+ * the doc ids of a group in increasing order, so a query can score the postings that add the
+ * most first and stop whenever its budget is spent (see AnytimeEvaluator). A term starts with
+ * a table of its groups: the number of groups, then each group's impact, number of postings
+ * and number of bytes, followed by each group's doc id gaps (the first relative to 0), all
+ * variable-byte encoded. impact-order-offsets.bin holds the offset of each term as a long.
+ * A term's postings are sorted by impact in runs of at most IMPACT_ORDER_RUN_SIZE postings. The
+ * groups of a larger term are spilled to a temporary file after each run, and copied after its
+ * group table once the term is complete, so the memory used does not grow with a term's
+ * document frequency.
+ *
+ * Terms must be written in increasing term id order, starting from 0.
+ */
+public class PostingsWriter {
+	public static final String POSTINGS_FILE = "postings.bin";
+	public static final String OFFSETS_FILE = "postings-offsets.bin";
+	public static final String POSITIONS_FILE = "positions.bin";
+	public static final String POSITIONS_OFFSETS_FILE = "positions-offsets.bin";
+	public static final String IMPACTS_FILE = "impacts.bin";
+	public static final String IMPACTS_OFFSETS_FILE = "impacts-offsets.bin";
+	public static final String IMPACT_ORDER_FILE = "impact-order.bin";
+	public static final String IMPACT_ORDER_OFFSETS_FILE = "impact-order-offsets.bin";
+	public static final String IMPACT_ORDER_SPILL_FILE = "impact-order.tmp";
+	
+	// Bytes per entry in the offsets table (long offset + int document frequency)
+	public static final int OFFSET_ENTRY_SIZE = 12;
+	
+	// Postings per block, and bytes per skip table entry (int last doc id + int block offset)
+	public static final int SKIP_INTERVAL = 128;
+	public static final int SKIP_ENTRY_SIZE = 8;
+	
+	// Bytes per positions skip table entry (int offset of a block's positions)
+	public static final int POSITION_SKIP_ENTRY_SIZE = 4;
+	
+	// Bytes per block max table entry (float)
+	public static final int BLOCK_MAX_ENTRY_SIZE = 4;
+	
+	// Bytes before the first impact (int number of bits), and the largest number of bits an impact can have
+	public static final int IMPACTS_HEADER_SIZE = 4;
+	public static final int MAX_IMPACT_BITS = 16;
+	
+	// Postings sorted by impact in memory at a time (8 bytes each)
+	public static final int IMPACT_ORDER_RUN_SIZE = 1 << 19;
+	
+	private DataOutputStream postingsOut;
+	private DataOutputStream offsetsOut;
+	private long offset = 0;
+	private int numTerms = 0;
+	
+	// Reusable buffer for encoding the current postings list
+	private static final int FLUSH_SIZE = 1 << 16;
+	private final byte[] buffer = new byte[FLUSH_SIZE + 10];
+	private int bufferSize = 0;
+	
+	// State of the current term
+	private long termBytes = 0;
+	private int prevDocId = 0;
+	private int df = 0;
+	private int[] skipDocIds = new int[16];
+	private int[] skipOffsets = new int[16];
+	private float[] blockMaxes = new float[16];
+	private float blockMax = 0;
+	
+	// The segment's doc lengths, for the block maxima
+	private final MappedFile docLengths;
+	private final double averageDocLength;
+	
+	// Positions stream (null if the index is not positional)
+	private DataOutputStream positionsOut = null;
+	private DataOutputStream positionsOffsetsOut = null;
+	private long positionsOffset = 0;
+	private long termPositionBytes = 0;
+	private byte[] positionBuffer = new byte[64];
+	private int[] positionSkips = new int[16];
+	
+	// Impacts stream (null if impacts are not stored)
+	private DataOutputStream impactsOut = null;
+	private DataOutputStream impactsOffsetsOut = null;
+	private final int impactBits;
+	private long impactsOffset = IMPACTS_HEADER_SIZE;
+	
+	// Impact-ordered stream (null if it is not written), with the current run's postings as (inverted impact, doc id) sort keys
+	private DataOutputStream impactOrderOut = null;
+	private DataOutputStream impactOrderOffsetsOut = null;
+	private long impactOrderOffset = 0;
+	private long[] impactOrderKeys = new long[16];
+	private int numImpactOrderKeys = 0;
+	private byte[] impactOrderBuffer = new byte[64];
+	private int impactOrderLength = 0;
+	
+	// The current term's groups, indexed by inverted impact (number of postings, number of bytes and last doc id)
+	private int[] groupCounts;
+	private int[] groupBytes;
+	private int[] groupLastDocIds;
+	private final IntList groupKeys = new IntList();
+	
+	// The encoded chunks of groups of the current term, as (inverted impact, number of bytes) pairs in spilled and buffered order
+	private final IntList spilledChunks = new IntList();
+	private final IntList bufferedChunks = new IntList();
+	private final File spillFile;
+	private RandomAccessFile spill = null;
+	private long spillLength = 0;
+	
+	public PostingsWriter(File indexDir) throws IOException {
+		this(indexDir, false);
+	}
+	
+	public PostingsWriter(File indexDir, boolean positions) throws IOException {
+		this(indexDir, positions, 0, false);
+	}
+	
+	/*
+	 * @param indexDir		The segment directory to write the files to
+	 * @param positions		Whether to write a positions stream (each posting then needs addPositions)
+	 * @param impactBits	The number of bits of each quantized impact (0 to not write impacts)
+	 * @param impactOrder	Whether to also write the postings impact-ordered (requires impacts)
+	 */
+	public PostingsWriter(File indexDir, boolean positions, int impactBits, boolean impactOrder) throws IOException {
+		if (impactBits < 0 || impactBits > MAX_IMPACT_BITS) {
+			throw new IllegalArgumentException("Impacts must have 1 to " + MAX_IMPACT_BITS + " bits: " + impactBits);
+		}
+		if (impactOrder && impactBits == 0) {
+			throw new IllegalArgumentException("Impact-ordered postings require impacts");
+		}
+		
+		docLengths = new MappedFile(new File(indexDir, DocTableWriter.DOC_LENGTHS_FILE));
+		averageDocLength = docLengths.getDouble(4);
+		
+		postingsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + POSTINGS_FILE), 1 << 16));
+		offsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + OFFSETS_FILE), 1 << 16));
+		
+		if (positions) {
+			positionsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + POSITIONS_FILE), 1 << 16));
+			positionsOffsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + POSITIONS_OFFSETS_FILE), 1 << 16));
+		}
+		
+		this.impactBits = impactBits;
+		if (impactBits > 0) {
+			impactsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + IMPACTS_FILE), 1 << 16));
+			impactsOffsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + IMPACTS_OFFSETS_FILE), 1 << 16));
+			impactsOut.writeInt(impactBits);
+		}
+		
+		spillFile = new File(indexDir, IMPACT_ORDER_SPILL_FILE);
+		if (impactOrder) {
+			int numGroups = 1 << impactBits;
+			groupCounts = new int[numGroups];
+			groupBytes = new int[numGroups];
+			groupLastDocIds = new int[numGroups];
+			impactOrderOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + IMPACT_ORDER_FILE), 1 << 16));
+			impactOrderOffsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexDir + "/" + IMPACT_ORDER_OFFSETS_FILE), 1 << 16));
+		}
+	}
+	
+	/*
+	 * Returns whether the writer writes a positions stream.
+	 */
+	public boolean hasPositions() {
+		return positionsOut != null;
+	}
+	
+	/*
+	 * Returns the number of bits of the impacts the writer stores, or 0 if it stores none.
+	 */
+	public int getImpactBits() {
+		return impactBits;
+	}
+	
+	/*
+	 * Returns whether the writer writes impact-ordered postings.
+	 */
+	public boolean hasImpactOrder() {
+		return impactOrderOut != null;
+	}
+	
+	/*
+	 * The method encodes and appends the postings list of the next term id.
+	 * 
+	 * @param docIds	The doc ids containing the term, in increasing order
+	 * @param freqs		The term frequency in each of the doc ids
+	 * @param df		The number of postings to write from the two arrays
+	 */
+	public void writeTerm(int[] docIds, int[] freqs, int df) throws IOException {
+		startTerm();
+		for (int i = 0; i < df; i++) {
+			addPosting(docIds[i], freqs[i]);
+		}
+		finishTerm();
+	}
+	
+	/*
+	 * The method begins the postings list of the next term id. Postings are then
+	 * streamed with addPosting and the list is completed with finishTerm, so a
+	 * term's list never has to be held in memory as a whole.
+	 */
+	public void startTerm() {
+		bufferSize = 0;
+		termBytes = 0;
+		termPositionBytes = 0;
+		prevDocId = 0;
+		df = 0;
+		blockMax = 0;
+	}
+	
+	/*
+	 * The method appends a posting to the current term's list.
+	 * 
+	 * @param docId		The doc id, greater than the previous doc id of the term
+	 * @param freq		The term frequency in the document
+	 */
+	public void addPosting(int docId, int freq) throws IOException {
+		writeVByte(docId - prevDocId);
+		writeVByte(freq);
+		prevDocId = docId;
+		df += 1;
+		
+		// The first posting of a block (after the first) records where its positions start
+		if (positionsOut != null && df > SKIP_INTERVAL && (df - 1) % SKIP_INTERVAL == 0) {
+			int entry = (df - 1) / SKIP_INTERVAL - 1;
+			if (entry == positionSkips.length) {
+				positionSkips = Arrays.copyOf(positionSkips, entry * 2);
+			}
+			positionSkips[entry] = (int) termPositionBytes;
+		}
+		
+		int docLength = docLengths.getInt(DocTableWriter.DOC_LENGTHS_HEADER_SIZE + 4L * docId);
+		float impact = getImpact(freq, docLength, averageDocLength);
+		blockMax = Math.max(blockMax, impact);
+		
+		if (impactsOut != null) {
+			int quantized = quantizeImpact(impact, impactBits);
+			if (impactBits <= 8) {
+				impactsOut.writeByte(quantized);
+			} else {
+				impactsOut.writeShort(quantized);
+			}
+			
+			if (impactOrderOut != null) {
+				if (numImpactOrderKeys == IMPACT_ORDER_RUN_SIZE) {
+					spillImpactOrderRun();
+				}
+				if (numImpactOrderKeys == impactOrderKeys.length) {
+					impactOrderKeys = Arrays.copyOf(impactOrderKeys, numImpactOrderKeys * 2);
+				}
+				// Sorting the keys puts the highest impacts first, and the doc ids of an impact in increasing order
+				impactOrderKeys[numImpactOrderKeys++] = ((long) (((1 << impactBits) - 1) - quantized) << 32) | docId;
+			}
+		}
+		
+		if (df % SKIP_INTERVAL == 0) {
+			int block = df / SKIP_INTERVAL - 1;
+			if (block == skipDocIds.length) {
+				skipDocIds = Arrays.copyOf(skipDocIds, block * 2);
+				skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+				blockMaxes = Arrays.copyOf(blockMaxes, block * 2);
+			}
+			skipDocIds[block] = docId;
+			skipOffsets[block] = (int) (termBytes + bufferSize); // The next block starts here
+			blockMaxes[block] = blockMax;
+			blockMax = 0;
+		}
+		
+		if (bufferSize >= FLUSH_SIZE) {
+			flushBuffer();
+		}
+	}
+	
+	/*
+	 * The method appends the positions of the posting just added with addPosting.
+	 * 
+	 * @param positions		The array holding the positions, in increasing order
+	 * @param start			The index of the first position in the array
+	 * @param count			The number of positions (the posting's term frequency)
+	 */
+	public void addPositions(int[] positions, int start, int count) throws IOException {
+		if (positionBuffer.length < 5 * count) {
+			positionBuffer = new byte[5 * count];
+		}
+		
+		int length = 0;
+		int prevPosition = -1;
+		for (int i = start; i < start + count; i++) {
+			int value = positions[i] - prevPosition;
+			while (value >= 0x80) {
+				positionBuffer[length++] = (byte) (value & 0x7F);
+				value >>>= 7;
+			}
+			positionBuffer[length++] = (byte) (value | 0x80);
+			prevPosition = positions[i];
+		}
+		
+		int prefix = length;
+		while (prefix >= 0x80) {
+			positionsOut.write(prefix & 0x7F);
+			prefix >>>= 7;
+			termPositionBytes += 1;
+		}
+		positionsOut.write(prefix | 0x80);
+		positionsOut.write(positionBuffer, 0, length);
+		termPositionBytes += 1 + length;
+	}
+	
+	/*
+	 * The method completes the current term's list and records its offset table entry.
+	 */
+	public void finishTerm() throws IOException {
+		flushBuffer();
+		
+		int numSkips = getNumSkips(df);
+		for (int i = 0; i < numSkips; i++) {
+			postingsOut.writeInt(skipDocIds[i]);
+			postingsOut.writeInt(skipOffsets[i]);
+		}
+		termBytes += (long) numSkips * SKIP_ENTRY_SIZE;
+		
+		int numBlocks = getNumBlocks(df);
+		if (df % SKIP_INTERVAL != 0) {
+			if (numBlocks > blockMaxes.length) {
+				blockMaxes = Arrays.copyOf(blockMaxes, numBlocks);
+			}
+			blockMaxes[numBlocks - 1] = blockMax; // The last block is not full
+		}
+		for (int i = 0; i < numBlocks; i++) {
+			postingsOut.writeFloat(blockMaxes[i]);
+		}
+		termBytes += (long) numBlocks * BLOCK_MAX_ENTRY_SIZE;
+		
+		offsetsOut.writeLong(offset);
+		offsetsOut.writeInt(df);
+		
+		offset += termBytes;
+		numTerms += 1;
+		
+		if (positionsOut != null) {
+			for (int i = 0; i < numSkips; i++) {
+				positionsOut.writeInt(positionSkips[i]);
+			}
+			termPositionBytes += (long) numSkips * POSITION_SKIP_ENTRY_SIZE;
+			positionsOffsetsOut.writeLong(positionsOffset);
+			positionsOffset += termPositionBytes;
+		}
+		
+		if (impactsOut != null) {
+			impactsOffsetsOut.writeLong(impactsOffset);
+			impactsOffset += (long) df * getImpactSize(impactBits);
+		}
+		
+		if (impactOrderOut != null) {
+			impactOrderOffsetsOut.writeLong(impactOrderOffset);
+			impactOrderOffset += writeImpactOrder();
+		}
+	}
+	
+	/*
+	 * The method sorts the current run of impact-ordered postings, and appends the doc id gaps of
+	 * each of its groups to impactOrderBuffer as a chunk. The doc ids of a group increase from
+	 * run to run, so the chunks of a group are concatenated in run order.
+	 */
+	private void encodeImpactOrderRun() {
+		Arrays.sort(impactOrderKeys, 0, numImpactOrderKeys);
+		
+		for (int i = 0; i < numImpactOrderKeys; ) {
+			int key = (int) (impactOrderKeys[i] >>> 32);
+			if (groupCounts[key] == 0) {
+				groupKeys.add(key);
+			}
+			
+			int start = impactOrderLength;
+			int prev = groupLastDocIds[key];
+			int j = i;
+			while (j < numImpactOrderKeys && (int) (impactOrderKeys[j] >>> 32) == key) {
+				if (impactOrderLength + 5 > impactOrderBuffer.length) {
+					impactOrderBuffer = Arrays.copyOf(impactOrderBuffer, impactOrderBuffer.length * 2);
+				}
+				int docId = (int) impactOrderKeys[j];
+				impactOrderLength = writeVByte(impactOrderBuffer, impactOrderLength, docId - prev);
+				prev = docId;
+				j++;
+			}
+			
+			groupCounts[key] += j - i;
+			groupBytes[key] += impactOrderLength - start;
+			groupLastDocIds[key] = prev;
+			bufferedChunks.add(key);
+			bufferedChunks.add(impactOrderLength - start);
+			i = j;
+		}
+		numImpactOrderKeys = 0;
+	}
+	
+	/*
+	 * The method encodes a full run of the current term's impact-ordered postings and appends
+	 * its chunks to the spill file.
+	 */
+	private void spillImpactOrderRun() throws IOException {
+		encodeImpactOrderRun();
+		
+		if (spill == null) {
+			spill = new RandomAccessFile(spillFile, "rw");
+		}
+		spill.seek(spillLength);
+		spill.write(impactOrderBuffer, 0, impactOrderLength);
+		spillLength += impactOrderLength;
+		impactOrderLength = 0;
+		
+		for (int i = 0; i < bufferedChunks.size(); i++) {
+			spilledChunks.add(bufferedChunks.get(i));
+		}
+		bufferedChunks.clear();
+	}
+	
+	/*
+	 * The method writes the current term's postings impact-ordered: its group table, then the
+	 * chunks of each group (the spilled ones first) from the highest impact down.
+	 * 
+	 * @return 		The number of bytes written
+	 */
+	private long writeImpactOrder() throws IOException {
+		int maxImpact = (1 << impactBits) - 1;
+		encodeImpactOrderRun();
+		
+		int[] keys = groupKeys.toArray();
+		Arrays.sort(keys);
+		
+		byte[] table = new byte[5 * (3 * keys.length + 1)];
+		int tableLength = writeVByte(table, 0, keys.length);
+		long length = 0;
+		for (int key : keys) {
+			tableLength = writeVByte(table, tableLength, maxImpact - key);
+			tableLength = writeVByte(table, tableLength, groupCounts[key]);
+			tableLength = writeVByte(table, tableLength, groupBytes[key]);
+			length += groupBytes[key];
+		}
+		impactOrderOut.write(table, 0, tableLength);
+		
+		// The spilled chunks (offset, inverted impact and number of bytes) sorted by group, in run order within a group
+		int numSpilled = spilledChunks.size() / 2;
+		long[] spilled = new long[numSpilled];
+		long[] spilledOffsets = new long[numSpilled];
+		long spillOffset = 0;
+		for (int i = 0; i < numSpilled; i++) {
+			spilled[i] = ((long) spilledChunks.get(2 * i) << 32) | i;
+			spilledOffsets[i] = spillOffset;
+			spillOffset += spilledChunks.get(2 * i + 1);
+		}
+		Arrays.sort(spilled);
+		
+		// The last run's chunks are in group order, with a group at most once
+		int nextSpilled = 0;
+		int nextBuffered = 0;
+		int bufferedOffset = 0;
+		for (int key : keys) {
+			while (nextSpilled < numSpilled && (int) (spilled[nextSpilled] >>> 32) == key) {
+				int chunk = (int) spilled[nextSpilled++];
+				copySpilled(spilledOffsets[chunk], spilledChunks.get(2 * chunk + 1));
+			}
+			if (nextBuffered < bufferedChunks.size() && bufferedChunks.get(nextBuffered) == key) {
+				int chunkLength = bufferedChunks.get(nextBuffered + 1);
+				impactOrderOut.write(impactOrderBuffer, bufferedOffset, chunkLength);
+				bufferedOffset += chunkLength;
+				nextBuffered += 2;
+			}
+			
+			groupCounts[key] = 0;
+			groupBytes[key] = 0;
+			groupLastDocIds[key] = 0;
+		}
+		
+		groupKeys.clear();
+		spilledChunks.clear();
+		bufferedChunks.clear();
+		impactOrderLength = 0;
+		spillLength = 0;
+		return tableLength + length;
+	}
+	
+	/*
+	 * The method copies a spilled chunk to the impact-ordered stream, through the postings
+	 * buffer (which is empty once a term's postings are flushed).
+	 */
+	private void copySpilled(long offset, int length) throws IOException {
+		spill.seek(offset);
+		while (length > 0) {
+			int n = Math.min(length, buffer.length);
+			spill.readFully(buffer, 0, n);
+			impactOrderOut.write(buffer, 0, n);
+			length -= n;
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		postingsOut.write(buffer, 0, bufferSize);
+		termBytes += bufferSize;
+		bufferSize = 0;
+	}
+	
+	/*
+	 * Returns the number of skip table entries of a list (one per block boundary).
+	 * 
+	 * @param df	The number of postings in the list
+	 */
+	public static int getNumSkips(int df) {
+		return df == 0 ? 0 : (df - 1) / SKIP_INTERVAL;
+	}
+	
+	/*
+	 * Returns the number of blocks of a list (and entries in its block max table).
+	 * 
+	 * @param df	The number of postings in the list
+	 */
+	public static int getNumBlocks(int df) {
+		return (df + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+	}
+	
+	/*
+	 * Returns the BM25 term frequency component tf / (tf + K) of a posting, rounded up to a float
+	 * so that it never understates the score computed at query time.
+	 * 
+	 * @param freq				The term frequency in the document
+	 * @param docLength			The length of the document
+	 * @param averageDocLength	The average document length the score is normalized with
+	 */
+	public static float getImpact(int freq, int docLength, double averageDocLength) {
+		double K = BM25Ranking.K1 * ((1 - BM25Ranking.B) + BM25Ranking.B * docLength / averageDocLength);
+		double impact = freq / (freq + K);
+		float rounded = (float) impact;
+		return rounded < impact ? Math.nextUp(rounded) : rounded;
+	}
+	
+	/*
+	 * Returns a term frequency component (see getImpact) rounded to the nearest of 2^bits evenly
+	 * spaced levels from 0 to 1, as the integer level from 0 to 2^bits - 1.
+	 * 
+	 * @param impact	The term frequency component, from 0 to 1
+	 * @param bits		The number of bits of the quantized impact
+	 */
+	public static int quantizeImpact(float impact, int bits) {
+		int maxImpact = (1 << bits) - 1;
+		return (int) Math.min(maxImpact, Math.round((double) impact * maxImpact));
+	}
+	
+	/*
+	 * Returns the number of bytes each impact of the given number of bits is stored in.
+	 */
+	public static int getImpactSize(int bits) {
+		return bits <= 8 ? 1 : 2;
+	}
+	
+	/*
+	 * Returns the number of terms written so far (i.e., the next term id).
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+	
+	public void close() throws IOException {
+		postingsOut.close();
+		offsetsOut.close();
+		
+		if (positionsOut != null) {
+			positionsOut.close();
+			positionsOffsetsOut.close();
+		}
+		
+		if (impactsOut != null) {
+			impactsOut.close();
+			impactsOffsetsOut.close();
+		}
+		
+		if (impactOrderOut != null) {
+			impactOrderOut.close();
+			impactOrderOffsetsOut.close();
+		}
+		
+		if (spill != null) {
+			spill.close();
+			spillFile.delete();
+		}
+	}
+	
+	/*
+	 * The method appends a non-negative integer to the buffer using variable-byte
+	 * encoding (7 data bits per byte, high bit set on the final byte).
+	 * 
+	 * @param value		The value to encode
+	 */
+	private void writeVByte(int value) {
+		while (value >= 0x80) {
+			buffer[bufferSize++] = (byte) (value & 0x7F);
+			value >>>= 7;
+		}
+		buffer[bufferSize++] = (byte) (value | 0x80);
+	}
+	
+	/*
+	 * The method writes a non-negative integer to an array using variable-byte encoding (as
+	 * writeVByte above).
+	 * 
+	 * @param dest		The array to write to, with room for 5 bytes at length
+	 * @param length	The index of dest to write the first byte to
+	 * @param value		The value to encode
+	 * @return 			The index after the last byte written
+	 */
+	private static int writeVByte(byte[] dest, int length, int value) {
+		while (value >= 0x80) {
+			dest[length++] = (byte) (value & 0x7F);
+			value >>>= 7;
+		}
+		dest[length++] = (byte) (value | 0x80);
+		return length;
+	}
+}
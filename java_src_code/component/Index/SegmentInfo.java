@@ -0,0 +1,101 @@
+package component.Index;
+
+import java.io.File;
+
+/*
+ * Describes one immutable segment of an index: the subdirectory holding its files, the
+ * internal id of its first document and the statistics needed for collection-wide scoring.
+ * A segment's postings, doc tables and document store use local ids (0 to numDocs - 1),
+ * which are offset by baseDocId to give the collection's internal ids.
+ * 
+ * The segment's files never change. Deleted documents are recorded in a separate live docs
+ * file whose generation (0 if nothing is deleted) is kept here with the number of deletions.
+ */
+public class SegmentInfo {
+	private final String name;
+	private final int baseDocId;
+	private final int numDocs;
+	private final long totalLength;
+	private final int delCount;
+	private final long delGen;
+	
+	/*
+	 * @param name			The name of the segment's subdirectory
+	 * @param baseDocId		The internal id of the segment's first document
+	 * @param numDocs		The number of documents in the segment
+	 * @param totalLength	The total number of tokens in the segment's documents
+	 */
+	public SegmentInfo(String name, int baseDocId, int numDocs, long totalLength) {
+		this(name, baseDocId, numDocs, totalLength, 0, 0);
+	}
+	
+	/*
+	 * @param delCount		The number of deleted documents in the segment
+	 * @param delGen		The generation of the segment's live docs file (0 if none are deleted)
+	 */
+	public SegmentInfo(String name, int baseDocId, int numDocs, long totalLength, int delCount, long delGen) {
+		this.name = name;
+		this.baseDocId = baseDocId;
+		this.numDocs = numDocs;
+		this.totalLength = totalLength;
+		this.delCount = delCount;
+		this.delGen = delGen;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getBaseDocId() {
+		return baseDocId;
+	}
+	
+	public int getNumDocs() {
+		return numDocs;
+	}
+	
+	public long getTotalLength() {
+		return totalLength;
+	}
+	
+	public int getDelCount() {
+		return delCount;
+	}
+	
+	public long getDelGen() {
+		return delGen;
+	}
+	
+	/*
+	 * Returns the number of documents in the segment that are not deleted.
+	 */
+	public int getNumLiveDocs() {
+		return numDocs - delCount;
+	}
+	
+	/*
+	 * Returns a copy of this segment with a new set of deletions.
+	 * 
+	 * @param newDelCount	The number of deleted documents
+	 * @param newDelGen		The generation of the live docs file holding the deletions
+	 */
+	public SegmentInfo withDeletes(int newDelCount, long newDelGen) {
+		return new SegmentInfo(name, baseDocId, numDocs, totalLength, newDelCount, newDelGen);
+	}
+	
+	/*
+	 * Returns a copy of this segment starting at a different internal id.
+	 */
+	public SegmentInfo withBaseDocId(int newBaseDocId) {
+		return new SegmentInfo(name, newBaseDocId, numDocs, totalLength, delCount, delGen);
+	}
+	
+	/*
+	 * Returns the directory holding the segment's files.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 */
+	public File getDir(File indexDir) {
+		return new File(indexDir, name);
+	}
+}
@@ -0,0 +1,248 @@
+package component.Index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/*
+ * The list of segments making up an index, stored in segments.txt in the index directory:
+ * 
+ * next-segment <n>
+ * obsolete <name> ...		(optional: merged-away segments whose directories are still on disk)
+ * <name> <base doc id> <number of docs> <total doc length> <deleted docs> <live docs generation>
+ * 		(one line per segment, in id order)
+ * 
+ * Segments are immutable once written. New segments become visible by rewriting this file,
+ * which is done atomically (written to a temporary file and renamed over the old one), so
+ * a reader always sees either the old or the new set of segments.
+ * 
+ * The directories of segments that a commit merges away are not deleted by that commit, as
+ * a reader in another process may have just read the previous list and still be opening
+ * them. They are recorded as obsolete instead and deleted by the next commit, the same way
+ * DocDeleter keeps the previous live docs generation.
+ */
+public class SegmentInfos {
+	public static final String SEGMENTS_FILE = "segments.txt";
+	private static final String NEXT_SEGMENT = "next-segment";
+	private static final String OBSOLETE = "obsolete";
+	
+	private final ArrayList<SegmentInfo> segments = new ArrayList<SegmentInfo>();
+	private final ArrayList<String> obsolete = new ArrayList<String>();
+	private int nextSegment = 0;
+	
+	/*
+	 * Returns whether the directory holds an index with a segments file.
+	 */
+	public static boolean exists(File indexDir) {
+		return new File(indexDir, SEGMENTS_FILE).exists();
+	}
+	
+	/*
+	 * The method reads the segments file of an index.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 * @return			The index's segments
+	 */
+	public static SegmentInfos read(File indexDir) throws IOException {
+		SegmentInfos infos = new SegmentInfos();
+		BufferedReader br = new BufferedReader(new FileReader(new File(indexDir, SEGMENTS_FILE)));
+		
+		try {
+			String line = br.readLine();
+			if (line == null || !line.startsWith(NEXT_SEGMENT + " ")) {
+				throw new IOException("Corrupt " + SEGMENTS_FILE + " in " + indexDir);
+			}
+			infos.nextSegment = Integer.parseInt(line.substring(NEXT_SEGMENT.length() + 1).trim());
+			
+			while ((line = br.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.startsWith(OBSOLETE + " ")) {
+					for (String name : line.substring(OBSOLETE.length() + 1).trim().split(" ")) {
+						infos.obsolete.add(name);
+					}
+					continue;
+				}
+				String[] fields = line.split(" ");
+				if (fields.length != 4 && fields.length != 6) {
+					throw new IOException("Corrupt " + SEGMENTS_FILE + " entry '" + line + "' in " + indexDir);
+				}
+				SegmentInfo segment = new SegmentInfo(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+				if (fields.length == 6) {
+					segment = segment.withDeletes(Integer.parseInt(fields[4]), Long.parseLong(fields[5]));
+				}
+				infos.add(segment);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Corrupt " + SEGMENTS_FILE + " in " + indexDir, e);
+		} finally {
+			br.close();
+		}
+		
+		return infos;
+	}
+	
+	/*
+	 * The method atomically replaces the index's segments file with this list.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 */
+	public void write(File indexDir) throws IOException {
+		File tmp = new File(indexDir, SEGMENTS_FILE + ".tmp");
+		BufferedWriter bw = new BufferedWriter(new FileWriter(tmp));
+		
+		bw.write(NEXT_SEGMENT + " " + nextSegment);
+		bw.newLine();
+		if (!obsolete.isEmpty()) {
+			bw.write(OBSOLETE + " " + String.join(" ", obsolete));
+			bw.newLine();
+		}
+		for (SegmentInfo segment : segments) {
+			bw.write(segment.getName() + " " + segment.getBaseDocId() + " " + segment.getNumDocs() + " " + segment.getTotalLength()
+					+ " " + segment.getDelCount() + " " + segment.getDelGen());
+			bw.newLine();
+		}
+		bw.close();
+		
+		Files.move(tmp.toPath(), new File(indexDir, SEGMENTS_FILE).toPath(), 
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/*
+	 * Returns an unused segment name (the name is reserved once the list is written).
+	 */
+	public String newSegmentName() {
+		return "seg-" + nextSegment++;
+	}
+	
+	/*
+	 * Records a merged-away segment, whose directory is then deleted by the commit following the
+	 * one that writes this list (see deleteObsolete). The segment must no longer be in the list.
+	 * 
+	 * @param name	The name of the segment
+	 */
+	public void addObsolete(String name) {
+		obsolete.add(name);
+	}
+	
+	/*
+	 * The method deletes the directories of the segments recorded as obsolete by the previous
+	 * commit. It is called by a commit (with the IndexLock held) before it records any segments
+	 * of its own, so a reader of the previous segments file still finds every segment it lists.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 */
+	public void deleteObsolete(File indexDir) {
+		for (String name : obsolete) {
+			File dir = new File(indexDir, name);
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+			dir.delete();
+		}
+		obsolete.clear();
+	}
+	
+	public void add(SegmentInfo segment) {
+		segments.add(segment);
+	}
+	
+	public void set(int i, SegmentInfo segment) {
+		segments.set(i, segment);
+	}
+	
+	/*
+	 * Replaces consecutive segments with a single segment (e.g., the result of merging them).
+	 * 
+	 * @param start		The position of the first segment to replace
+	 * @param count		The number of segments to replace
+	 * @param segment	The segment taking their place
+	 */
+	public void replace(int start, int count, SegmentInfo segment) {
+		for (int i = 0; i < count; i++) {
+			segments.remove(start);
+		}
+		segments.add(start, segment);
+	}
+	
+	/*
+	 * Returns the position of the named segment, or -1 if the index has no such segment.
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < segments.size(); i++) {
+			if (segments.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	public int size() {
+		return segments.size();
+	}
+	
+	public SegmentInfo get(int i) {
+		return segments.get(i);
+	}
+	
+	/*
+	 * Returns the number of documents in the index (i.e., the next internal id).
+	 */
+	public int getNumDocs() {
+		int numDocs = 0;
+		for (SegmentInfo segment : segments) {
+			numDocs += segment.getNumDocs();
+		}
+		return numDocs;
+	}
+	
+	/*
+	 * Returns the number of documents in the index that are not deleted.
+	 */
+	public int getNumLiveDocs() {
+		int numLiveDocs = 0;
+		for (SegmentInfo segment : segments) {
+			numLiveDocs += segment.getNumLiveDocs();
+		}
+		return numLiveDocs;
+	}
+	
+	/*
+	 * Returns the position of the segment holding an internal id.
+	 */
+	public int findSegment(int docId) {
+		int lo = 0;
+		int hi = segments.size() - 1;
+		
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (segments.get(mid).getBaseDocId() <= docId) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+	
+	/*
+	 * Returns the total number of tokens in the index's documents.
+	 */
+	public long getTotalLength() {
+		long totalLength = 0;
+		for (SegmentInfo segment : segments) {
+			totalLength += segment.getTotalLength();
+		}
+		return totalLength;
+	}
+}
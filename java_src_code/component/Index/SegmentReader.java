@@ -0,0 +1,144 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Read access to a single segment of an index. The postings, the doc length table and the
+ * DOCNO table are all memory-mapped, so opening a segment takes constant time regardless
+ * of its size, and postings are decoded lazily when a term is looked up. Doc ids are local
+ * to the segment.
+ */
+public class SegmentReader {
+	private final PostingsReader postings;
+	private final MappedFile docLengths;
+	private final MappedFile docnos;
+	private final int numDocs;
+	private final double averageDocLength;
+	
+	/*
+	 * @param segmentDir	The directory holding the segment's files
+	 */
+	public SegmentReader(File segmentDir) throws IOException {
+		postings = new PostingsReader(segmentDir);
+		docLengths = new MappedFile(new File(segmentDir, DocTableWriter.DOC_LENGTHS_FILE));
+		docnos = new MappedFile(new File(segmentDir, DocTableWriter.DOCNOS_FILE));
+		
+		numDocs = docLengths.getInt(0);
+		averageDocLength = docLengths.getDouble(4);
+	}
+	
+	public int getNumTerms() {
+		return postings.getNumTerms();
+	}
+	
+	public int getDocFreq(int termId) {
+		return postings.getDocFreq(termId);
+	}
+	
+	public PostingsList getPostings(int termId) {
+		return postings.getPostings(termId);
+	}
+	
+	PostingsReader getPostingsReader() {
+		return postings;
+	}
+	
+	/*
+	 * See PostingsReader.readPostings.
+	 */
+	public int readPostings(int termId, int docBase, int[] docIds, int[] freqs, int start) {
+		return postings.readPostings(termId, docBase, docIds, freqs, start);
+	}
+	
+	public boolean hasPositions() {
+		return postings.hasPositions();
+	}
+	
+	/*
+	 * See PostingsReader.readPositionOffsets.
+	 */
+	public int readPositionOffsets(int termId, long[] offsets, int start) {
+		return postings.readPositionOffsets(termId, offsets, start);
+	}
+	
+	/*
+	 * See PostingsReader.getPositionsOffset.
+	 */
+	public long getPositionsOffset(int termId, int i) {
+		return postings.getPositionsOffset(termId, i);
+	}
+	
+	/*
+	 * See PostingsReader.readPositions.
+	 */
+	public void readPositions(long offset, int freq, int[] dest) {
+		postings.readPositions(offset, freq, dest);
+	}
+	
+	public int getImpactBits() {
+		return postings.getImpactBits();
+	}
+	
+	/*
+	 * See PostingsReader.readImpacts.
+	 */
+	public int readImpacts(int termId, int[] dest, int start) {
+		return postings.readImpacts(termId, dest, start);
+	}
+	
+	public boolean hasImpactOrder() {
+		return postings.hasImpactOrder();
+	}
+	
+	/*
+	 * See PostingsReader.getImpactOrderedList.
+	 */
+	public ImpactOrderedList getImpactOrderedList(int termId, int docBase) {
+		return postings.getImpactOrderedList(termId, docBase);
+	}
+	
+	/*
+	 * Returns the number of documents in the segment.
+	 */
+	public int getNumDocs() {
+		return numDocs;
+	}
+	
+	/*
+	 * Returns the average document length in the segment.
+	 */
+	public double getAverageDocLength() {
+		return averageDocLength;
+	}
+	
+	/*
+	 * Returns the number of tokens in a document.
+	 * 
+	 * @param docId		The segment's local id of the document
+	 */
+	public int getDocLength(int docId) {
+		return docLengths.getInt(DocTableWriter.DOC_LENGTHS_HEADER_SIZE + 4L * docId);
+	}
+	
+	/*
+	 * Returns the DOCNO of a document, or null if the internal id is out of range.
+	 * 
+	 * @param docId		The segment's local id of the document
+	 */
+	public String getDocno(int docId) {
+		if (docId < 0 || docId >= numDocs) {
+			return null;
+		}
+		
+		byte[] bytes = new byte[DocTableWriter.DOCNO_WIDTH];
+		docnos.getBytes((long) docId * DocTableWriter.DOCNO_WIDTH, bytes, 0, bytes.length);
+		
+		int length = 0;
+		while (length < bytes.length && bytes[length] != 0) {
+			length++;
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
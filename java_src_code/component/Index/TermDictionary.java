@@ -0,0 +1,227 @@
+package component.Index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Read access to the term dictionary written by TermDictionaryWriter. The whole file is
+ * memory-mapped, so opening it takes constant time and the only heap it uses is the header.
+ * 
+ * A term is found by binary searching the first term of each block and decoding at most one
+ * block of front-coded terms. A term id is mapped back to its term through the ordinal table,
+ * which gives the term's block and its position in the block. Terms can also be iterated in
+ * sorted order from a prefix.
+ * 
+ * Lookups allocate their own decoding state, so a dictionary can be shared by threads.
+ */
+public class TermDictionary {
+	private final MappedFile file;
+	private final int numTerms;
+	private final int blockSize;
+	private final int numBlocks;
+	private final int maxTermLength;
+	private final long ordinalsStart;
+	
+	public TermDictionary(File indexDir) throws IOException {
+		file = new MappedFile(new File(indexDir, TermDictionaryWriter.DICTIONARY_FILE));
+		numTerms = file.getInt(0);
+		blockSize = file.getInt(4);
+		numBlocks = file.getInt(8);
+		maxTermLength = file.getInt(12);
+		ordinalsStart = TermDictionaryWriter.HEADER_SIZE + (long) numBlocks * 8;
+	}
+	
+	/*
+	 * Returns whether an index directory has a term dictionary.
+	 */
+	public static boolean exists(File indexDir) {
+		return new File(indexDir, TermDictionaryWriter.DICTIONARY_FILE).exists();
+	}
+	
+	/*
+	 * Returns the number of terms in the dictionary (i.e., the next term id).
+	 */
+	public int size() {
+		return numTerms;
+	}
+	
+	/*
+	 * The method finds the id of a term.
+	 * 
+	 * @param term		The term to look up
+	 * @return 			The term id, or -1 if the term is not in the dictionary
+	 */
+	public int getTermId(String term) {
+		byte[] target = term.getBytes(StandardCharsets.UTF_8);
+		if (numTerms == 0 || target.length > maxTermLength) {
+			return -1;
+		}
+		
+		Cursor cursor = new Cursor();
+		int block = findBlock(target, cursor);
+		if (block < 0) {
+			return -1;
+		}
+		
+		int end = Math.min(blockSize, numTerms - block * blockSize);
+		cursor.seekBlock(block);
+		for (int i = 0; i < end; i++) {
+			cursor.next(i == 0);
+			int cmp = Arrays.compareUnsigned(cursor.term, 0, cursor.termLength, target, 0, target.length);
+			if (cmp == 0) {
+				return cursor.termId;
+			} else if (cmp > 0) {
+				break;
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * The method finds the term of a term id.
+	 * 
+	 * @param termId	The term id
+	 * @return 			The term, or null if the id is out of range
+	 */
+	public String getTerm(int termId) {
+		if (termId < 0 || termId >= numTerms) {
+			return null;
+		}
+		
+		int ord = file.getInt(ordinalsStart + (long) termId * 4);
+		Cursor cursor = new Cursor();
+		cursor.seekBlock(ord / blockSize);
+		for (int i = 0; i <= ord % blockSize; i++) {
+			cursor.next(i == 0);
+		}
+		return new String(cursor.term, 0, cursor.termLength, StandardCharsets.UTF_8);
+	}
+	
+	/*
+	 * The method returns an iterator over the terms starting with a prefix, in sorted order.
+	 * 
+	 * @param prefix	The prefix of the terms (an empty prefix iterates over every term)
+	 */
+	public TermIterator iterator(String prefix) {
+		return new TermIterator(prefix.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/*
+	 * The method finds the last block whose first term is not greater than the target.
+	 * 
+	 * @param target	The UTF-8 bytes of the term
+	 * @param cursor	Decoding state to reuse
+	 * @return 			The block number, or -1 if the target sorts before every term
+	 */
+	private int findBlock(byte[] target, Cursor cursor) {
+		int lo = 0;
+		int hi = numBlocks - 1;
+		int found = -1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			cursor.seekBlock(mid);
+			cursor.next(true);
+			if (Arrays.compareUnsigned(cursor.term, 0, cursor.termLength, target, 0, target.length) <= 0) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+	
+	/*
+	 * Iterates over the terms starting with a prefix. Call next before reading each term.
+	 */
+	public class TermIterator {
+		private final byte[] prefix;
+		private final Cursor cursor = new Cursor();
+		private int ord;
+		private boolean done;
+		
+		private TermIterator(byte[] prefix) {
+			this.prefix = prefix;
+			
+			// Start at the block that may hold the first term with the prefix
+			int block = Math.max(findBlock(prefix, cursor), 0);
+			ord = block * blockSize - 1;
+			done = numTerms == 0;
+		}
+		
+		/*
+		 * The method advances to the next term with the prefix.
+		 * 
+		 * @return 		Whether there is another term
+		 */
+		public boolean next() {
+			while (!done && ord + 1 < numTerms) {
+				ord += 1;
+				if (ord % blockSize == 0) {
+					cursor.seekBlock(ord / blockSize);
+				}
+				cursor.next(ord % blockSize == 0);
+				
+				int cmp = Arrays.compareUnsigned(cursor.term, 0, Math.min(cursor.termLength, prefix.length),
+						prefix, 0, Math.min(cursor.termLength, prefix.length));
+				if (cmp < 0 || (cmp == 0 && cursor.termLength < prefix.length)) {
+					continue; // Sorts before the prefix
+				}
+				if (cmp > 0) {
+					break; // Past the last term with the prefix
+				}
+				return true;
+			}
+			done = true;
+			return false;
+		}
+		
+		public String term() {
+			return new String(cursor.term, 0, cursor.termLength, StandardCharsets.UTF_8);
+		}
+		
+		public int termId() {
+			return cursor.termId;
+		}
+	}
+	
+	/*
+	 * Decoding state for reading the front-coded terms of a block in order.
+	 */
+	private class Cursor {
+		final byte[] term = new byte[maxTermLength];
+		int termLength;
+		int termId;
+		long pos;
+		
+		void seekBlock(int block) {
+			pos = file.getLong(TermDictionaryWriter.HEADER_SIZE + (long) block * 8);
+		}
+		
+		/*
+		 * The method decodes the next term, which is stored in full if it is the first of its block.
+		 */
+		void next(boolean first) {
+			int prefixLength = first ? 0 : readVByte();
+			int suffixLength = readVByte();
+			file.getBytes(pos, term, prefixLength, suffixLength);
+			pos += suffixLength;
+			termLength = prefixLength + suffixLength;
+			termId = readVByte();
+		}
+		
+		private int readVByte() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			while (((b = file.getByte(pos++)) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			return value | ((b & 0x7F) << shift);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package component.Index;
+
+import component.Primitive.TermIdMap;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/*
+ * Writes the lexicon as a sorted, front-coded term dictionary (lexicon.dict):
+ * 
+ * header			int number of terms, int terms per block, int number of blocks,
+ * 					int length of the longest term (in bytes)
+ * block offsets	one long file offset per block
+ * ordinals		one int per term id: the term's position in sorted order
+ * blocks			the terms in sorted (unsigned UTF-8 byte) order, BLOCK_SIZE per block.
+ * 					The first term of a block is stored in full (vbyte length, bytes) and
+ * 					every other term as the length of the prefix it shares with the previous
+ * 					term and the remaining suffix (vbyte prefix length, vbyte suffix length,
+ * 					bytes). Each term is followed by its vbyte term id.
+ * 
+ * Term ids are not changed by sorting, so postings written with the ids assigned during
+ * indexing stay valid and appended batches can keep extending the id space.
+ */
+public class TermDictionaryWriter {
+	public static final String DICTIONARY_FILE = "lexicon.dict";
+	
+	public static final int HEADER_SIZE = 16;
+	public static final int BLOCK_SIZE = 16;
+	
+	/*
+	 * The method writes the dictionary of a lexicon, replacing any existing dictionary
+	 * atomically so open readers keep seeing the previous version.
+	 * 
+	 * @param indexDir	The index directory (root)
+	 * @param lexicon	A map of terms to term ids, with ids 0 to size - 1
+	 */
+	public static void write(File indexDir, TermIdMap lexicon) throws IOException {
+		int numTerms = lexicon.size();
+		byte[][] terms = new byte[numTerms][];
+		for (int termId = 0; termId < numTerms; termId++) {
+			terms[termId] = lexicon.getTerm(termId).getBytes(StandardCharsets.UTF_8);
+		}
+		
+		// Sort the term ids by term bytes
+		Integer[] order = new Integer[numTerms];
+		for (int i = 0; i < numTerms; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+		
+		int numBlocks = (numTerms + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		long[] blockOffsets = new long[numBlocks];
+		int[] ordinals = new int[numTerms];
+		int maxTermLength = 0;
+		
+		// Encode the blocks in memory first, since their offsets precede them in the file
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream(numTerms * 8);
+		long blocksStart = HEADER_SIZE + (long) numBlocks * 8 + (long) numTerms * 4;
+		byte[] previous = new byte[0];
+		
+		for (int ord = 0; ord < numTerms; ord++) {
+			int termId = order[ord];
+			byte[] term = terms[termId];
+			ordinals[termId] = ord;
+			maxTermLength = Math.max(maxTermLength, term.length);
+			
+			if (ord % BLOCK_SIZE == 0) {
+				blockOffsets[ord / BLOCK_SIZE] = blocksStart + blocks.size();
+				writeVByte(blocks, term.length);
+				blocks.write(term, 0, term.length);
+			} else {
+				int prefix = Arrays.mismatch(previous, term);
+				writeVByte(blocks, prefix);
+				writeVByte(blocks, term.length - prefix);
+				blocks.write(term, prefix, term.length - prefix);
+			}
+			writeVByte(blocks, termId);
+			previous = term;
+		}
+		
+		File tmpFile = new File(indexDir, DICTIONARY_FILE + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+		out.writeInt(numTerms);
+		out.writeInt(BLOCK_SIZE);
+		out.writeInt(numBlocks);
+		out.writeInt(maxTermLength);
+		for (long blockOffset : blockOffsets) {
+			out.writeLong(blockOffset);
+		}
+		for (int ord : ordinals) {
+			out.writeInt(ord);
+		}
+		blocks.writeTo(out);
+		out.close();
+		
+		Files.move(tmpFile.toPath(), new File(indexDir, DICTIONARY_FILE).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/*
+	 * The method appends a non-negative integer using variable-byte encoding
+	 * (7 data bits per byte, high bit set on the final byte).
+	 */
+	private static void writeVByte(ByteArrayOutputStream out, int value) {
+		while (value >= 0x80) {
+			out.write(value & 0x7F);
+			value >>>= 7;
+		}
+		out.write(value | 0x80);
+	}
+}
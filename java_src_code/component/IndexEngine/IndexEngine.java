@@ -1,238 +1,736 @@
 /* Name: Larissa Troper
  * MSCI 541 Homework 2 - Program 1: IndexEngine Updated
  * Date Written: 10 October 2023
- * Description: This program will parse a gzipped file of documents and create a directory system
- * of each individual document. The directory system is divided using the date in the DOCNO for 
- * each document.
+ * Description: This program will parse a gzipped file of documents and create a packed document
+ * store and an inverted index of the documents.
  * Input: The file path of the gzipped file and the filepath for where the root document directory
  * is to be created.
- * Output: A directory system of the documents in the gzipped file, a file mapping internal id to
- * DOCNO, a file mapping internal id to document length, a serialized lexicon object, a serialized 
- * reverse lexicon mapping, and a serialzied inverted index object.
+ * Output: A document store of the documents in the gzipped file, binary DOCNO and document length tables, a sorted front-coded 
+ * term dictionary (the lexicon), and a compressed binary postings file with its term offset table. The document store, tables and postings
+ * are written as a new segment of the index, so further batches can be appended to an existing index.
 */
 
 package component.IndexEngine;
 
-import component.Stemmer.PorterStemmer;
+import component.DocStore.DocStoreReader;
+import component.DocStore.DocStoreWriter;
+import component.Index.DocDeleter;
+import component.Index.DocTableWriter;
+import component.Index.IndexLock;
+import component.Index.PostingsReader;
+import component.Index.PostingsWriter;
+import component.Index.SegmentInfo;
+import component.Index.SegmentInfos;
+import component.Index.TermDictionary;
+import component.Index.TermDictionaryWriter;
+import component.Merge.MergeScheduler;
+import component.Merge.TieredMergePolicy;
+import component.Parser.DocumentSplitter;
+import component.Parser.GzipMembers;
+import component.Parser.TokenList;
+import component.Parser.TokenStream;
+import component.Parser.TrecDocument;
+import component.Parser.TrecParser;
+import component.Primitive.IntIntMap;
+import component.Primitive.IntList;
+import component.Primitive.TermIdMap;
+import component.Stemmer.StemCache;
 
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.InputStream;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.util.HashMap;
-import java.util.TreeMap;
 import java.util.Map;
 import java.util.ArrayList;
-import java.util.Set;
-import java.io.ObjectOutputStream;
-import java.io.FileOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class IndexEngine {
+	// Stems of frequent tokens, shared by the parsing workers
+	private static final StemCache STEM_CACHE = new StemCache();
+	
+	// The default file the indexing stats are written to, in the index directory
+	public static final String STATS_FILE = "indexing-stats.json";
 
 	public static void main(String[] args) {
 		if( args.length < 2) {
-			System.out.println("\nThe IndexEngine program requires two parameters: <path/read/latimes.gz> <path/write/filename> <stem>");
+			System.out.println("\nThe IndexEngine program requires two parameters: <path/read/latimes.gz> <path/write/filename> <stem> <threads=n> <memory=MB> <append> <update> <positions> <impacts=bits> <impactorder> <progress=seconds> <stats=path>");
 			
-			System.out.println("\nThe first parameter is the file path to the gzipped file of LA Times documents. The second parameter is the"
+			System.out.println("\nThe first parameter is the file path to the gzipped file of LA Times documents, or to a directory of gzipped"
+					+ " files (indexed in name order). The second parameter is the"
 					+ " path to a new root directory for storing each document and its metadata. There is a third optional argument 'stem' which"
-					+ "when included will use the Porter Stemmer on the document terms.\n");
+					+ " when included will use the Porter Stemmer on the document terms. The optional argument 'threads=n' sets the number of"
+					+ " threads used to parse and tokenize documents, and to decompress inputs split into several files or into members"
+					+ " written by the Rechunk program (defaults to the number of available processors). The optional argument"
+					+ " 'memory=MB' sets how many megabytes of postings are held in memory before being spilled to a temporary file (defaults"
+					+ " to a quarter of the maximum heap size). The optional argument 'append' adds the documents to an existing index as a new"
+					+ " segment instead of requiring a new directory (small segments are then merged by the tiered merge policy). The"
+					+ " optional argument 'update' appends like 'append', and also deletes"
+					+ " any existing document with the same DOCNO as a new document, replacing it with the new version. The optional argument"
+					+ " 'positions' also stores the position of every token, which phrase and proximity queries require (batches appended to"
+					+ " an index with positions always store them). The optional argument 'impacts=bits' also stores the BM25 term frequency"
+					+ " component of every posting quantized to the given number of bits (1 to 16), which the BM25 program's 'impacts' option"
+					+ " scores queries with (batches appended to an index with impacts store them with the same number of bits; the ImpactEval"
+					+ " program compares the rankings of each number of bits to exact BM25). The optional argument 'impactorder' (with"
+					+ " 'impacts=bits') also stores each term's postings grouped by impact from the highest down, which lets queries be"
+					+ " scored within a budget of postings or time (batches appended to an impact-ordered index always store them). The"
+					+ " optional argument 'progress=seconds' sets how often progress (documents per second, lexicon size and heap usage) is printed during the build (defaults to 10,"
+					+ " 0 turns it off). The optional argument 'stats=path' sets the file the indexing stats (per-stage timings and"
+					+ " throughput) are written to as JSON (defaults to indexing-stats.json in the index directory).\n");
 			System.exit(1);
 		}
 		
-		if (!args[0].contains(".gz")){
+		File input = new File(args[0]);
+		
+		if (!args[0].contains(".gz") && !input.isDirectory()){
 			System.out.println("\nERROR: This program is specifically designed to parse a gzipped document . Please ensure"
 					+ " the file path you are passing leads to the gzipped file.\n");
 			System.exit(2);
 		}
 		
-		if (!new File(args[0]).exists()) {
+		if (!input.exists()) {
 			System.out.println("\nERROR: Could not find " + args[0] + ". Please provide the correct file path to "
 					+ " the gzipped file.\n");
 			System.exit(3);
 		}
 		
+		if (GzipMembers.listInputFiles(input).length == 0) {
+			System.out.println("\nERROR: " + args[0] + " does not contain any gzipped files. Please provide a directory of .gz files.\n");
+			System.exit(3);
+		}
+		
 		
 		boolean stem = false;
-		if(args.length == 3 && args[2].toLowerCase().equals("stem")) {
-			stem = true;
+		boolean append = false;
+		boolean update = false;
+		boolean positions = false;
+		int impactBits = 0;
+		boolean impactOrder = false;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+		int progressSeconds = 10;
+		File statsFile = null;
+		
+		for (int i = 2; i < args.length; i++) {
+			String option = args[i].toLowerCase();
+			if (option.equals("stem")) {
+				stem = true;
+			} else if (option.equals("append")) {
+				append = true;
+			} else if (option.equals("update")) {
+				append = true;
+				update = true;
+			} else if (option.equals("positions")) {
+				positions = true;
+			} else if (option.equals("impactorder")) {
+				impactOrder = true;
+			} else if (option.startsWith("impacts=")) {
+				try {
+					impactBits = Integer.parseInt(option.substring("impacts=".length()));
+				} catch (NumberFormatException e) {
+					impactBits = 0;
+				}
+				if (impactBits < 1 || impactBits > PostingsWriter.MAX_IMPACT_BITS) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid impact precision. Please provide a number of bits from 1 to "
+							+ PostingsWriter.MAX_IMPACT_BITS + " (e.g., impacts=8).\n");
+					System.exit(5);
+				}
+			} else if (option.startsWith("threads=")) {
+				try {
+					numThreads = Integer.parseInt(option.substring("threads=".length()));
+				} catch (NumberFormatException e) {
+					numThreads = 0;
+				}
+				if (numThreads < 1) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid thread count. Please provide a positive integer (e.g., threads=4).\n");
+					System.exit(5);
+				}
+			} else if (option.startsWith("memory=")) {
+				try {
+					memoryBudget = Long.parseLong(option.substring("memory=".length())) * 1024 * 1024;
+				} catch (NumberFormatException e) {
+					memoryBudget = 0;
+				}
+				if (memoryBudget < 1) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid memory budget. Please provide a positive number of megabytes (e.g., memory=512).\n");
+					System.exit(5);
+				}
+			} else if (option.startsWith("progress=")) {
+				try {
+					progressSeconds = Integer.parseInt(option.substring("progress=".length()));
+				} catch (NumberFormatException e) {
+					progressSeconds = -1;
+				}
+				if (progressSeconds < 0) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid progress interval. Please provide a number of seconds (e.g., progress=10).\n");
+					System.exit(5);
+				}
+			} else if (option.startsWith("stats=")) {
+				statsFile = new File(args[i].substring("stats=".length()));
+			} else {
+				System.out.println("\nERROR: '" + args[i] + "' is not a valid option. Valid options are 'stem', 'threads=<n>', 'memory=<MB>', 'append', 'update',"
+						+ " 'positions', 'impacts=<bits>', 'impactorder', 'progress=<seconds>' and 'stats=<path>'.\n");
+				System.exit(5);
+			}
+		}
+		
+		if (impactOrder && impactBits == 0) {
+			System.out.println("\nERROR: 'impactorder' orders the postings by their quantized impacts. Please also provide 'impacts=<bits>' (e.g., impacts=8).\n");
+			System.exit(5);
+		}
+		
+		if (stem) {
 			args[1] = args[1]+"-stemmed";
 		}
 		
 		File rootDir = new File(args[1]);
 		
-		if (rootDir.exists()) {
-			System.out.println("\nERROR: " + rootDir + " is a directory that already exists. Please provide a new directory.\n");
+		if (rootDir.exists() && !append) {
+			System.out.println("\nERROR: " + rootDir + " is a directory that already exists. Please provide a new directory, or use"
+					+ " 'append' to add the documents to the existing index.\n");
+			System.exit(4);
+		}
+		
+		if (rootDir.exists() && !SegmentInfos.exists(rootDir)) {
+			System.out.println("\nERROR: " + rootDir + " is not an index directory. Please provide an existing index to append to.\n");
 			System.exit(4);
 		}
 		
 		rootDir.mkdirs();
 		
-		parseGzipToDocFiles(args[0], rootDir, stem);
+		if (statsFile == null) {
+			statsFile = new File(rootDir, STATS_FILE);
+		}
 		
+		if (!parseGzipToDocFiles(args[0], rootDir, stem, numThreads, memoryBudget, update, positions, impactBits, impactOrder, progressSeconds, statsFile)) {
+			System.out.println("\nERROR: " + args[0] + " could not be indexed. Nothing was committed to " + rootDir + ".\n");
+			System.exit(6);
+		}
+		
+		// Merge small segments once the new one is committed (no-op for a new index)
+		new MergeScheduler(rootDir, new TieredMergePolicy(), MergeScheduler.DEFAULT_MB_PER_SEC, null).merge();
 	}
 	
 	/*
 	 * The method parses through a gzipped file of documents. The content and metadata of each 
-	 * document is parsed and stored into a unique directory based on the DOCNO. 
+	 * document is parsed and appended to the document store, indexed by internal id. 
+	 * 
+	 * Each document's DOCNO and length are written to the segment's fixed-width DOCNO and
+	 * document length tables (see DocTableWriter), which are memory-mapped at query time so an
+	 * internal id is mapped to its DOCNO or length without reading any other entry.
+	 * 
+	 * The documents are written as a new immutable segment of the index. If the index already
+	 * has segments, internal ids and lexicon ids continue from the existing index, and only the
+	 * new segment and the index-wide files (lexicon, segments list and the appended id mapping
+	 * files) are written, so the cost depends on the size of the new batch rather than the
+	 * whole collection.
+	 * 
+	 * When updating, an existing document with the same DOCNO as a new document is deleted in
+	 * the same commit that adds the new segment, so readers see either the old or the new version.
+	 * 
+	 * Indexing runs as a pipeline: a reader thread splits the input at <DOC> boundaries, a pool
+	 * of worker threads parses, tokenizes and stems each document, and the calling thread
+	 * consumes the parsed documents in input order to store them and assign internal ids, lexicon
+	 * ids and postings. The output is therefore identical for any number of threads.
 	 * 
-	 * An additional file is written containing each document's docno to be used for indexing.
+	 * The input may be a directory of gzipped files, and files written by the Rechunk program
+	 * are split into their members (see GzipMembers). The files and members are then
+	 * decompressed in parallel by a pool of decompression threads, and the reader thread takes
+	 * their documents in input order, so the internal ids are the same as decompressing the
+	 * input in one stream.
 	 * 
-	 * @param readFile A string of the file path to the gzipped file of documents.
-	 * @param rootDir  A file to store the directories of parsed documents.
+	 * Postings are held in memory up to the memory budget and then spilled to temporary
+	 * runs on disk, which are merged into the final postings file at the end.
+	 * 
+	 * With positions, the position of each token in its document is stored next to the
+	 * postings. An index only supports phrase queries if every segment has positions, so a
+	 * batch appended to a positional index stores positions even if they were not requested.
+	 * 
+	 * With impacts, each posting's BM25 term frequency component is also stored as a quantized
+	 * integer (see PostingsWriter). Queries are only scored with impacts if every segment has them
+	 * with the same number of bits, so a batch appended to an index with impacts stores them with
+	 * the index's number of bits, whatever was requested. The postings can also be stored
+	 * impact-ordered for score-at-a-time queries, which is kept for batches appended to an
+	 * impact-ordered index as well.
+	 * 
+	 * The time spent in each stage, the throughput, the lexicon's growth and the heap usage are
+	 * recorded in IndexingStats, printed periodically during the build and written to the stats
+	 * file once the index is committed.
+	 * 
+	 * If indexing fails, nothing is committed: the new segment's directory (with any spilled
+	 * runs) is deleted, and so is the index directory of a new index, so the build can simply be
+	 * run again.
+	 * 
+	 * @param readFile 		A string of the file path to the gzipped file (or directory of gzipped files) of documents.
+	 * @param rootDir  		The index directory to write the document store and index files to (new or existing).
+	 * @param stem			Whether to apply the Porter Stemmer to the document terms.
+	 * @param numThreads	The number of worker threads used to parse documents.
+	 * @param memoryBudget	The number of bytes of in-memory postings before a run is spilled.
+	 * @param update		Whether new documents replace existing documents with the same DOCNO.
+	 * @param positions		Whether to store the position of every token.
+	 * @param impactBits	The number of bits of the quantized impacts to store (0 for none).
+	 * @param impactOrder	Whether to also store the postings impact-ordered (requires impacts).
+	 * @param progressSeconds	The number of seconds between progress reports (0 for none).
+	 * @param statsFile		The file to write the indexing stats to.
+	 * @return				Whether the new segment was committed.
 	 */
-	public static void parseGzipToDocFiles(String readFile, File rootDir, boolean stem) {
-		/* 
-		 * Implemented reading of gzipped file using code from 
-		 * https://stackoverflow.com/questions/1080381/gzipinputstream-reading-line-by-line
-		*/
+	public static boolean parseGzipToDocFiles(String readFile, File rootDir, boolean stem, int numThreads, long memoryBudget, boolean update, 
+			boolean positions, int impactBits, boolean impactOrder, int progressSeconds, File statsFile) {
+		ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+		ExecutorService decompressors = null;
+		IndexLock lock = null;
+		boolean newIndex = !SegmentInfos.exists(rootDir);
+		File segmentDir = null;
+		boolean committed = false;
+		
 		try {
-			// INPUT FILE READER
-			GZIPInputStream gzip = new GZIPInputStream(new FileInputStream(readFile));
-			BufferedReader br = new BufferedReader(new InputStreamReader(gzip));
+			// Only one process may change the segments at a time (e.g., a background merge)
+			lock = IndexLock.obtain(rootDir);
 			
-			// INDEX WRITER
-			BufferedWriter bwIndex = new BufferedWriter(new FileWriter(rootDir+"/index.txt"));
+			// EXISTING SEGMENTS AND LEXICON (when appending)
+			SegmentInfos segmentInfos = new SegmentInfos();
+			TermIdMap lexicon = new TermIdMap();
 			
-			// DOC LENGTHS WRITER
-			BufferedWriter bwDocLength = new BufferedWriter(new FileWriter(rootDir+"/doc-lengths.txt"));
+			if (SegmentInfos.exists(rootDir)) {
+				segmentInfos = SegmentInfos.read(rootDir);
+				
+				// Keep a positional index positional
+				positions = positions || isPositional(rootDir, segmentInfos);
+				
+				// Keep the impacts of an index with impacts at the same precision (and impact-ordered if it is)
+				int indexImpactBits = getImpactBits(rootDir, segmentInfos);
+				if (indexImpactBits > 0) {
+					impactBits = indexImpactBits;
+					impactOrder = impactOrder || isImpactOrdered(rootDir, segmentInfos);
+				}
+				
+				// New terms continue from the existing term ids
+				TermDictionary terms = new TermDictionary(rootDir);
+				for (int termId = 0; termId < terms.size(); termId++) {
+					lexicon.add(terms.getTerm(termId));
+				}
+			}
 			
-			// DOC WRITER
-			BufferedWriter bwDoc = null;
+			// REPLACED DOCUMENTS (when updating)
+			DocStoreReader existingDocs = null;
+			DocDeleter deleter = new DocDeleter(rootDir, segmentInfos);
+			if (update && segmentInfos.size() > 0) {
+				existingDocs = new DocStoreReader(rootDir, segmentInfos, 1);
+			}
 			
-			// Important variables for metadata processing
-			String docno = "";
-			String date = "";
-			File docDirectory = null;
-			int internalId = 0;
-				
-			Map<String, Integer> lexicon = new HashMap<>();
-			Map<Integer, String> lexiconReverse = new HashMap<>();
+			// NEW SEGMENT
+			int baseDocId = segmentInfos.getNumDocs();
+			String segmentName = segmentInfos.newSegmentName();
+			segmentDir = new File(rootDir, segmentName);
 			
-			ArrayList<ArrayList<Integer>> invertedIndex = new ArrayList<ArrayList<Integer>>();
+			// A directory of an uncommitted segment is left over from a killed build
+			if (segmentDir.exists()) {
+				deleteDir(segmentDir);
+			}
+			segmentDir.mkdirs();
+			
+			IndexingStats stats = new IndexingStats(lexicon.size());
+			
+			// INPUT FILES, split into chunks that are decompressed in parallel
+			File[] inputFiles = GzipMembers.listInputFiles(new File(readFile));
+			ArrayList<GzipMembers.Chunk> chunks = GzipMembers.split(inputFiles);
+			long compressedBytes = 0;
+			for (File inputFile : inputFiles) {
+				compressedBytes += inputFile.length();
+			}
+			stats.setCompressedBytes(compressedBytes);
+			decompressors = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, chunks.size())));
+			
+			// BINARY DOC LENGTH + DOCNO TABLE WRITER
+			DocTableWriter docTableWriter = new DocTableWriter(segmentDir);
+			
+			// DOCUMENT STORE WRITER
+			DocStoreWriter docStoreWriter = new DocStoreWriter(segmentDir);
+			
+			int internalId = baseDocId;
+			
+			// In-memory postings, spilled to temporary runs whenever the memory budget is reached
+			PostingsBuilder invertedIndex = new PostingsBuilder(segmentDir, memoryBudget, positions, impactBits, impactOrder);
+			
+			// Parsed documents in input order (bounded so the reader can't run far ahead of the workers)
+			BlockingQueue<Future<TrecDocument>> parsedDocs = new ArrayBlockingQueue<>(numThreads * 64);
+			DocumentReader reader = new DocumentReader(chunks, decompressors, stem, workers, parsedDocs, stats);
+			Thread readerThread = new Thread(reader, "IndexEngine-reader");
+			readerThread.setDaemon(true);
+			readerThread.start();
 			
-			String line;
 			int num_docs = 0;
+			long totalLength = 0;
 			
-			while ((line = br.readLine()) != null) {
-
-				// Create directory for document
-				if (line.equals("<DOC>")) {	
-					num_docs += 1;
-					String docTag = line; // Store open DOC tag
-					line = br.readLine(); // Read DOCNO tag to get date for directory
-					
-					int docnoStart = line.indexOf("LA");
-					int docnoEnd = line.indexOf("</DOCNO>");
-					
-					docno = line.substring(docnoStart, docnoEnd).replaceAll("\\s+", ""); // remove white space
-					
-					String month = docno.substring(2,4);
-					String day = docno.substring(4,6);
-					String year = docno.substring(6,8);
-					
-					date = dateFormatter(month, day, year);
-					
-					docDirectory = new File(rootDir + "/" + year + "/" + month + "/" + day + "/");
-					docDirectory.mkdirs();
-					
-					// Initialize doc writer		
-					bwDoc = new BufferedWriter(new FileWriter(docDirectory+"/"+docno+".txt"));					
-
-					
-					//Write to doc file
-					bwDoc.write(docTag); //<DOC> tag
-					bwDoc.newLine();
-					bwDoc.write(line); // <DOCNO> line
-					bwDoc.newLine();
-					
+			// Per-document buffers, reused for every document
+			IntList tokenIDs = new IntList(1024);
+			IntIntMap wordCounts = new IntIntMap(1024);
+			
+			long progressNanos = progressSeconds * 1000000000L;
+			long nextProgress = System.nanoTime() + progressNanos;
+			
+			while (true) {
+				TrecDocument doc = parsedDocs.take().get();
+				if (doc == null) {
+					break; // End of input
+				}
+				num_docs += 1;
+				long startTime = System.nanoTime();
+				
+				// Delete the previous version of an updated document
+				if (existingDocs != null) {
+					int previousId = existingDocs.getInternalId(doc.getDocno());
+					if (previousId != -1) {
+						deleter.delete(previousId);
+					}
 				}
-				else if(line.equals("</DOC>")) {
-					bwDoc.write(line);
-					bwDoc.close();
 
-					// Write to indexing file
-					bwIndex.write(docno);
-					bwIndex.newLine();
-					
-					// Implementation done by referencing pseudocode from lecture (Sept 29 2023)
-					ArrayList<String> tokens = writeDocMetadataAndGetTokens(docDirectory, docno, internalId, date); // Parse metadata from document
-					bwDocLength.write(tokens.size()+"\n");
-					ArrayList<Integer> tokenIDs = convertTokensToIDs(tokens, lexicon, lexiconReverse, stem);
-					Map<Integer, Integer> wordCounts = countWords(tokenIDs);
-					addToPostingsList(wordCounts, internalId, invertedIndex);
-					
-					internalId += 1; // Increment internal id for next document
+				// Append the document and its metadata to the document store
+				docStoreWriter.addDocument(doc.getDocno(), formatDocMetadata(doc, internalId), doc.getRawText());
+				
+				// Implementation done by referencing pseudocode from lecture (Sept 29 2023)
+				TokenList tokens = doc.getTokens();
+				docTableWriter.addDoc(doc.getDocno(), tokens.size());
+				totalLength += tokens.size();
+				long storedTime = System.nanoTime();
+				
+				convertTokensToIDs(tokens, lexicon, tokenIDs); // Tokens were stemmed by the worker
+				long lookedUpTime = System.nanoTime();
+				
+				long spillNanos = invertedIndex.getSpillNanos();
+				countWords(tokenIDs, wordCounts);
+				invertedIndex.addDocument(wordCounts, tokenIDs, internalId - baseDocId); // Segment postings use local ids
+				long postedTime = System.nanoTime();
+				spillNanos = invertedIndex.getSpillNanos() - spillNanos;
+				
+				stats.addTime(IndexingStats.Stage.STORE, storedTime - startTime);
+				stats.addTime(IndexingStats.Stage.LEXICON, lookedUpTime - storedTime);
+				stats.addTime(IndexingStats.Stage.POSTINGS, postedTime - lookedUpTime - spillNanos);
+				stats.addTime(IndexingStats.Stage.SPILL, spillNanos);
+				stats.addDocument(tokens.size(), lexicon.size());
+				
+				if (progressNanos > 0 && postedTime >= nextProgress) {
+					System.out.println(stats.sample(invertedIndex.getNumRuns()));
+					nextProgress = postedTime + progressNanos;
 				}
 				
-				else {
-					bwDoc.write(line);
-					bwDoc.newLine();
-				}				
+				internalId += 1; // Increment internal id for next document
+			}
+			
+			readerThread.join();
+			if (reader.error != null) {
+				throw reader.error;
 			}
-				
 			
 			System.out.println("number of tokens: " + lexicon.size());
 			System.out.println("number of docs: " + num_docs);
-			gzip.close();
-			bwIndex.close();
-			bwDocLength.close();
-
-			// Below code used from https://howtodoinjava.com/java/collections/arraylist/serialize-deserialize-arraylist/
-			// The serialization process takes ~ 8-10 minutes on top of document parsing
-			try{	
-			    ObjectOutputStream oosInvertedIndex = new ObjectOutputStream(new FileOutputStream(rootDir+"/invertedIndex.ser"));
-			    ObjectOutputStream oosLexicon = new ObjectOutputStream(new FileOutputStream(rootDir+"/lexicon.ser"));
-			    ObjectOutputStream oosLexiconReverse = new ObjectOutputStream(new FileOutputStream(rootDir+"/lexiconReverse.ser"));
-
-
-			    oosInvertedIndex.writeObject(invertedIndex);
+			if (existingDocs != null) {
+				System.out.println("number of replaced docs: " + deleter.getNumDeleted());
+				existingDocs.close();
+			}
+			long closeTime = System.nanoTime();
+			docTableWriter.close();
+			docStoreWriter.close();
+			long flushTime = System.nanoTime();
+			stats.addTime(IndexingStats.Stage.STORE, flushTime - closeTime);
 
-			    oosLexicon.writeObject(lexicon);
+			// Write the inverted index as delta + variable-byte encoded postings (merging any spilled runs)
+			long spillNanos = invertedIndex.getSpillNanos();
+			invertedIndex.finish();
+			spillNanos = invertedIndex.getSpillNanos() - spillNanos;
+			stats.addTime(IndexingStats.Stage.SPILL, spillNanos);
 
-			    oosLexiconReverse.writeObject(lexiconReverse);
+			try{	
+			    // Sorted, front-coded term dictionary (memory-mapped at query time)
+			    TermDictionaryWriter.write(rootDir, lexicon);
+			    
+			    // Publish the new segment and deletions (written last, so readers never see a partially written segment)
+			    deleter.apply();
+			    segmentInfos.deleteObsolete(rootDir);
+			    segmentInfos.add(new SegmentInfo(segmentName, baseDocId, num_docs, totalLength));
+			    segmentInfos.write(rootDir);
+			    committed = true;
+			    stats.addTime(IndexingStats.Stage.FLUSH, System.nanoTime() - flushTime - spillNanos);
 			    
-			    oosInvertedIndex.close();
-			    oosLexicon.close();
-			    oosLexiconReverse.close();
+			    stats.finish();
+			    stats.writeSummary(statsFile, segmentName, numThreads, stem, positions, invertedIndex.getNumRuns());
+			    System.out.println(stats);
+			    System.out.println("indexing stats written to " + statsFile);
 
 			} catch (IOException e) {
 				System.err.println(e.getMessage());
 			}
+
 			
 		} catch (IOException e) {
 			System.err.println(e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println("Indexing was interrupted");
+		} catch (ExecutionException e) {
+			System.err.println(e.getCause().getMessage());
+		} finally {
+			workers.shutdownNow();
+			if (decompressors != null) {
+				decompressors.shutdownNow();
+			}
+			
+			if (lock != null) {
+				try {
+					lock.release();
+				} catch (IOException e) {
+					System.err.println(e.getMessage());
+				}
+			}
+			
+			// Roll back an uncommitted build (the lock file goes with the directory of a new index)
+			if (!committed) {
+				if (newIndex) {
+					deleteDir(rootDir);
+				} else if (segmentDir != null) {
+					deleteDir(segmentDir);
+				}
+			}
 		}
 		
+		return committed;
+	}
+	
+	/*
+	 * The method deletes a directory and everything in it.
+	 */
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory()) {
+					deleteDir(file);
+				} else {
+					file.delete();
+				}
+			}
+		}
+		dir.delete();
+	}
+	
+	/*
+	 * Returns whether an index has segments and every segment has positions.
+	 */
+	static boolean isPositional(File rootDir, SegmentInfos segmentInfos) {
+		for (int i = 0; i < segmentInfos.size(); i++) {
+			if (!new File(segmentInfos.get(i).getDir(rootDir), PostingsWriter.POSITIONS_FILE).exists()) {
+				return false;
+			}
+		}
+		return segmentInfos.size() > 0;
+	}
+	
+	/*
+	 * Returns whether an index has segments and every segment has impact-ordered postings.
+	 */
+	static boolean isImpactOrdered(File rootDir, SegmentInfos segmentInfos) {
+		for (int i = 0; i < segmentInfos.size(); i++) {
+			if (!new File(segmentInfos.get(i).getDir(rootDir), PostingsWriter.IMPACT_ORDER_FILE).exists()) {
+				return false;
+			}
+		}
+		return segmentInfos.size() > 0;
+	}
+	
+	/*
+	 * Returns the number of bits of an index's quantized impacts, or 0 unless every segment has
+	 * impacts with the same number of bits.
+	 */
+	static int getImpactBits(File rootDir, SegmentInfos segmentInfos) throws IOException {
+		int bits = 0;
+		for (int i = 0; i < segmentInfos.size(); i++) {
+			int segmentBits = new PostingsReader(segmentInfos.get(i).getDir(rootDir)).getImpactBits();
+			if (segmentBits == 0 || (i > 0 && segmentBits != bits)) {
+				return 0;
+			}
+			bits = segmentBits;
+		}
+		return bits;
+	}
+	
+	/*
+	 * The reader stage of the indexing pipeline. Each chunk of the input is decompressed and
+	 * split into the bytes of its documents by a decompression thread, which hands them over
+	 * through a small queue of its own. The reader takes the chunks' documents in input order and
+	 * submits each document to the worker pool. The pending results are queued in input order,
+	 * followed by a null result to mark the end of input.
+	 * 
+	 * The chunks are submitted to the decompression pool in input order, so the chunk the reader
+	 * is waiting on is always being decompressed (or done), while the following chunks are
+	 * decompressed ahead as far as their queues allow.
+	 */
+	static class DocumentReader implements Runnable {
+		// Marks the end of a chunk's documents
+		private static final byte[] END_OF_CHUNK = new byte[0];
+		
+		private final ArrayList<GzipMembers.Chunk> chunks;
+		private final ExecutorService decompressors;
+		private final boolean stem;
+		private final ExecutorService workers;
+		private final BlockingQueue<Future<TrecDocument>> parsedDocs;
+		private final IndexingStats stats;
+		volatile IOException error = null;
+		
+		DocumentReader(ArrayList<GzipMembers.Chunk> chunks, ExecutorService decompressors, boolean stem, 
+				ExecutorService workers, BlockingQueue<Future<TrecDocument>> parsedDocs, IndexingStats stats) {
+			this.chunks = chunks;
+			this.decompressors = decompressors;
+			this.stem = stem;
+			this.workers = workers;
+			this.parsedDocs = parsedDocs;
+			this.stats = stats;
+		}
+		
+		public void run() {
+			try {
+				ArrayList<BlockingQueue<byte[]>> chunkDocs = new ArrayList<BlockingQueue<byte[]>>();
+				for (GzipMembers.Chunk chunk : chunks) {
+					BlockingQueue<byte[]> docs = new ArrayBlockingQueue<>(64);
+					chunkDocs.add(docs);
+					decompressors.execute(() -> decompress(chunk, docs));
+				}
+				
+				for (BlockingQueue<byte[]> docs : chunkDocs) {
+					byte[] doc;
+					while ((doc = docs.take()) != END_OF_CHUNK) {
+						byte[] docBytes = doc;
+						parsedDocs.put(workers.submit(() -> parseDocument(docBytes, stem, stats)));
+					}
+					if (error != null) {
+						break;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				try {
+					parsedDocs.put(CompletableFuture.completedFuture(null));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		/*
+		 * The decompression stage: the method splits a chunk into documents and queues them,
+		 * followed by END_OF_CHUNK (also after an error, so the reader never waits forever).
+		 */
+		private void decompress(GzipMembers.Chunk chunk, BlockingQueue<byte[]> docs) {
+			try {
+				long startTime = System.nanoTime();
+				InputStream in = chunk.open();
+				try {
+					DocumentSplitter splitter = new DocumentSplitter(in);
+					byte[] doc;
+					while ((doc = splitter.next()) != null && error == null) {
+						// The time waiting for the reader to take the document is left out
+						stats.addTime(IndexingStats.Stage.DECOMPRESS, System.nanoTime() - startTime);
+						stats.addInput(doc.length);
+						docs.put(doc);
+						startTime = System.nanoTime();
+					}
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				error = new IOException(chunk.getFile() + ": " + e.getMessage(), e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			
+			try {
+				docs.put(END_OF_CHUNK);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/*
+	 * The worker stage of the indexing pipeline. The method makes a single pass over the
+	 * document's bytes with a TREC parser, which extracts the metadata and tokens and decodes
+	 * the stored copy of the document.
+	 * 
+	 * @param bytes			The UTF-8 bytes of the document, from <DOC> to </DOC>
+	 * @param stem			Whether to apply the Porter Stemmer to the tokens
+	 * @return				The parsed document with its (optionally stemmed) tokens
+	 */
+	public static TrecDocument parseDocument(byte[] bytes, boolean stem) throws IOException {
+		return parseDocument(bytes, stem, null);
+	}
+	
+	/*
+	 * The method parses a document, adding the time spent in each pass of the parser to the
+	 * indexing stats.
+	 * 
+	 * @param bytes			The UTF-8 bytes of the document, from <DOC> to </DOC>
+	 * @param stem			Whether to apply the Porter Stemmer to the tokens
+	 * @param stats			The indexing stats (or null)
+	 * @return				The parsed document with its (optionally stemmed) tokens
+	 */
+	public static TrecDocument parseDocument(byte[] bytes, boolean stem, IndexingStats stats) throws IOException {
+		TrecParser parser = new TrecParser(stem ? STEM_CACHE : null);
+		TrecDocument doc = parser.parse(bytes, 0, bytes.length);
+		if (doc == null) {
+			throw new IOException("Could not find the DOCNO of a document");
+		}
+		
+		if (stats != null) {
+			stats.addTime(IndexingStats.Stage.PARSE, parser.getParseNanos());
+			stats.addTime(IndexingStats.Stage.TOKENIZE, parser.getTokenizeNanos());
+			stats.addTime(IndexingStats.Stage.STEM, parser.getStemNanos());
+		}
+		
+		return doc;
 	}
 	
 	/*
 	 * The method populates the inverted index's posting lists with a document's
-	 * tokens (token ids) and their counts.   
+	 * tokens (token ids) and their counts. Each posting list alternates between
+	 * doc id and count.
 	 * 
 	 * Algorithm implemented by referencing pseudocode from lecture (Oct 3 2023)
 	 *
 	 * @param wordCounts  		A map of token id to word count for a document.
 	 * @param docID  		  	A document's internal id
-	 * @param invertedIndex 	A list of posting lists
+	 * @param invertedIndex 	A list of posting lists indexed by token id
+	 * @return 					The number of posting lists that had to be created
 	 */
-	public static void addToPostingsList(Map<Integer, Integer> wordCounts, int docID, ArrayList<ArrayList<Integer>> invertedIndex){
-		Set<Integer> termIDs = wordCounts.keySet();
-		for(Integer termID : termIDs) {
-			int count = wordCounts.get(termID);
+	public static int addToPostingsList(IntIntMap wordCounts, int docID, ArrayList<IntList> invertedIndex){
+		int newLists = 0;
+		for (int slot = 0; slot < wordCounts.capacity(); slot++) {
+			if (!wordCounts.isUsed(slot)) {
+				continue;
+			}
+			int termID = wordCounts.keyAt(slot);
+			int count = wordCounts.valueAt(slot);
 
-			if(invertedIndex.size() <= termID) {
-				ArrayList<Integer> postings = new ArrayList<Integer>();
-				invertedIndex.add(postings);
+			while (invertedIndex.size() <= termID) {
+				invertedIndex.add(null);
 			}
 			
-			invertedIndex.get(termID).add(docID);
-			invertedIndex.get(termID).add(count);
+			IntList postings = invertedIndex.get(termID);
+			if (postings == null) {
+				postings = new IntList(); // New term, or the list was released after spilling a run
+				invertedIndex.set(termID, postings);
+				newLists += 1;
+			}
+			
+			postings.add(docID);
+			postings.add(count);
 		}
+		return newLists;
 	}
 	
 	/*
@@ -241,54 +739,39 @@ public class IndexEngine {
 	 *
 	 * Algorithm implemented by referencing pseudocode from lecture (Sept 29 2023).
 	 * 
-	 * @param tokenIDs   An array list of token IDs to be parsed and counted
-	 * @return A mapping of token ID to token ID count
+	 * @param tokenIDs   	A list of token IDs to be parsed and counted
+	 * @param wordCounts	A map to store token ID to token ID count (cleared first)
 	 */
-	public static Map<Integer, Integer> countWords (ArrayList<Integer> tokenIDs){
-		Map<Integer, Integer> wordCounts = new TreeMap<Integer, Integer>();
+	public static void countWords(IntList tokenIDs, IntIntMap wordCounts){
+		wordCounts.clear();
 		
-		for (Integer tokenID: tokenIDs) {
-			if (wordCounts.containsKey(tokenID)) {
-				wordCounts.put(tokenID, wordCounts.get(tokenID) + 1);
-			} else {
-				wordCounts.put(tokenID, 1);
-			}
+		for (int i = 0; i < tokenIDs.size(); i++) {
+			wordCounts.increment(tokenIDs.get(i), 1);
 		}
-		return wordCounts;
 	}
 	
 	/*
 	 * The method parses through tokens and generates a unique token id for
-	 * each newly encountered token. Each id is mapped to the term in the lexicon. 
+	 * each newly encountered token. Each term is mapped to its id in the lexicon. 
 	 * 
-	 * The returned list of ids is not unique as it is later used to count
+	 * The list of ids is not unique as it is later used to count
 	 * token occurrences in a document.
 	 *
 	 * Algorithm implemented by referencing pseudocode from lecture (Sept 29 2023).
 	 * 
-	 * @param tokens   			An array list of tokens to be parsed.
-	 * @param lexicon			A map to map token ids to token terms
-	 * @param lexiconReverse	A reverse map to map token terms to token ids
-	 * @return A list of token ids corresponding to the tokens
+	 * @param tokens   			The packed tokens to be parsed.
+	 * @param lexicon			A map to map token terms to token ids
+	 * @param tokenIDs			A list to store the token ids corresponding to the tokens (cleared first)
 	 */
-	public static ArrayList<Integer> convertTokensToIDs(ArrayList<String> tokens, Map<String, Integer> lexicon, Map<Integer, String> lexiconReverse, boolean stem) {
-		ArrayList<Integer> tokenIDs = new ArrayList<Integer>();
+	public static void convertTokensToIDs(TokenList tokens, TermIdMap lexicon, IntList tokenIDs) {
+		tokenIDs.clear();
 		
-		for (String token : tokens) {
-			if (stem == true) {
-				token = PorterStemmer.stem(token);
-			}
-			if (lexicon.containsKey(token)) {
-				tokenIDs.add(lexicon.get(token));
-			} else {
-				int id = lexicon.size();
-				lexicon.put(token, id);
-				lexiconReverse.put(id, token);
-				tokenIDs.add(id);
-			}
+		char[] chars = tokens.getChars();
+		for (int i = 0; i < tokens.size(); i++) {
+			// A String is only created for a term the lexicon has not seen
+			int id = lexicon.add(chars, tokens.getStart(i), tokens.getLength(i), tokens.getHash(i));
+			tokenIDs.add(id);
 		}
-		
-		return tokenIDs;
 	}
 	
 	/*
@@ -297,110 +780,39 @@ public class IndexEngine {
 	 *
 	 * Algorithm implemented by referencing pseudocode from lecture (Sept 29 2023).
 	 * 
+	 * Documents are tokenized with a TokenStream directly, which does not create a String per
+	 * token; this method is kept for short text such as queries.
+	 * 
 	 * @param line   The string representing the query.
-	 * @return A list of alphanumeric tokens from the query.
+	 * @return A list of lowercased alphanumeric tokens from the query.
 	 */
 	public static ArrayList<String> tokenizeText(String line) {
-		line = line.toLowerCase();
 		ArrayList<String> tokens = new ArrayList<String>();
 		
-		int start = 0;
-		for (int i = 0; i < line.length(); i++) {
-			char c = line.charAt(i);
-			if (!Character.isLetter(c) && !Character.isDigit(c)) {
-				if (start != i) {
-					String token = line.substring(start, i);
-					tokens.add(token);
-				}
-				start = i + 1;
-			}
-		}
-		
-		if (start != line.length()) {
-			tokens.add(line.substring(start, line.length()));
+		TokenStream tokenStream = new TokenStream().reset(line);
+		while (tokenStream.next()) {
+			tokens.add(tokenStream.term());
 		}
 		
 		return tokens;
 	}
 	
 	/*
-	 * The method writes a documents metadata to a file and tokenizes
-	 * text from the headline, graphic and text XML tags.
+	 * The method formats a document's metadata for the document store.
 	 *	 
-	 * @param docDirectory 	A location to a document file
-	 * @param docno  		A document's DOCNO value for its metadata file
-	 * @param internalId 	A document's internal id for its metadata file
-	 * @param date			A string value of the document's date for its metadata file
-	 * @return 				An array list of all the tokens in the document's specified tags.
+	 * @param doc  			The parsed document (DOCNO, date and headline)
+	 * @param internalId 	A document's internal id
+	 * @return				The metadata text, one field per line
 	 */
-	public static ArrayList<String> writeDocMetadataAndGetTokens(File docDirectory, String docno, int internalId, String date) {
-		try {	
-			BufferedReader br = new BufferedReader(new FileReader(docDirectory+"/"+docno+".txt"));
-			BufferedWriter bw = new BufferedWriter(new FileWriter(docDirectory+"/"+docno+"-metadata.txt")); // METADATA WRITER
-			
-			// Write DOCNO, internal id, and date to metadata file
-			bw.write("docno: " + docno);
-			bw.newLine();
-			bw.write("internal id: " + internalId);
-			bw.newLine();
-			bw.write("date: " + date);
-			bw.newLine();
-			
-			String line;
-			boolean hasHeadline = false;
-			ArrayList<String> tokens = new ArrayList<String>();
-			
-			while ((line = br.readLine()) != null) {
-				if(line.equals("<HEADLINE>")){
-					String headline = "";
-					hasHeadline = true;
-	
-					while (!line.equals("</HEADLINE>")) {
-						if (!line.contains("<") && !line.contains(">")) {
-							headline += line;
-							tokens.addAll(tokenizeText(line));
-						}
-						line = br.readLine();
-					}
-
-					bw.write("headline: " + headline);					
-				}
-				
-				if(line.equals("<TEXT>")) {
-					while (!line.equals("</TEXT>")) {
-						if (!line.contains("<") && !line.contains(">")) {
-							tokens.addAll(tokenizeText(line));
-						}
-						line = br.readLine();
-					}
-				}
-				
-				if(line.equals("<GRAPHIC>")) {
-					while (!line.equals("</GRAPHIC>")) {
-						if (!line.contains("<") && !line.contains(">")) {
-							tokens.addAll(tokenizeText(line));
-						}
-						line = br.readLine();
-					}
-				}
-				
-			}
-			
-			if (!hasHeadline) {
-				bw.write("headline: " + "NO HEADLINE");
-			}
-			
-			br.close();
-			bw.close();
-			
-			return tokens;
-			
-			
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-		}
+	public static String formatDocMetadata(TrecDocument doc, int internalId) {
+		String newLine = System.lineSeparator();
+		String headline = doc.getHeadline() != null ? doc.getHeadline() : "NO HEADLINE";
+		String date = doc.getDate() != null ? doc.getDate() : "NO DATE";
 		
-		return null;		
+		return "docno: " + doc.getDocno() + newLine
+				+ "internal id: " + internalId + newLine
+				+ "date: " + date + newLine
+				+ "headline: " + headline;
 	}
 	
 	/*
@@ -0,0 +1,228 @@
+package component.IndexEngine;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/*
+ * Counters describing an indexing run, for tracking indexing throughput across builds. The
+ * time of each stage of the pipeline is recorded:
+ * 
+ * 		decompress		gunzipping the input and splitting it into documents (decompression threads)
+ * 		parse			scanning each document's tags and decoding its fields (worker threads)
+ * 		tokenize		tokenizing the text of each document (worker threads)
+ * 		stem			stemming the tokens (worker threads)
+ * 		lexicon			mapping tokens to term ids
+ * 		postings		appending each document's postings in memory
+ * 		spill			writing in-memory postings to temporary runs
+ * 		store			writing the document store, DOCNO and document length tables
+ * 		flush			merging the runs into the postings file, and writing the lexicon and segments list
+ * 
+ * The first four stages run on several threads, so their times are summed over the threads and
+ * may add up to more than the wall clock time; the others run on the indexing thread.
+ * 
+ * Progress (documents, bytes, lexicon size and heap usage) is sampled at each report, and the
+ * samples are kept so the summary file shows how the lexicon and heap grew during the build.
+ * The peak heap usage is not sampled: the JVM tracks the peak usage of each heap memory pool
+ * (reset when the stats are created), and their sum bounds the peak of the whole heap.
+ */
+public class IndexingStats {
+	public enum Stage { DECOMPRESS, PARSE, TOKENIZE, STEM, LEXICON, POSTINGS, SPILL, STORE, FLUSH }
+	
+	private final long startTime = System.nanoTime();
+	private final long[] stageNanos = new long[Stage.values().length];
+	private final int initialTerms;
+	private long compressedBytes = 0;
+	private long inputBytes = 0;
+	private long docs = 0;
+	private long tokens = 0;
+	private int terms;
+	private long endTime = -1;
+	
+	// The progress samples: milliseconds since the start, docs, input bytes, terms and heap bytes
+	private final ArrayList<long[]> samples = new ArrayList<long[]>();
+	
+	/*
+	 * @param initialTerms	The size of the lexicon before indexing (when appending)
+	 */
+	public IndexingStats(int initialTerms) {
+		this.initialTerms = initialTerms;
+		this.terms = initialTerms;
+		
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+	
+	public synchronized void addTime(Stage stage, long nanos) {
+		stageNanos[stage.ordinal()] += nanos;
+	}
+	
+	/*
+	 * The method records a document read from the input.
+	 * 
+	 * @param bytes		The document's uncompressed size
+	 */
+	public synchronized void addInput(long bytes) {
+		inputBytes += bytes;
+	}
+	
+	public synchronized void setCompressedBytes(long bytes) {
+		compressedBytes = bytes;
+	}
+	
+	/*
+	 * The method records a document added to the index.
+	 * 
+	 * @param numTokens		The document's number of tokens
+	 * @param numTerms		The size of the lexicon after adding the document
+	 */
+	public synchronized void addDocument(int numTokens, int numTerms) {
+		docs += 1;
+		tokens += numTokens;
+		terms = numTerms;
+	}
+	
+	/*
+	 * The method takes a progress sample and returns a line describing the progress since the
+	 * previous sample.
+	 * 
+	 * @param numRuns	The number of runs of postings spilled so far
+	 */
+	public synchronized String sample(int numRuns) {
+		long[] previous = samples.isEmpty() ? new long[] { 0, 0, 0, initialTerms, 0 } : samples.get(samples.size() - 1);
+		long[] sample = takeSample();
+		long heap = sample[4];
+		
+		double seconds = Math.max(1, sample[0] - previous[0]) / 1000.0;
+		return String.format("%.1f s: %d docs (%.0f docs/s, %.1f MB/s), %d terms (+%d), heap %d MB (peak %d MB), %d runs",
+				sample[0] / 1000.0, docs, (docs - previous[1]) / seconds, (inputBytes - previous[2]) / (1024.0 * 1024.0) / seconds,
+				terms, terms - previous[3], heap >> 20, getPeakHeap() >> 20, numRuns);
+	}
+	
+	/*
+	 * The method marks the end of the run, once the index has been committed, and takes a
+	 * last progress sample.
+	 */
+	public synchronized void finish() {
+		takeSample();
+		endTime = System.nanoTime();
+	}
+	
+	private long[] takeSample() {
+		Runtime runtime = Runtime.getRuntime();
+		long heap = runtime.totalMemory() - runtime.freeMemory();
+		
+		long[] sample = { (System.nanoTime() - startTime) / 1000000, docs, inputBytes, terms, heap };
+		samples.add(sample);
+		return sample;
+	}
+	
+	/*
+	 * Returns the sum of the peak usages of the heap memory pools since the stats were created.
+	 */
+	public long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+	
+	public synchronized long getDocs() {
+		return docs;
+	}
+	
+	public synchronized double getSeconds() {
+		return ((endTime == -1 ? System.nanoTime() : endTime) - startTime) / 1e9;
+	}
+	
+	public synchronized double getStageSeconds(Stage stage) {
+		return stageNanos[stage.ordinal()] / 1e9;
+	}
+	
+	public synchronized double getDocsPerSecond() {
+		return docs / Math.max(getSeconds(), 1e-9);
+	}
+	
+	/*
+	 * Returns the throughput in megabytes of uncompressed input per second.
+	 */
+	public synchronized double getThroughput() {
+		return inputBytes / (1024.0 * 1024.0) / Math.max(getSeconds(), 1e-9);
+	}
+	
+	public synchronized String toString() {
+		StringBuilder stages = new StringBuilder();
+		for (Stage stage : Stage.values()) {
+			stages.append(stages.length() == 0 ? "" : ", ").append(stage.name().toLowerCase())
+					.append(String.format(" %.2f s", getStageSeconds(stage)));
+		}
+		return String.format("indexed %d docs and %.1f MB in %.2f s (%.0f docs/s, %.1f MB/s), %d new terms, peak heap %d MB%n"
+				+ "stage times: %s", docs, inputBytes / (1024.0 * 1024.0), getSeconds(), getDocsPerSecond(), getThroughput(),
+				terms - initialTerms, getPeakHeap() >> 20, stages);
+	}
+	
+	/*
+	 * The method writes the stats as a JSON object, so builds can be compared by scripts.
+	 * 
+	 * @param file			The file to write
+	 * @param segmentName	The name of the segment the documents were written to
+	 * @param numThreads	The number of worker threads
+	 * @param stem			Whether the tokens were stemmed
+	 * @param positions		Whether positions were stored
+	 * @param numRuns		The number of runs of postings spilled
+	 */
+	public synchronized void writeSummary(File file, String segmentName, int numThreads, boolean stem, boolean positions, int numRuns) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		String newLine = System.lineSeparator();
+		
+		out.write("{" + newLine);
+		out.write("  \"segment\": \"" + segmentName + "\"," + newLine);
+		out.write("  \"threads\": " + numThreads + "," + newLine);
+		out.write("  \"stem\": " + stem + "," + newLine);
+		out.write("  \"positions\": " + positions + "," + newLine);
+		out.write("  \"docs\": " + docs + "," + newLine);
+		out.write("  \"tokens\": " + tokens + "," + newLine);
+		out.write("  \"input_bytes\": " + inputBytes + "," + newLine);
+		out.write("  \"compressed_bytes\": " + compressedBytes + "," + newLine);
+		out.write("  \"seconds\": " + format(getSeconds()) + "," + newLine);
+		out.write("  \"docs_per_second\": " + format(getDocsPerSecond()) + "," + newLine);
+		out.write("  \"bytes_per_second\": " + format(inputBytes / Math.max(getSeconds(), 1e-9)) + "," + newLine);
+		out.write("  \"initial_terms\": " + initialTerms + "," + newLine);
+		out.write("  \"terms\": " + terms + "," + newLine);
+		out.write("  \"runs\": " + numRuns + "," + newLine);
+		out.write("  \"peak_heap_bytes\": " + getPeakHeap() + "," + newLine);
+		out.write("  \"max_heap_bytes\": " + Runtime.getRuntime().maxMemory() + "," + newLine);
+		
+		out.write("  \"stage_seconds\": {");
+		for (Stage stage : Stage.values()) {
+			out.write((stage.ordinal() == 0 ? "" : ",") + newLine + "    \"" + stage.name().toLowerCase() + "\": " + format(getStageSeconds(stage)));
+		}
+		out.write(newLine + "  }," + newLine);
+		
+		out.write("  \"progress\": [");
+		for (int i = 0; i < samples.size(); i++) {
+			long[] sample = samples.get(i);
+			out.write((i == 0 ? "" : ",") + newLine + "    {\"seconds\": " + format(sample[0] / 1000.0) + ", \"docs\": " + sample[1]
+					+ ", \"input_bytes\": " + sample[2] + ", \"terms\": " + sample[3] + ", \"heap_bytes\": " + sample[4] + "}");
+		}
+		out.write((samples.isEmpty() ? "" : newLine + "  ") + "]" + newLine);
+		out.write("}" + newLine);
+		out.close();
+	}
+	
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
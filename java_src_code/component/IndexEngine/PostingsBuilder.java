@@ -0,0 +1,444 @@
+package component.IndexEngine;
+
+import component.Index.PostingsWriter;
+import component.Primitive.IntIntMap;
+import component.Primitive.IntList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Builds the inverted index within a fixed memory budget (single-pass in-memory indexing).
+ * Postings are accumulated in memory until the estimated size reaches the budget, at which
+ * point the in-memory postings are written to a temporary run file sorted by term id and
+ * cleared. Once all documents are added, the runs are k-way merged into the final postings
+ * file. At most MAX_MERGE_RUNS runs are open at once: if there are more, consecutive groups of
+ * runs are first merged into larger runs, in as many passes as needed. Documents are added in increasing internal id order, so every posting of a run
+ * precedes every posting of the next run and a term's lists can be concatenated in run order.
+ * 
+ * For a positional index, each term also has a list of the positions of all its postings
+ * (in posting order), which is spilled and merged together with the postings.
+ */
+public class PostingsBuilder {
+	// Estimated heap cost of a posting (two ints plus growth slack) and of a term's postings list
+	private static final long BYTES_PER_POSTING = 12;
+	private static final long BYTES_PER_LIST = 48;
+	private static final long BYTES_PER_POSITION = 6;
+	
+	// The maximum number of runs merged at once (each open run holds a read buffer and a file handle)
+	private static final int MAX_MERGE_RUNS = 64;
+	
+	private final File indexDir;
+	private final long memoryBudget;
+	
+	private ArrayList<IntList> invertedIndex = new ArrayList<IntList>();
+	private long memoryUsed = 0;
+	private ArrayList<File> runs = new ArrayList<File>();
+	private int numRuns = 0;
+	private int numMergedRuns = 0;
+	private long spillNanos = 0;
+	
+	// The positions of each term's postings (null if the index is not positional)
+	private ArrayList<IntList> positionLists = null;
+	
+	// The number of bits of the quantized impacts written with the postings (0 for none), and whether they are also impact-ordered
+	private int impactBits = 0;
+	private boolean impactOrder = false;
+	
+	/*
+	 * @param indexDir		The segment directory (temporary runs are written here)
+	 * @param memoryBudget	The number of bytes of postings to hold in memory before spilling a run
+	 */
+	public PostingsBuilder(File indexDir, long memoryBudget) {
+		this(indexDir, memoryBudget, false);
+	}
+	
+	/*
+	 * @param indexDir		The segment directory (temporary runs are written here)
+	 * @param memoryBudget	The number of bytes of postings to hold in memory before spilling a run
+	 * @param positions		Whether to store the positions of each posting
+	 */
+	public PostingsBuilder(File indexDir, long memoryBudget, boolean positions) {
+		this.indexDir = indexDir;
+		this.memoryBudget = memoryBudget;
+		if (positions) {
+			positionLists = new ArrayList<IntList>();
+		}
+	}
+	
+	/*
+	 * @param indexDir		The segment directory (temporary runs are written here)
+	 * @param memoryBudget	The number of bytes of postings to hold in memory before spilling a run
+	 * @param positions		Whether to store the positions of each posting
+	 * @param impactBits	The number of bits of the quantized impacts to store (0 for none, see PostingsWriter)
+	 * @param impactOrder	Whether to also store the postings impact-ordered (requires impacts)
+	 */
+	public PostingsBuilder(File indexDir, long memoryBudget, boolean positions, int impactBits, boolean impactOrder) {
+		this(indexDir, memoryBudget, positions);
+		this.impactBits = impactBits;
+		this.impactOrder = impactOrder;
+	}
+	
+	/*
+	 * The method adds a document's term counts to the in-memory postings, spilling
+	 * them to a run file when the memory budget is exceeded.
+	 * 
+	 * @param wordCounts	A map of token id to word count for a document
+	 * @param docID			The document's internal id
+	 */
+	public void addDocument(IntIntMap wordCounts, int docID) throws IOException {
+		int newLists = IndexEngine.addToPostingsList(wordCounts, docID, invertedIndex);
+		
+		memoryUsed += wordCounts.size() * BYTES_PER_POSTING + newLists * BYTES_PER_LIST;
+		if (memoryUsed >= memoryBudget) {
+			flushRun();
+		}
+	}
+	
+	/*
+	 * The method adds a document's term counts and, for a positional index, the position
+	 * of each of its tokens to the in-memory postings.
+	 * 
+	 * @param wordCounts	A map of token id to word count for a document
+	 * @param tokenIDs		The document's token ids in document order (position i holds token i)
+	 * @param docID			The document's internal id
+	 */
+	public void addDocument(IntIntMap wordCounts, IntList tokenIDs, int docID) throws IOException {
+		if (positionLists != null) {
+			int newLists = 0;
+			for (int position = 0; position < tokenIDs.size(); position++) {
+				int termID = tokenIDs.get(position);
+				while (positionLists.size() <= termID) {
+					positionLists.add(null);
+				}
+				
+				IntList positions = positionLists.get(termID);
+				if (positions == null) {
+					positions = new IntList();
+					positionLists.set(termID, positions);
+					newLists += 1;
+				}
+				positions.add(position);
+			}
+			memoryUsed += tokenIDs.size() * BYTES_PER_POSITION + newLists * BYTES_PER_LIST;
+		}
+		
+		addDocument(wordCounts, docID);
+	}
+	
+	/*
+	 * Returns the number of runs spilled to disk so far (merged runs included).
+	 */
+	public int getNumRuns() {
+		return numRuns;
+	}
+	
+	/*
+	 * Returns the time spent spilling runs to disk so far.
+	 */
+	public long getSpillNanos() {
+		return spillNanos;
+	}
+	
+	/*
+	 * The method writes the final postings file. If nothing was spilled the in-memory
+	 * postings are written directly, otherwise the remaining postings are spilled and
+	 * all runs are merged.
+	 */
+	public void finish() throws IOException {
+		PostingsWriter postingsWriter = new PostingsWriter(indexDir, positionLists != null, impactBits, impactOrder);
+		
+		if (runs.isEmpty()) {
+			for (int termId = 0; termId < invertedIndex.size(); termId++) {
+				IntList postings = invertedIndex.get(termId);
+				int[] positions = positionLists == null || postings == null ? null : positionLists.get(termId).toArray();
+				int position = 0;
+				
+				postingsWriter.startTerm();
+				for (int i = 0; postings != null && i < postings.size(); i += 2) { // No list if the term only occurs in earlier segments
+					postingsWriter.addPosting(postings.get(i), postings.get(i + 1));
+					if (positions != null) {
+						postingsWriter.addPositions(positions, position, postings.get(i + 1));
+						position += postings.get(i + 1);
+					}
+				}
+				postingsWriter.finishTerm();
+			}
+		} else {
+			if (memoryUsed > 0) {
+				flushRun();
+			}
+			mergeRuns(postingsWriter);
+		}
+		
+		postingsWriter.close();
+		invertedIndex = null;
+		positionLists = null;
+	}
+	
+	/*
+	 * The method writes the in-memory postings to a new run file and releases them.
+	 * Each term with postings is written as its term id, document frequency and then
+	 * variable-byte encoded (doc id gap, count) pairs, in increasing term id order. For a
+	 * positional index, each pair is followed by the count many position gaps.
+	 */
+	private void flushRun() throws IOException {
+		long startTime = System.nanoTime();
+		File run = new File(indexDir, "run-" + numRuns++ + ".tmp");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(run), 1 << 16);
+		
+		for (int termId = 0; termId < invertedIndex.size(); termId++) {
+			IntList postings = invertedIndex.get(termId);
+			if (postings == null || postings.isEmpty()) {
+				continue;
+			}
+			
+			writeVByte(out, termId);
+			writeVByte(out, postings.size() / 2);
+			IntList positions = positionLists == null ? null : positionLists.get(termId);
+			int position = 0;
+			int prevDocId = 0;
+			for (int i = 0; i < postings.size(); i += 2) {
+				writeVByte(out, postings.get(i) - prevDocId);
+				writeVByte(out, postings.get(i + 1));
+				prevDocId = postings.get(i);
+				
+				if (positions != null) {
+					int prevPosition = -1;
+					for (int j = position; j < position + postings.get(i + 1); j++) {
+						writeVByte(out, positions.get(j) - prevPosition);
+						prevPosition = positions.get(j);
+					}
+					position += postings.get(i + 1);
+				}
+			}
+			
+			invertedIndex.set(termId, null); // Release the list, it is recreated on the term's next posting
+			if (positions != null) {
+				positionLists.set(termId, null);
+			}
+		}
+		
+		out.close();
+		runs.add(run);
+		memoryUsed = 0;
+		spillNanos += System.nanoTime() - startTime;
+	}
+	
+	/*
+	 * The method merges the run files into the final postings file. Runs are ordered by
+	 * their next term id (ties broken by run number, which is doc id order) in a priority
+	 * queue, and each term's postings are copied from every run holding it. If there are
+	 * more than MAX_MERGE_RUNS runs, they are first merged in groups (see mergeRunGroup).
+	 * 
+	 * @param postingsWriter	The writer for the final postings file
+	 */
+	private void mergeRuns(PostingsWriter postingsWriter) throws IOException {
+		while (runs.size() > MAX_MERGE_RUNS) {
+			ArrayList<File> mergedRuns = new ArrayList<File>();
+			for (int start = 0; start < runs.size(); start += MAX_MERGE_RUNS) {
+				List<File> group = runs.subList(start, Math.min(start + MAX_MERGE_RUNS, runs.size()));
+				mergedRuns.add(group.size() == 1 ? group.get(0) : mergeRunGroup(group));
+			}
+			runs = mergedRuns;
+		}
+		
+		PriorityQueue<RunReader> queue = openRuns(runs);
+		
+		int numTerms = invertedIndex.size();
+		for (int termId = 0; termId < numTerms; termId++) {
+			postingsWriter.startTerm();
+			
+			while (!queue.isEmpty() && queue.peek().termId == termId) {
+				RunReader reader = queue.poll();
+				reader.copyPostings(postingsWriter);
+				
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			
+			postingsWriter.finishTerm();
+		}
+		
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+	}
+	
+	/*
+	 * The method merges consecutive runs into a single run file (in the same format), and
+	 * deletes them. The runs hold consecutive doc ids, so each term's postings are copied
+	 * in run order under a single header.
+	 * 
+	 * @param group		The runs to merge, in run order
+	 * @return			The merged run
+	 */
+	private File mergeRunGroup(List<File> group) throws IOException {
+		File mergedRun = new File(indexDir, "run-merged-" + numMergedRuns++ + ".tmp");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(mergedRun), 1 << 16);
+		PriorityQueue<RunReader> queue = openRuns(group);
+		ArrayList<RunReader> termReaders = new ArrayList<RunReader>();
+		
+		while (!queue.isEmpty()) {
+			int termId = queue.peek().termId;
+			int df = 0;
+			while (!queue.isEmpty() && queue.peek().termId == termId) {
+				RunReader reader = queue.poll();
+				df += reader.df;
+				termReaders.add(reader);
+			}
+			
+			writeVByte(out, termId);
+			writeVByte(out, df);
+			int prevDocId = 0;
+			for (RunReader reader : termReaders) {
+				prevDocId = reader.copyPostings(out, prevDocId);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			termReaders.clear();
+		}
+		
+		out.close();
+		for (File run : group) {
+			run.delete();
+		}
+		return mergedRun;
+	}
+	
+	/*
+	 * Opens a reader on each run that is not empty, ordered by next term id and then run order.
+	 */
+	private PriorityQueue<RunReader> openRuns(List<File> runFiles) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>((r1, r2) -> 
+			r1.termId != r2.termId ? Integer.compare(r1.termId, r2.termId) : Integer.compare(r1.runNumber, r2.runNumber));
+		
+		for (int i = 0; i < runFiles.size(); i++) {
+			RunReader reader = new RunReader(runFiles.get(i), i, positionLists != null);
+			if (reader.next()) {
+				queue.add(reader);
+			}
+		}
+		return queue;
+	}
+	
+	/*
+	 * Sequential reader over a run file.
+	 */
+	private static class RunReader {
+		final int runNumber;
+		final InputStream in;
+		final boolean hasPositions;
+		int[] positions = new int[64];
+		int termId;
+		int df;
+		
+		RunReader(File run, int runNumber, boolean hasPositions) throws IOException {
+			this.runNumber = runNumber;
+			this.in = new BufferedInputStream(new FileInputStream(run), 1 << 16);
+			this.hasPositions = hasPositions;
+		}
+		
+		/*
+		 * Reads the header of the next term, returning false (and closing the run) at the end of the run.
+		 */
+		boolean next() throws IOException {
+			int b = in.read();
+			if (b == -1) {
+				in.close();
+				return false;
+			}
+			termId = readVByte(in, b);
+			df = readVByte(in, in.read());
+			return true;
+		}
+		
+		/*
+		 * Copies the current term's postings to the writer.
+		 */
+		void copyPostings(PostingsWriter postingsWriter) throws IOException {
+			int docId = 0;
+			for (int i = 0; i < df; i++) {
+				docId += readVByte(in, in.read());
+				int freq = readVByte(in, in.read());
+				postingsWriter.addPosting(docId, freq);
+				
+				if (hasPositions) {
+					if (positions.length < freq) {
+						positions = new int[Math.max(freq, positions.length * 2)];
+					}
+					int position = -1;
+					for (int j = 0; j < freq; j++) {
+						position += readVByte(in, in.read());
+						positions[j] = position;
+					}
+					postingsWriter.addPositions(positions, 0, freq);
+				}
+			}
+		}
+		
+		/*
+		 * Copies the current term's postings to another run, re-encoding the doc id gaps after
+		 * the previous doc id written for the term.
+		 * 
+		 * @return	The last doc id copied
+		 */
+		int copyPostings(OutputStream out, int prevDocId) throws IOException {
+			int docId = 0;
+			for (int i = 0; i < df; i++) {
+				docId += readVByte(in, in.read());
+				int freq = readVByte(in, in.read());
+				writeVByte(out, docId - prevDocId);
+				writeVByte(out, freq);
+				prevDocId = docId;
+				
+				if (hasPositions) {
+					for (int j = 0; j < freq; j++) {
+						writeVByte(out, readVByte(in, in.read())); // Position gaps are relative to the posting
+					}
+				}
+			}
+			return prevDocId;
+		}
+	}
+	
+	private static void writeVByte(OutputStream out, int value) throws IOException {
+		while (value >= 0x80) {
+			out.write(value & 0x7F);
+			value >>>= 7;
+		}
+		out.write(value | 0x80);
+	}
+	
+	/*
+	 * Decodes a variable-byte integer whose first byte has already been read.
+	 */
+	private static int readVByte(InputStream in, int b) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (b == -1) {
+				throw new EOFException("Unexpected end of run file");
+			}
+			if ((b & 0x80) != 0) {
+				return value | ((b & 0x7F) << shift);
+			}
+			value |= b << shift;
+			shift += 7;
+			b = in.read();
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package component.Merge;
+
+import component.Index.IndexLock;
+import component.Index.LiveDocs;
+import component.Index.SegmentInfo;
+import component.Index.SegmentInfos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Runs segment merges on a background thread. Each merge is chosen by the merge policy,
+ * written to a new segment directory at a limited I/O rate while the old segments remain in
+ * use, and then committed by atomically rewriting the segments file. The listener (e.g., a
+ * searcher) is then told to reopen the index. The merged-away segment directories are only
+ * deleted by the next commit (see SegmentInfos.deleteObsolete), so a process that read the
+ * previous segments file can still open them; readers that already have them open keep
+ * working after that, as open and mapped files remain readable after they are deleted.
+ * 
+ * Merging reclaims deleted documents, so the internal ids of documents after them change
+ * when the merge is committed (DOCNOs are the stable way to refer to a document).
+ */
+public class MergeScheduler {
+	public static final double DEFAULT_MB_PER_SEC = 20.0;
+	
+	/*
+	 * Notified after a merge is committed, with the index's new segments.
+	 */
+	public interface Listener {
+		void segmentsChanged(SegmentInfos segmentInfos) throws IOException;
+	}
+	
+	private final File indexDir;
+	private final TieredMergePolicy mergePolicy;
+	private final double mbPerSec;
+	private final Listener listener;
+	private final ExecutorService mergeThread;
+	private final AtomicBoolean pending = new AtomicBoolean(false);
+	private final MergeStats stats = new MergeStats();
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param mergePolicy	Chooses the segments to merge
+	 * @param mbPerSec		The I/O rate limit of merges in megabytes per second (0 or less for no limit)
+	 * @param listener		Notified after each merge (may be null)
+	 */
+	public MergeScheduler(File indexDir, TieredMergePolicy mergePolicy, double mbPerSec, Listener listener) {
+		this.indexDir = indexDir;
+		this.mergePolicy = mergePolicy;
+		this.mbPerSec = mbPerSec;
+		this.listener = listener;
+		this.mergeThread = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "MergeScheduler");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		});
+	}
+	
+	/*
+	 * The method asks the background thread to run any merges the policy finds, and returns
+	 * immediately. Merges are run one at a time until the policy finds none.
+	 */
+	public void maybeMerge() {
+		if (pending.compareAndSet(false, true)) {
+			mergeThread.submit(this::runMerges);
+		}
+	}
+	
+	/*
+	 * The method runs any merges the policy finds on the calling thread, one at a time, and
+	 * returns once the policy finds none (e.g., for a command-line tool that exits afterwards).
+	 */
+	public void merge() {
+		runMerges();
+	}
+	
+	private void runMerges() {
+		pending.set(false);
+		try {
+			while (mergeOnce()) {
+				// Keep merging until the policy is satisfied
+			}
+		} catch (InterruptedException e) {
+			stats.addAbortedMerge();
+		} catch (IOException e) {
+			if (Thread.currentThread().isInterrupted()) {
+				stats.addAbortedMerge(); // Interrupted during a read or write
+			} else {
+				System.err.println("Merge failed: " + e.getMessage());
+			}
+		}
+	}
+	
+	/*
+	 * The method runs the next merge chosen by the policy.
+	 * 
+	 * @return	Whether a merge was attempted (false once no merge is needed)
+	 */
+	private boolean mergeOnce() throws IOException, InterruptedException {
+		// Choose a merge and reserve the merged segment's name
+		SegmentInfos segmentInfos;
+		int[] merge;
+		String name;
+		
+		IndexLock lock = IndexLock.obtain(indexDir);
+		try {
+			segmentInfos = SegmentInfos.read(indexDir);
+			stats.setSegmentCount(segmentInfos.size());
+			
+			merge = mergePolicy.findMerge(segmentInfos);
+			if (merge == null) {
+				return false;
+			}
+			name = segmentInfos.newSegmentName();
+			segmentInfos.write(indexDir);
+		} finally {
+			lock.release();
+		}
+		
+		int start = merge[0];
+		int count = merge[1];
+		File mergedDir = new File(indexDir, name);
+		
+		// Write the merged segment (the index is not locked, so searching and appending continue)
+		long startTime = System.nanoTime();
+		RateLimiter rateLimiter = new RateLimiter(mbPerSec);
+		SegmentMerger merger = new SegmentMerger(indexDir, rateLimiter);
+		SegmentInfo merged;
+		
+		try {
+			merged = merger.merge(segmentInfos, start, count, name);
+		} catch (IOException | InterruptedException e) {
+			deleteSegmentDir(mergedDir);
+			throw e;
+		}
+		long mergedTime = System.nanoTime();
+		
+		// Commit the merged segment in place of its sources, unless they were changed meanwhile
+		lock = IndexLock.obtain(indexDir);
+		try {
+			SegmentInfos current = SegmentInfos.read(indexDir);
+			int currentStart = current.indexOf(segmentInfos.get(start).getName());
+			
+			for (int i = 0; i < count; i++) {
+				if (currentStart < 0 || currentStart + i >= current.size() 
+						|| !current.get(currentStart + i).getName().equals(segmentInfos.get(start + i).getName())) {
+					deleteSegmentDir(mergedDir);
+					stats.addAbortedMerge();
+					return true;
+				}
+			}
+			
+			merged = carryOverDeletes(current, currentStart, segmentInfos, start, count, merger.getDocMap(), merged);
+			
+			// Reclaimed deletions shift the internal ids of every later segment
+			int reclaimed = 0;
+			for (int i = 0; i < count; i++) {
+				reclaimed += current.get(currentStart + i).getNumDocs();
+			}
+			reclaimed -= merged.getNumDocs();
+			
+			current.deleteObsolete(indexDir);
+			for (int i = 0; i < count; i++) {
+				current.addObsolete(current.get(currentStart + i).getName());
+			}
+			current.replace(currentStart, count, merged);
+			for (int i = currentStart + 1; i < current.size(); i++) {
+				current.set(i, current.get(i).withBaseDocId(current.get(i).getBaseDocId() - reclaimed));
+			}
+			current.write(indexDir);
+			segmentInfos = current;
+		} finally {
+			lock.release();
+		}
+		
+		if (listener != null) {
+			listener.segmentsChanged(segmentInfos);
+		}
+		long swapTime = System.nanoTime() - mergedTime;
+		
+		stats.addMerge(count, merged.getNumDocs(), merger.getBytesMerged(), mergedTime - startTime, 
+				rateLimiter.getPausedNanos(), swapTime, segmentInfos.size());
+		System.err.println("Merged " + count + " segments (" + merged.getNumDocs() + " docs) into " + name + " in " 
+				+ String.format("%.2f", (mergedTime - startTime) / 1e9) + " s, " + segmentInfos.size() + " segments remain");
+		return true;
+	}
+	
+	/*
+	 * The method applies the deletions made to the source segments while they were being
+	 * merged to the merged segment, so that no deleted document comes back.
+	 * 
+	 * @param current		The index's segments at commit time
+	 * @param currentStart	The position of the first source segment at commit time
+	 * @param merging		The index's segments when the merge started
+	 * @param start			The position of the first source segment when the merge started
+	 * @param count			The number of source segments
+	 * @param docMap		The merged id of each source document (-1 if it was left out)
+	 * @param merged		The merged segment
+	 * @return				The merged segment, with its live docs generation if anything was deleted
+	 */
+	private SegmentInfo carryOverDeletes(SegmentInfos current, int currentStart, SegmentInfos merging, int start, int count, 
+			int[] docMap, SegmentInfo merged) throws IOException {
+		LiveDocs mergedLiveDocs = null;
+		int offset = 0;
+		
+		for (int i = 0; i < count; i++) {
+			SegmentInfo source = current.get(currentStart + i);
+			if (source.getDelGen() != merging.get(start + i).getDelGen()) {
+				LiveDocs liveDocs = LiveDocs.read(indexDir, source);
+				for (int localId = 0; localId < source.getNumDocs(); localId++) {
+					int mergedId = docMap[offset + localId];
+					if (mergedId >= 0 && !liveDocs.isLive(localId)) {
+						if (mergedLiveDocs == null) {
+							mergedLiveDocs = new LiveDocs(merged.getNumDocs());
+						}
+						mergedLiveDocs.delete(mergedId);
+					}
+				}
+			}
+			offset += source.getNumDocs();
+		}
+		
+		if (mergedLiveDocs == null) {
+			return merged;
+		}
+		mergedLiveDocs.write(merged.getDir(indexDir), 1);
+		return merged.withDeletes(mergedLiveDocs.getNumDeleted(), 1);
+	}
+	
+	/*
+	 * Returns the merge counters (merges, throughput, throttling, swap times and segment count).
+	 */
+	public MergeStats getStats() {
+		return stats;
+	}
+	
+	/*
+	 * The method waits for queued and running merges to finish.
+	 * 
+	 * @param timeoutMillis		The maximum time to wait
+	 * @return					Whether the merges finished within the timeout
+	 */
+	public boolean awaitMerges(long timeoutMillis) throws InterruptedException {
+		try {
+			// The thread runs tasks in order, so this completes once earlier merges are done
+			mergeThread.submit(() -> {}).get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+	
+	/*
+	 * The method aborts any running merge (its partial segment is deleted) and stops the
+	 * background thread. Committed merges are unaffected.
+	 */
+	public void close() throws InterruptedException {
+		mergeThread.shutdownNow();
+		mergeThread.awaitTermination(1, TimeUnit.MINUTES);
+	}
+	
+	/*
+	 * The method deletes a segment's directory and files.
+	 */
+	private static void deleteSegmentDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+}
@@ -0,0 +1,94 @@
+package component.Merge;
+
+/*
+ * Counters describing the merges run by a MergeScheduler, for monitoring. Merge time is the
+ * wall clock time spent merging (including throttling), throttle time is the part spent
+ * sleeping in the rate limiter, and swap time is the time from a merged segment being
+ * complete to the searchers using it (committing the segments file and reopening).
+ */
+public class MergeStats {
+	private long merges = 0;
+	private long abortedMerges = 0;
+	private long segmentsMerged = 0;
+	private long docsMerged = 0;
+	private long bytesMerged = 0;
+	private long mergeNanos = 0;
+	private long throttleNanos = 0;
+	private long swapNanos = 0;
+	private long maxSwapNanos = 0;
+	private int segmentCount = 0;
+	
+	synchronized void addMerge(int segments, long docs, long bytes, long mergeTime, long throttleTime, long swapTime, int segmentsAfter) {
+		merges += 1;
+		segmentsMerged += segments;
+		docsMerged += docs;
+		bytesMerged += bytes;
+		mergeNanos += mergeTime;
+		throttleNanos += throttleTime;
+		swapNanos += swapTime;
+		maxSwapNanos = Math.max(maxSwapNanos, swapTime);
+		segmentCount = segmentsAfter;
+	}
+	
+	synchronized void addAbortedMerge() {
+		abortedMerges += 1;
+	}
+	
+	synchronized void setSegmentCount(int segments) {
+		segmentCount = segments;
+	}
+	
+	public synchronized long getMerges() {
+		return merges;
+	}
+	
+	public synchronized long getAbortedMerges() {
+		return abortedMerges;
+	}
+	
+	public synchronized long getSegmentsMerged() {
+		return segmentsMerged;
+	}
+	
+	public synchronized long getDocsMerged() {
+		return docsMerged;
+	}
+	
+	public synchronized long getBytesMerged() {
+		return bytesMerged;
+	}
+	
+	/*
+	 * Returns the number of segments in the index after the last merge.
+	 */
+	public synchronized int getSegmentCount() {
+		return segmentCount;
+	}
+	
+	/*
+	 * Returns the merge throughput in megabytes per second (excluding time spent throttled).
+	 */
+	public synchronized double getThroughput() {
+		long activeNanos = mergeNanos - throttleNanos;
+		return activeNanos <= 0 ? 0.0 : bytesMerged / (1024.0 * 1024.0) / (activeNanos / 1e9);
+	}
+	
+	public synchronized double getMergeSeconds() {
+		return mergeNanos / 1e9;
+	}
+	
+	public synchronized double getThrottleSeconds() {
+		return throttleNanos / 1e9;
+	}
+	
+	public synchronized double getMaxSwapMillis() {
+		return maxSwapNanos / 1e6;
+	}
+	
+	public synchronized String toString() {
+		return String.format("%d merges (%d aborted), %d segments and %d docs merged, %.1f MB in %.2f s (%.2f s throttled, %.1f MB/s),"
+				+ " swap %.2f ms avg / %.2f ms max, %d segments", 
+				merges, abortedMerges, segmentsMerged, docsMerged, bytesMerged / (1024.0 * 1024.0), getMergeSeconds(), getThrottleSeconds(),
+				getThroughput(), merges == 0 ? 0.0 : swapNanos / 1e6 / merges, getMaxSwapMillis(), segmentCount);
+	}
+}
@@ -0,0 +1,54 @@
+package component.Merge;
+
+/*
+ * Limits the rate at which a merge reads and writes, so a background merge does not take
+ * the disk bandwidth needed by queries. The merge reports the bytes it processes, and the
+ * limiter sleeps whenever the merge gets ahead of the configured rate.
+ */
+public class RateLimiter {
+	// Sleeps shorter than this are skipped (the debt is carried over to the next call)
+	private static final long MIN_PAUSE_NANOS = 1000000;
+	
+	private final double nanosPerByte;
+	private long nextFreeTime = System.nanoTime();
+	private long pausedNanos = 0;
+	
+	/*
+	 * @param mbPerSec		The maximum rate in megabytes per second (0 or less for no limit)
+	 */
+	public RateLimiter(double mbPerSec) {
+		nanosPerByte = mbPerSec <= 0 ? 0 : 1e9 / (mbPerSec * 1024 * 1024);
+	}
+	
+	/*
+	 * The method accounts for processed bytes, sleeping if the rate limit has been exceeded.
+	 * 
+	 * @param bytes		The number of bytes processed since the last call
+	 * @return			The number of nanoseconds spent sleeping
+	 */
+	public long pause(long bytes) throws InterruptedException {
+		if (nanosPerByte == 0) {
+			return 0;
+		}
+		
+		long now = System.nanoTime();
+		// Idle time is not banked, so a merge cannot burst after a quiet period
+		nextFreeTime = Math.max(nextFreeTime, now) + (long) (bytes * nanosPerByte);
+		
+		long pause = nextFreeTime - now;
+		if (pause < MIN_PAUSE_NANOS) {
+			return 0;
+		}
+		
+		Thread.sleep(pause / 1000000, (int) (pause % 1000000));
+		pausedNanos += pause;
+		return pause;
+	}
+	
+	/*
+	 * Returns the total number of nanoseconds spent sleeping.
+	 */
+	public long getPausedNanos() {
+		return pausedNanos;
+	}
+}
@@ -0,0 +1,169 @@
+package component.Merge;
+
+import component.DocStore.DocStoreReader;
+import component.DocStore.DocStoreWriter;
+import component.DocStore.StoredDocument;
+import component.Index.DocTableWriter;
+import component.Index.IndexReader;
+import component.Index.PositionalPostingsList;
+import component.Index.PostingsList;
+import component.Index.PostingsWriter;
+import component.Index.SegmentInfo;
+import component.Index.SegmentInfos;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Merges consecutive segments of an index into a new segment. The live documents are copied
+ * in id order (stored documents, DOCNOs and lengths), and each term's postings are the
+ * concatenation of its postings in the source segments. Deleted documents are left out,
+ * which reclaims their space but shifts the internal ids of the documents after them; the
+ * doc map records the new id of every source document. The merged segment has positions
+ * if every source segment has them, and quantized impacts (recomputed for the merged segment's
+ * average document length) if every source segment has them with the same number of bits,
+ * impact-ordered as well if every source segment is.
+ */
+public class SegmentMerger {
+	// Processed bytes are reported to the rate limiter in chunks of about this size
+	private static final long PAUSE_BYTES = 64 * 1024;
+	
+	private final File indexDir;
+	private final RateLimiter rateLimiter;
+	private long bytesMerged = 0;
+	private long pendingBytes = 0;
+	private int[] docMap;
+	
+	/*
+	 * @param indexDir		The index directory (root)
+	 * @param rateLimiter	Limits the rate at which the merge processes data
+	 */
+	public SegmentMerger(File indexDir, RateLimiter rateLimiter) {
+		this.indexDir = indexDir;
+		this.rateLimiter = rateLimiter;
+	}
+	
+	/*
+	 * The method writes the merged segment. The source segments are not modified.
+	 * 
+	 * @param segmentInfos	The index's segments
+	 * @param start			The position of the first segment to merge
+	 * @param count			The number of segments to merge
+	 * @param name			The name of the merged segment
+	 * @return				The merged segment (taking the place of the source segments)
+	 */
+	public SegmentInfo merge(SegmentInfos segmentInfos, int start, int count, String name) throws IOException, InterruptedException {
+		// Open the source segments with ids relative to the first source segment
+		SegmentInfos sources = new SegmentInfos();
+		int sourceDocs = 0;
+		for (int i = start; i < start + count; i++) {
+			SegmentInfo source = segmentInfos.get(i);
+			sources.add(source.withBaseDocId(sourceDocs));
+			sourceDocs += source.getNumDocs();
+		}
+		
+		IndexReader index = new IndexReader(indexDir, sources);
+		DocStoreReader docStore = new DocStoreReader(indexDir, sources, 4); // Documents are read in order, so few blocks are needed
+		
+		File segmentDir = new File(indexDir, name);
+		segmentDir.mkdirs();
+		
+		// Stored documents and doc tables
+		DocTableWriter docTableWriter = new DocTableWriter(segmentDir);
+		DocStoreWriter docStoreWriter = new DocStoreWriter(segmentDir);
+		docMap = new int[sourceDocs];
+		int numDocs = 0;
+		long totalLength = 0;
+		
+		for (int docId = 0; docId < sourceDocs; docId++) {
+			checkAborted();
+			if (index.isDeleted(docId)) {
+				docMap[docId] = -1;
+				continue;
+			}
+			docMap[docId] = numDocs++;
+			
+			String docno = index.getDocno(docId);
+			StoredDocument doc = docStore.getDocument(docId);
+			int docLength = index.getDocLength(docId);
+			totalLength += docLength;
+			
+			docTableWriter.addDoc(docno, docLength);
+			docStoreWriter.addDocument(docno, doc.getMetadata(), doc.getContent());
+			
+			addBytes(DocStoreWriter.DOCNO_ENTRY_SIZE + doc.getMetadata().length() + doc.getContent().length());
+		}
+		
+		docTableWriter.close();
+		docStoreWriter.close();
+		docStore.close();
+		
+		// Postings
+		boolean positions = index.hasPositions();
+		PostingsWriter postingsWriter = new PostingsWriter(segmentDir, positions, index.getImpactBits(), index.hasImpactOrder());
+		int numTerms = index.getNumTerms();
+		int[] positionBuffer = new int[64];
+		
+		for (int termId = 0; termId < numTerms; termId++) {
+			checkAborted();
+			PostingsList postings = positions ? index.getPositionalPostings(termId) : index.getPostings(termId);
+			long positionBytes = 0;
+			
+			postingsWriter.startTerm();
+			for (int i = 0; i < postings.size(); i++) {
+				int docId = docMap[postings.getDocId(i)];
+				if (docId < 0) {
+					continue;
+				}
+				postingsWriter.addPosting(docId, postings.getFreq(i));
+				
+				if (positions) {
+					if (positionBuffer.length < postings.getFreq(i)) {
+						positionBuffer = new int[Math.max(postings.getFreq(i), positionBuffer.length * 2)];
+					}
+					((PositionalPostingsList) postings).readPositions(i, positionBuffer);
+					postingsWriter.addPositions(positionBuffer, 0, postings.getFreq(i));
+					positionBytes += 2L * postings.getFreq(i);
+				}
+			}
+			postingsWriter.finishTerm();
+			
+			addBytes(PostingsWriter.OFFSET_ENTRY_SIZE + 8L * postings.size() + positionBytes);
+		}
+		
+		postingsWriter.close();
+		rateLimiter.pause(pendingBytes);
+		
+		return new SegmentInfo(name, segmentInfos.get(start).getBaseDocId(), numDocs, totalLength);
+	}
+	
+	/*
+	 * Returns the new local id of each source document (numbered from the first source
+	 * segment's first document), or -1 for deleted documents.
+	 */
+	public int[] getDocMap() {
+		return docMap;
+	}
+	
+	/*
+	 * Returns the number of (uncompressed) bytes of documents and postings merged.
+	 */
+	public long getBytesMerged() {
+		return bytesMerged;
+	}
+	
+	private void addBytes(long bytes) throws InterruptedException {
+		bytesMerged += bytes;
+		pendingBytes += bytes;
+		if (pendingBytes >= PAUSE_BYTES) {
+			rateLimiter.pause(pendingBytes);
+			pendingBytes = 0;
+		}
+	}
+	
+	private static void checkAborted() throws InterruptedException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException("Merge aborted");
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package component.Merge;
+
+import component.Index.SegmentInfo;
+import component.Index.SegmentInfos;
+
+/*
+ * Chooses which segments to merge. Segments are grouped into tiers by size: tier 0 holds
+ * segments with fewer than segmentsPerTier times the floor size, and each following tier
+ * holds segments up to segmentsPerTier times larger than the previous one. Once segmentsPerTier adjacent segments
+ * fall in the same tier they are merged into one segment of the next tier, so each document
+ * is rewritten about once per tier (logarithmic in the collection size) while the number of
+ * segments stays at most about segmentsPerTier per tier.
+ * 
+ * Segments are sized by their live documents. A segment in which at least reclaimPercent of
+ * the documents are deleted is also rewritten on its own to reclaim the space. Only adjacent
+ * segments are merged, so the documents stay in internal id order.
+ */
+public class TieredMergePolicy {
+	public static final int DEFAULT_SEGMENTS_PER_TIER = 10;
+	public static final int DEFAULT_FLOOR_DOCS = 1000;
+	public static final int DEFAULT_MAX_MERGED_DOCS = 5000000;
+	public static final int DEFAULT_RECLAIM_PERCENT = 20;
+	
+	private final int segmentsPerTier;
+	private final int floorDocs;
+	private final int maxMergedDocs;
+	private final int reclaimPercent;
+	
+	public TieredMergePolicy() {
+		this(DEFAULT_SEGMENTS_PER_TIER, DEFAULT_FLOOR_DOCS, DEFAULT_MAX_MERGED_DOCS, DEFAULT_RECLAIM_PERCENT);
+	}
+	
+	/*
+	 * @param segmentsPerTier	The number of similarly sized segments that are merged together
+	 * @param floorDocs			Segments with fewer documents are all treated as this size
+	 * @param maxMergedDocs		Merges that would produce a larger segment are not chosen
+	 * @param reclaimPercent	The percentage of deleted documents at which a segment is rewritten
+	 */
+	public TieredMergePolicy(int segmentsPerTier, int floorDocs, int maxMergedDocs, int reclaimPercent) {
+		if (segmentsPerTier < 2) {
+			throw new IllegalArgumentException("segmentsPerTier must be at least 2");
+		}
+		this.segmentsPerTier = segmentsPerTier;
+		this.floorDocs = Math.max(floorDocs, 1);
+		this.maxMergedDocs = maxMergedDocs;
+		this.reclaimPercent = reclaimPercent;
+	}
+	
+	/*
+	 * The method finds the next merge. The smallest tier is checked first, since its
+	 * segments are the cheapest to merge and the most numerous. If no tier is full, the
+	 * segment with the largest share of deleted documents over the reclaim threshold is chosen.
+	 * 
+	 * @param segmentInfos	The index's current segments
+	 * @return				The position of the first segment to merge and the number of segments
+	 * 						as {start, count}, or null if no merge is needed
+	 */
+	public int[] findMerge(SegmentInfos segmentInfos) {
+		int numSegments = segmentInfos.size();
+		int[] tiers = new int[numSegments];
+		int maxTier = 0;
+		for (int i = 0; i < numSegments; i++) {
+			tiers[i] = getTier(segmentInfos.get(i).getNumLiveDocs());
+			maxTier = Math.max(maxTier, tiers[i]);
+		}
+		
+		for (int tier = 0; tier <= maxTier; tier++) {
+			int start = 0;
+			long mergedDocs = 0;
+			
+			for (int i = 0; i < numSegments; i++) {
+				if (tiers[i] != tier) {
+					start = i + 1;
+					mergedDocs = 0;
+					continue;
+				}
+				
+				mergedDocs += segmentInfos.get(i).getNumLiveDocs();
+				while (mergedDocs > maxMergedDocs && start < i) {
+					mergedDocs -= segmentInfos.get(start).getNumLiveDocs();
+					start++;
+				}
+				
+				if (i - start + 1 == segmentsPerTier) {
+					return new int[] { start, segmentsPerTier };
+				}
+			}
+		}
+		
+		int reclaim = -1;
+		double maxDeleted = 0;
+		for (int i = 0; i < numSegments; i++) {
+			SegmentInfo segment = segmentInfos.get(i);
+			double deleted = segment.getNumDocs() == 0 ? 0 : (double) segment.getDelCount() / segment.getNumDocs();
+			if (deleted * 100 >= reclaimPercent && deleted > maxDeleted) {
+				reclaim = i;
+				maxDeleted = deleted;
+			}
+		}
+		if (reclaim >= 0) {
+			return new int[] { reclaim, 1 };
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the tier of a segment with the given number of documents.
+	 */
+	int getTier(int numDocs) {
+		int tier = 0;
+		long tierSize = (long) floorDocs * segmentsPerTier;
+		while (numDocs >= tierSize) {
+			tier += 1;
+			tierSize *= segmentsPerTier;
+		}
+		return tier;
+	}
+}
@@ -0,0 +1,131 @@
+package component.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Splits a stream of TREC formatted documents into the bytes of each document, from <DOC>
+ * to </DOC>. The stream is read in large chunks and scanned for the two tags as bytes, so
+ * nothing is decoded and the tags do not have to be on lines of their own. Anything between
+ * documents is skipped, and an unterminated document at the end of the stream is dropped.
+ */
+public class DocumentSplitter {
+	private static final byte[] DOC_START = "<DOC>".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DOC_END = "</DOC>".getBytes(StandardCharsets.US_ASCII);
+	
+	private final InputStream in;
+	private byte[] buffer = new byte[1 << 20];
+	private int start = 0; // The first byte not yet consumed
+	private int limit = 0; // The end of the bytes read into the buffer
+	private boolean eof = false;
+	
+	/*
+	 * @param in	The (decompressed) stream of documents
+	 */
+	public DocumentSplitter(InputStream in) {
+		this.in = in;
+	}
+	
+	/*
+	 * The method reads the next document.
+	 * 
+	 * @return 		The bytes of the document from <DOC> to </DOC>, or null at the end of the stream
+	 */
+	public byte[] next() throws IOException {
+		int docStart = find(DOC_START, 0, true);
+		if (docStart == -1) {
+			return null;
+		}
+		start += docStart; // Keep the document in the buffer while looking for its end
+		
+		int docEnd = find(DOC_END, DOC_START.length, false);
+		if (docEnd == -1) {
+			start = limit;
+			return null;
+		}
+		docEnd += DOC_END.length;
+		
+		byte[] doc = Arrays.copyOfRange(buffer, start, start + docEnd);
+		start += docEnd;
+		return doc;
+	}
+	
+	/*
+	 * The method finds a tag, reading more of the stream until it is found.
+	 * 
+	 * @param tag		The bytes of the tag
+	 * @param from		The offset from the first unconsumed byte to search from
+	 * @param discard	Whether the bytes searched so far may be dropped from the buffer
+	 * @return 			The offset of the tag from the first unconsumed byte, or -1 at the end of the stream
+	 */
+	private int find(byte[] tag, int from, boolean discard) throws IOException {
+		while (true) {
+			int index = indexOf(tag, start + from);
+			if (index != -1) {
+				return index - start;
+			}
+			
+			// Only the last bytes might be the start of a tag split across reads
+			int searched = Math.max(from, limit - start - tag.length + 1);
+			if (discard) {
+				start += searched;
+				from = 0;
+			} else {
+				from = searched;
+			}
+			
+			if (!fill()) {
+				start = limit;
+				return -1;
+			}
+		}
+	}
+	
+	private int indexOf(byte[] tag, int from) {
+		int last = limit - tag.length;
+		for (int i = from; i <= last; i++) {
+			if (buffer[i] != tag[0]) {
+				continue;
+			}
+			int j = 1;
+			while (j < tag.length && buffer[i + j] == tag[j]) {
+				j++;
+			}
+			if (j == tag.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * The method moves the unconsumed bytes to the front of the buffer (growing it if they
+	 * fill it) and reads more of the stream after them.
+	 * 
+	 * @return 		Whether any bytes were read
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			limit -= start;
+			start = 0;
+		}
+		if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		
+		int n = in.read(buffer, limit, buffer.length - limit);
+		if (n == -1) {
+			eof = true;
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+}
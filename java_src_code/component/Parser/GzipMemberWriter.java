@@ -0,0 +1,78 @@
+package component.Parser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+ * Writes a gzipped file as a series of members that each decompress on their own, with the
+ * member's compressed size recorded in an extra field of its header so that GzipMembers can
+ * find every member without decompressing the file. Gzip tools ignore the extra field and read
+ * the file like any other multi-member file, so it decompresses to the concatenated data.
+ */
+public class GzipMemberWriter {
+	private final OutputStream out;
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private final CRC32 crc = new CRC32();
+	private byte[] compressed = new byte[1 << 16];
+	private final byte[] header = new byte[GzipMembers.HEADER_SIZE];
+	private final byte[] trailer = new byte[GzipMembers.TRAILER_SIZE];
+	
+	public GzipMemberWriter(File file) throws IOException {
+		out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+	}
+	
+	/*
+	 * The method compresses data as the next member of the file.
+	 * 
+	 * @param data		The bytes to compress
+	 * @param offset	The index of the first byte
+	 * @param length	The number of bytes
+	 */
+	public void writeMember(byte[] data, int offset, int length) throws IOException {
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		
+		crc.reset();
+		crc.update(data, offset, length);
+		
+		// Header: magic, deflate, FEXTRA, no modification time, unknown OS, then the size subfield
+		header[0] = (byte) 0x1F;
+		header[1] = (byte) 0x8B;
+		header[2] = 8;
+		header[3] = 0x04;
+		header[9] = (byte) 0xFF;
+		header[10] = 4 + GzipMembers.SUBFIELD_LENGTH;
+		header[12] = GzipMembers.SUBFIELD_ID1;
+		header[13] = GzipMembers.SUBFIELD_ID2;
+		header[14] = GzipMembers.SUBFIELD_LENGTH;
+		GzipMembers.writeIntLE(header, 16, GzipMembers.HEADER_SIZE + compressedLength + GzipMembers.TRAILER_SIZE);
+		
+		// Trailer: CRC-32 and uncompressed length
+		GzipMembers.writeIntLE(trailer, 0, (int) crc.getValue());
+		GzipMembers.writeIntLE(trailer, 4, length);
+		
+		out.write(header);
+		out.write(compressed, 0, compressedLength);
+		out.write(trailer);
+	}
+	
+	public void close() throws IOException {
+		deflater.end();
+		out.close();
+	}
+}
@@ -0,0 +1,184 @@
+package component.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Splits gzipped input into chunks that can be decompressed independently, so that several
+ * threads can decompress one input. Every input file is a chunk of its own, and a file written
+ * by GzipMemberWriter is split further into its members: each member records its compressed
+ * size in an extra field of its header (like BGZF), so the members are found by jumping from
+ * header to header without decompressing anything.
+ * 
+ * The members of other multi-member files (e.g., files joined with cat) do not record their
+ * size, so from the first such member the rest of the file is a single chunk, decompressed
+ * in order.
+ * 
+ * Documents are expected not to span chunks, which holds for whole files and for the members
+ * written by the Rechunk program.
+ */
+public class GzipMembers {
+	// The extra subfield holding a member's size: SI1 = 'I', SI2 = 'E', LEN = 4, then the size
+	static final byte SUBFIELD_ID1 = 'I';
+	static final byte SUBFIELD_ID2 = 'E';
+	static final int SUBFIELD_LENGTH = 4;
+	
+	// The sizes of a member's header (with the subfield) and trailer written by GzipMemberWriter
+	static final int HEADER_SIZE = 10 + 2 + 4 + SUBFIELD_LENGTH;
+	static final int TRAILER_SIZE = 8;
+	
+	// Larger recorded sizes are not trusted (a member is read into memory to be decompressed)
+	private static final long MAX_MEMBER_SIZE = 1 << 30;
+	
+	private static final int FEXTRA = 0x04;
+	
+	/*
+	 * A part of a gzipped file holding one or more whole members.
+	 */
+	public static class Chunk {
+		private final File file;
+		private final long offset;
+		private final long length; // -1 for the rest of the file
+		
+		Chunk(File file, long offset, long length) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+		
+		public File getFile() {
+			return file;
+		}
+		
+		/*
+		 * The method opens a stream of the chunk's decompressed bytes.
+		 */
+		public InputStream open() throws IOException {
+			if (length != -1) {
+				// A single member, read at once so it doesn't hold a file open while it is decompressed
+				byte[] member = new byte[(int) length];
+				RandomAccessFile in = new RandomAccessFile(file, "r");
+				try {
+					in.seek(offset);
+					in.readFully(member);
+				} finally {
+					in.close();
+				}
+				return new GZIPInputStream(new ByteArrayInputStream(member), 1 << 16);
+			}
+			
+			FileInputStream in = new FileInputStream(file);
+			try {
+				in.getChannel().position(offset);
+				return new GZIPInputStream(in, 1 << 16);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+	}
+	
+	/*
+	 * Returns the gzipped files of an input: the file itself, or the .gz files of a directory
+	 * in name order (so that the order of the documents does not depend on the file system).
+	 */
+	public static File[] listInputFiles(File input) {
+		if (!input.isDirectory()) {
+			return new File[] { input };
+		}
+		
+		File[] files = input.listFiles((dir, name) -> name.endsWith(".gz"));
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+		return files;
+	}
+	
+	/*
+	 * The method splits files into independently decompressible chunks, in input order.
+	 * 
+	 * @param files		The gzipped files
+	 * @return 			The chunks of every file, in file order and then in order within each file
+	 */
+	public static ArrayList<Chunk> split(File[] files) throws IOException {
+		ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+		for (File file : files) {
+			split(file, chunks);
+		}
+		return chunks;
+	}
+	
+	private static void split(File file, ArrayList<Chunk> chunks) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			long fileLength = in.length();
+			long offset = 0;
+			
+			while (offset < fileLength) {
+				long size = readMemberSize(in, offset);
+				if (size == -1 || offset + size > fileLength) {
+					chunks.add(new Chunk(file, offset, -1));
+					return;
+				}
+				chunks.add(new Chunk(file, offset, size));
+				offset += size;
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/*
+	 * Returns the compressed size of the member starting at an offset, as recorded in its header,
+	 * or -1 if the header does not record it.
+	 */
+	static long readMemberSize(RandomAccessFile in, long offset) throws IOException {
+		if (offset + HEADER_SIZE > in.length()) {
+			return -1;
+		}
+		
+		in.seek(offset);
+		byte[] header = new byte[12];
+		in.readFully(header);
+		if ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || header[2] != 8 || (header[3] & FEXTRA) == 0) {
+			return -1;
+		}
+		
+		// Look for the size among the extra field's subfields
+		byte[] extra = new byte[(header[10] & 0xFF) | (header[11] & 0xFF) << 8];
+		if (offset + 12 + extra.length > in.length()) {
+			return -1;
+		}
+		in.readFully(extra);
+		
+		int i = 0;
+		while (i + 4 <= extra.length) {
+			int length = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+			if (extra[i] == SUBFIELD_ID1 && extra[i + 1] == SUBFIELD_ID2 && length == SUBFIELD_LENGTH && i + 8 <= extra.length) {
+				long size = readIntLE(extra, i + 4) & 0xFFFFFFFFL;
+				return size < HEADER_SIZE + TRAILER_SIZE || size >= MAX_MEMBER_SIZE ? -1 : size;
+			}
+			i += 4 + length;
+		}
+		return -1;
+	}
+	
+	static int readIntLE(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+	}
+	
+	static void writeIntLE(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) value;
+		bytes[offset + 1] = (byte) (value >>> 8);
+		bytes[offset + 2] = (byte) (value >>> 16);
+		bytes[offset + 3] = (byte) (value >>> 24);
+	}
+}
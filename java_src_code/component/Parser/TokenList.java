@@ -0,0 +1,122 @@
+package component.Parser;
+
+import component.Stemmer.StemCache;
+
+/*
+ * The tokens of a document, packed into a single char array instead of a String per token.
+ * Token i occupies [getStart(i), getStart(i) + getLength(i)) of getChars(), and its hash is
+ * the hashCode its String would have.
+ */
+public class TokenList {
+	private char[] chars = new char[1024];
+	private int[] ends = new int[256];
+	private int[] hashes = new int[256];
+	private int size = 0;
+	private int numChars = 0;
+	
+	/*
+	 * The method appends a token.
+	 * 
+	 * @param src		The array holding the token's chars
+	 * @param offset	The index of the token's first char
+	 * @param length	The number of chars in the token
+	 */
+	public void add(char[] src, int offset, int length) {
+		if (numChars + length > chars.length) {
+			char[] grown = new char[Math.max(chars.length * 2, numChars + length)];
+			System.arraycopy(chars, 0, grown, 0, numChars);
+			chars = grown;
+		}
+		if (size == ends.length) {
+			int[] grownEnds = new int[size * 2];
+			int[] grownHashes = new int[size * 2];
+			System.arraycopy(ends, 0, grownEnds, 0, size);
+			System.arraycopy(hashes, 0, grownHashes, 0, size);
+			ends = grownEnds;
+			hashes = grownHashes;
+		}
+		
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			char c = src[offset + i];
+			chars[numChars + i] = c;
+			hash = 31 * hash + c;
+		}
+		
+		numChars += length;
+		ends[size] = numChars;
+		hashes[size] = hash;
+		size += 1;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/*
+	 * Returns the array holding the chars of every token.
+	 */
+	public char[] getChars() {
+		return chars;
+	}
+	
+	public int getStart(int i) {
+		return i == 0 ? 0 : ends[i - 1];
+	}
+	
+	public int getLength(int i) {
+		return ends[i] - getStart(i);
+	}
+	
+	public int getHash(int i) {
+		return hashes[i];
+	}
+	
+	/*
+	 * Returns token i as a String.
+	 */
+	public String getTerm(int i) {
+		return new String(chars, getStart(i), getLength(i));
+	}
+	
+	/*
+	 * The method replaces every token by its stem, in place (a stem is never longer than its
+	 * word, so the stems are packed over the words).
+	 * 
+	 * @param stemmer	The stemmer to apply
+	 */
+	public void stem(StemCache stemmer) {
+		char[] word = new char[32];
+		int readStart = 0;
+		int writeEnd = 0;
+		
+		for (int i = 0; i < size; i++) {
+			int length = ends[i] - readStart;
+			if (length > word.length) {
+				word = new char[Math.max(length, word.length * 2)];
+			}
+			System.arraycopy(chars, readStart, word, 0, length);
+			readStart = ends[i];
+			
+			int stemLength = stemmer.stem(word, length, hashes[i]);
+			int hash = 0;
+			for (int j = 0; j < stemLength; j++) {
+				char c = word[j];
+				chars[writeEnd + j] = c;
+				hash = 31 * hash + c;
+			}
+			writeEnd += stemLength;
+			ends[i] = writeEnd;
+			hashes[i] = hash;
+		}
+		numChars = writeEnd;
+	}
+	
+	/*
+	 * Removes all tokens while keeping the allocated capacity for reuse.
+	 */
+	public void clear() {
+		size = 0;
+		numChars = 0;
+	}
+}
@@ -0,0 +1,189 @@
+package component.Parser;
+
+/*
+ * A reusable tokenizer that walks a CharSequence or a UTF-8 byte buffer and yields one token
+ * at a time without creating a String per token. A token is a maximal run of letters and
+ * digits, lowercased char by char (the same tokens as IndexEngine.tokenizeText for all but a
+ * few special-cased characters of String.toLowerCase). The current token's chars are held in
+ * a reusable buffer together with its String-compatible hash, so it can be looked up, stemmed
+ * in place or compared before (or instead of) being turned into a String.
+ * 
+ * Typical use:
+ * 
+ * 		stream.reset(line);
+ * 		while (stream.next()) {
+ * 			... stream.buffer(), stream.length(), stream.hash() ...
+ * 		}
+ */
+public class TokenStream {
+	private CharSequence text = null;
+	private byte[] bytes = null;
+	private int pos;
+	private int end;
+	
+	// The current token
+	private char[] buffer = new char[32];
+	private int length = 0;
+	private int hash = 0;
+	private int startOffset = 0;
+	private int endOffset = 0;
+	
+	/*
+	 * The method starts tokenizing a sequence of chars.
+	 */
+	public TokenStream reset(CharSequence text) {
+		return reset(text, 0, text.length());
+	}
+	
+	/*
+	 * The method starts tokenizing part of a sequence of chars.
+	 * 
+	 * @param text		The chars to tokenize
+	 * @param start		The index of the first char
+	 * @param end		The index after the last char
+	 */
+	public TokenStream reset(CharSequence text, int start, int end) {
+		this.text = text;
+		this.bytes = null;
+		this.pos = start;
+		this.end = end;
+		length = 0;
+		return this;
+	}
+	
+	/*
+	 * The method starts tokenizing UTF-8 encoded bytes. Offsets of the tokens are byte offsets.
+	 * 
+	 * @param bytes		The UTF-8 bytes to tokenize
+	 * @param offset	The index of the first byte
+	 * @param len		The number of bytes
+	 */
+	public TokenStream reset(byte[] bytes, int offset, int len) {
+		this.text = null;
+		this.bytes = bytes;
+		this.pos = offset;
+		this.end = offset + len;
+		length = 0;
+		return this;
+	}
+	
+	/*
+	 * The method advances to the next token.
+	 * 
+	 * @return 		Whether there is another token
+	 */
+	public boolean next() {
+		length = 0;
+		hash = 0;
+		
+		while (pos < end) {
+			int charStart = pos;
+			char c = Character.toLowerCase(text != null ? text.charAt(pos++) : nextUtf8Char());
+			
+			if (Character.isLetter(c) || Character.isDigit(c)) {
+				if (length == 0) {
+					startOffset = charStart;
+				}
+				if (length == buffer.length) {
+					char[] grown = new char[buffer.length * 2];
+					System.arraycopy(buffer, 0, grown, 0, length);
+					buffer = grown;
+				}
+				buffer[length++] = c;
+				hash = 31 * hash + c;
+				endOffset = pos;
+			} else if (length > 0) {
+				return true;
+			}
+		}
+		return length > 0;
+	}
+	
+	/*
+	 * The method decodes the char at the current byte position and moves past it. Malformed
+	 * bytes and characters outside the Basic Multilingual Plane (which a String holds as two
+	 * surrogates, neither a letter nor a digit) are returned as separators.
+	 */
+	private char nextUtf8Char() {
+		int b = bytes[pos++] & 0xFF;
+		if (b < 0x80) {
+			return (char) b;
+		}
+		
+		int extra;
+		int value;
+		if ((b & 0xE0) == 0xC0) {
+			extra = 1;
+			value = b & 0x1F;
+		} else if ((b & 0xF0) == 0xE0) {
+			extra = 2;
+			value = b & 0x0F;
+		} else {
+			extra = (b & 0xF8) == 0xF0 ? 3 : 0;
+			value = -1;
+		}
+		
+		for (int i = 0; i < extra; i++) {
+			if (pos == end || (bytes[pos] & 0xC0) != 0x80) {
+				return ' ';
+			}
+			value = (value << 6) | (bytes[pos++] & 0x3F);
+		}
+		return value < 0 || value > 0xFFFF ? ' ' : (char) value;
+	}
+	
+	/*
+	 * Returns the buffer holding the current token's lowercased chars in [0, length()).
+	 * The buffer may be modified (e.g., stemmed in place) and is reused by the next token.
+	 */
+	public char[] buffer() {
+		return buffer;
+	}
+	
+	public int length() {
+		return length;
+	}
+	
+	/*
+	 * Returns the hash of the current token, equal to the hashCode of its String.
+	 */
+	public int hash() {
+		return hash;
+	}
+	
+	/*
+	 * Returns the offset of the current token's first char (or byte) in the input.
+	 */
+	public int startOffset() {
+		return startOffset;
+	}
+	
+	/*
+	 * Returns the offset after the current token's last char (or byte) in the input.
+	 */
+	public int endOffset() {
+		return endOffset;
+	}
+	
+	/*
+	 * Returns whether the current token is equal to a term.
+	 */
+	public boolean termEquals(String term) {
+		if (term.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] != term.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Returns the current token as a String.
+	 */
+	public String term() {
+		return new String(buffer, 0, length);
+	}
+}
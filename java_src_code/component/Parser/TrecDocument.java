@@ -0,0 +1,52 @@
+package component.Parser;
+
+/*
+ * The fields of a TREC formatted document needed for indexing: its DOCNO, date,
+ * headline, raw text, and the tokens of its HEADLINE, TEXT and GRAPHIC sections in
+ * document order.
+ */
+public class TrecDocument {
+	private final String docno;
+	private final String date;
+	private final String headline;
+	private final String rawText;
+	private final TokenList tokens;
+	
+	public TrecDocument(String docno, String date, String headline, String rawText, TokenList tokens) {
+		this.docno = docno;
+		this.date = date;
+		this.headline = headline;
+		this.rawText = rawText;
+		this.tokens = tokens;
+	}
+	
+	public String getDocno() {
+		return docno;
+	}
+	
+	/*
+	 * Returns the date from the DATE section (or, without one, from the DOCNO), or null if
+	 * the document has neither.
+	 */
+	public String getDate() {
+		return date;
+	}
+	
+	/*
+	 * Returns the headline, or null if the document has no HEADLINE section.
+	 */
+	public String getHeadline() {
+		return headline;
+	}
+	
+	/*
+	 * Returns the document exactly as it appeared in the input, from <DOC> to </DOC>.
+	 */
+	public String getRawText() {
+		return rawText;
+	}
+	
+	public TokenList getTokens() {
+		return tokens;
+	}
+}
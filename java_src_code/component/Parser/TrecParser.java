@@ -0,0 +1,351 @@
+package component.Parser;
+
+import component.IndexEngine.IndexEngine;
+import component.Primitive.IntList;
+import component.Stemmer.StemCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * A parser for TREC formatted documents that works directly on the document's UTF-8 bytes.
+ * The bytes are scanned once for tags, and the text between tags is handled according to the
+ * section it is in, so the layout of the document does not matter: tags may share lines with
+ * text and each other, tags may have attributes, and a '<' that does not start a tag is
+ * treated as text.
+ * 
+ * 		DOCNO						the document's DOCNO (white space removed)
+ * 		DATE						the document's date (white space collapsed)
+ * 		HEADLINE					the headline (line breaks removed), and tokens
+ * 		TEXT, GRAPHIC				tokens
+ * 
+ * Other tags (e.g., <P>) only separate text. The tokens are streamed from the bytes without
+ * decoding them into Strings, and collected into a packed TokenList (then stemmed in place, if
+ * a stemmer is given). Only the DOCNO, date, headline and raw text are decoded.
+ * 
+ * A document is parsed in three passes, which are timed separately for the indexing stats:
+ * scanning the tags (which records the spans of text to tokenize), tokenizing the spans, and
+ * stemming the tokens.
+ */
+public class TrecParser {
+	private enum Section { NONE, DOCNO, DATE, HEADLINE, TEXT, GRAPHIC }
+	
+	private static final String[] TAG_NAMES = { "DOCNO", "DATE", "HEADLINE", "TEXT", "GRAPHIC" };
+	private static final Section[] TAG_SECTIONS = { Section.DOCNO, Section.DATE, Section.HEADLINE, Section.TEXT, Section.GRAPHIC };
+	
+	private final TokenStream tokenStream = new TokenStream();
+	private final StemCache stemmer;
+	
+	// The fields of the current document
+	private byte[] bytes;
+	private Section section;
+	private TextBuffer docno = new TextBuffer();
+	private TextBuffer date = new TextBuffer();
+	private TextBuffer headline = new TextBuffer();
+	private boolean hasHeadline;
+	private IntList spans = new IntList(); // The start and end of each span of text to tokenize
+	private TokenList tokens;
+	
+	// The time spent in each pass over the last document
+	private long parseNanos;
+	private long tokenizeNanos;
+	private long stemNanos;
+	
+	public TrecParser() {
+		this(null);
+	}
+	
+	/*
+	 * @param stemmer	The stemmer to apply to the tokens, or null to keep them unstemmed
+	 */
+	public TrecParser(StemCache stemmer) {
+		this.stemmer = stemmer;
+	}
+	
+	/*
+	 * The method parses a document.
+	 * 
+	 * @param doc		The UTF-8 bytes of the document, from <DOC> to </DOC>
+	 * @param offset	The index of the document's first byte
+	 * @param length	The number of bytes in the document
+	 * @return 			The parsed document, or null if no DOCNO was found
+	 */
+	public TrecDocument parse(byte[] doc, int offset, int length) {
+		long startTime = System.nanoTime();
+		bytes = doc;
+		section = Section.NONE;
+		docno.clear();
+		date.clear();
+		headline.clear();
+		hasHeadline = false;
+		spans.clear();
+		tokens = new TokenList();
+		
+		int end = offset + length;
+		int textStart = offset;
+		int pos = offset;
+		
+		while (pos < end) {
+			if (bytes[pos] != '<') {
+				pos++;
+				continue;
+			}
+			
+			// Read the tag's name, if this is a tag
+			int nameStart = pos + 1;
+			boolean closing = nameStart < end && bytes[nameStart] == '/';
+			if (closing) {
+				nameStart++;
+			}
+			int nameEnd = nameStart;
+			while (nameEnd < end && isAsciiLetter(bytes[nameEnd])) {
+				nameEnd++;
+			}
+			int tagEnd = findTagEnd(nameStart, nameEnd, end);
+			if (tagEnd == -1) {
+				pos++; // Not a tag, so the '<' is text
+				continue;
+			}
+			
+			addText(textStart, pos);
+			openOrClose(findSection(nameStart, nameEnd), closing);
+			pos = tagEnd + 1;
+			textStart = pos;
+		}
+		addText(textStart, end);
+		
+		TrecDocument parsed = null;
+		if (docno.length() > 0) {
+			String docnoValue = docno.toString();
+			String dateValue = date.length() > 0 ? date.toString() : dateFromDocno(docnoValue);
+			parsed = new TrecDocument(docnoValue, dateValue, hasHeadline ? headline.toString() : null,
+					new String(doc, offset, length, StandardCharsets.UTF_8), tokens);
+		}
+		long scannedTime = System.nanoTime();
+		
+		for (int i = 0; i < spans.size(); i += 2) {
+			addTokens(spans.get(i), spans.get(i + 1));
+		}
+		long tokenizedTime = System.nanoTime();
+		
+		if (stemmer != null) {
+			tokens.stem(stemmer);
+		}
+		long stemmedTime = System.nanoTime();
+		
+		parseNanos = scannedTime - startTime;
+		tokenizeNanos = tokenizedTime - scannedTime;
+		stemNanos = stemmedTime - tokenizedTime;
+		
+		bytes = null;
+		tokens = null;
+		return parsed;
+	}
+	
+	/*
+	 * Returns the time spent scanning the last document's tags and decoding its fields.
+	 */
+	public long getParseNanos() {
+		return parseNanos;
+	}
+	
+	/*
+	 * Returns the time spent tokenizing the last document.
+	 */
+	public long getTokenizeNanos() {
+		return tokenizeNanos;
+	}
+	
+	/*
+	 * Returns the time spent stemming the last document's tokens.
+	 */
+	public long getStemNanos() {
+		return stemNanos;
+	}
+	
+	/*
+	 * The method updates the current section for a tag. Tags of other sections are ignored.
+	 */
+	private void openOrClose(Section tagSection, boolean closing) {
+		if (tagSection == Section.NONE) {
+			return;
+		}
+		if (!closing) {
+			section = tagSection;
+			if (tagSection == Section.HEADLINE) {
+				hasHeadline = true;
+			}
+		} else if (section == tagSection) {
+			section = Section.NONE;
+		}
+	}
+	
+	/*
+	 * Returns the index of the '>' ending a tag whose name has been read, or -1 if the bytes
+	 * are not a tag. The name may be followed by attributes (e.g., <a href="...">), which are
+	 * skipped along with the tag.
+	 */
+	private int findTagEnd(int nameStart, int nameEnd, int end) {
+		if (nameEnd == nameStart || nameEnd == end) {
+			return -1;
+		}
+		if (bytes[nameEnd] == '>') {
+			return nameEnd;
+		}
+		if (!isWhitespace(bytes[nameEnd])) {
+			return -1;
+		}
+		
+		for (int i = nameEnd + 1; i < end; i++) {
+			if (bytes[i] == '>') {
+				return i;
+			}
+			if (bytes[i] == '<' || bytes[i] == '\n') {
+				return -1; // Attributes do not span lines or hold tags
+			}
+		}
+		return -1;
+	}
+	
+	private Section findSection(int nameStart, int nameEnd) {
+		for (int i = 0; i < TAG_NAMES.length; i++) {
+			String name = TAG_NAMES[i];
+			if (name.length() != nameEnd - nameStart) {
+				continue;
+			}
+			int j = 0;
+			while (j < name.length() && bytes[nameStart + j] == name.charAt(j)) {
+				j++;
+			}
+			if (j == name.length()) {
+				return TAG_SECTIONS[i];
+			}
+		}
+		return Section.NONE;
+	}
+	
+	/*
+	 * The method handles the text between two tags according to the current section.
+	 */
+	private void addText(int start, int end) {
+		if (start == end) {
+			return;
+		}
+		
+		switch (section) {
+			case DOCNO:
+				for (int i = start; i < end; i++) {
+					if (!isWhitespace(bytes[i])) {
+						docno.append(bytes[i]);
+					}
+				}
+				break;
+			
+			case DATE:
+				boolean space = date.length() > 0; // Tags separate words too
+				for (int i = start; i < end; i++) {
+					if (isWhitespace(bytes[i])) {
+						space = date.length() > 0;
+					} else {
+						if (space) {
+							date.append((byte) ' ');
+							space = false;
+						}
+						date.append(bytes[i]);
+					}
+				}
+				break;
+			
+			case HEADLINE:
+				for (int i = start; i < end; i++) {
+					if (bytes[i] != '\n' && bytes[i] != '\r') {
+						headline.append(bytes[i]);
+					}
+				}
+				addSpan(start, end);
+				break;
+			
+			case TEXT:
+			case GRAPHIC:
+				addSpan(start, end);
+				break;
+			
+			default:
+				break;
+		}
+	}
+	
+	/*
+	 * The method records a span of text to be tokenized once the tags have been scanned.
+	 */
+	private void addSpan(int start, int end) {
+		spans.add(start);
+		spans.add(end);
+	}
+	
+	/*
+	 * The method appends the tokens of a span of text to the document's tokens.
+	 */
+	private void addTokens(int start, int end) {
+		tokenStream.reset(bytes, start, end - start);
+		while (tokenStream.next()) {
+			tokens.add(tokenStream.buffer(), 0, tokenStream.length());
+		}
+	}
+	
+	/*
+	 * Returns the date encoded in a DOCNO of the form XXMMDDYY-NNNN (e.g., LA010189-0001), or
+	 * null if the DOCNO does not have that form.
+	 */
+	static String dateFromDocno(String docno) {
+		if (docno.length() < 8) {
+			return null;
+		}
+		for (int i = 2; i < 8; i++) {
+			if (docno.charAt(i) < '0' || docno.charAt(i) > '9') {
+				return null;
+			}
+		}
+		
+		int month = Integer.parseInt(docno.substring(2, 4));
+		if (month < 1 || month > 12) {
+			return null;
+		}
+		return IndexEngine.dateFormatter(docno.substring(2, 4), docno.substring(4, 6), docno.substring(6, 8));
+	}
+	
+	private static boolean isAsciiLetter(byte b) {
+		return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+	}
+	
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+	
+	/*
+	 * A reusable buffer of the bytes of a field, decoded as UTF-8 once the field is complete.
+	 */
+	private static class TextBuffer {
+		private byte[] bytes = new byte[64];
+		private int length = 0;
+		
+		void append(byte b) {
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, length * 2);
+			}
+			bytes[length++] = b;
+		}
+		
+		int length() {
+			return length;
+		}
+		
+		void clear() {
+			length = 0;
+		}
+		
+		public String toString() {
+			return new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
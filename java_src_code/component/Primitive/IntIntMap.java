@@ -0,0 +1,133 @@
+package component.Primitive;
+
+import java.util.Arrays;
+
+/*
+ * An open-addressing hash map from non-negative int keys to int values, using linear
+ * probing over parallel primitive arrays. Entries are iterated by slot: for every slot
+ * in [0, capacity()) where isUsed(slot) is true, keyAt(slot) and valueAt(slot) hold an entry.
+ */
+public class IntIntMap {
+	private static final int EMPTY = -1;
+	
+	private int[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	
+	public IntIntMap() {
+		this(16);
+	}
+	
+	public IntIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/*
+	 * Returns the value mapped to key, or defaultValue if there is none.
+	 */
+	public int get(int key, int defaultValue) {
+		int slot = findSlot(key);
+		return keys[slot] == EMPTY ? defaultValue : values[slot];
+	}
+	
+	public boolean containsKey(int key) {
+		return keys[findSlot(key)] != EMPTY;
+	}
+	
+	public void put(int key, int value) {
+		int slot = findSlot(key);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			size += 1;
+			values[slot] = value;
+			growIfNeeded();
+		} else {
+			values[slot] = value;
+		}
+	}
+	
+	/*
+	 * Adds delta to the value mapped to key (treating a missing key as 0) and returns the new value.
+	 */
+	public int increment(int key, int delta) {
+		int slot = findSlot(key);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			values[slot] = delta;
+			size += 1;
+			growIfNeeded();
+			return delta;
+		}
+		return values[slot] += delta;
+	}
+	
+	/*
+	 * Removes all entries while keeping the allocated capacity for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+	
+	public int capacity() {
+		return keys.length;
+	}
+	
+	public boolean isUsed(int slot) {
+		return keys[slot] != EMPTY;
+	}
+	
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+	
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+	
+	private int findSlot(int key) {
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private void growIfNeeded() {
+		if (size * 2 <= keys.length) {
+			return; // Keep the load factor at or below 0.5
+		}
+		
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	/*
+	 * Scrambles the key bits so that consecutive ids spread across the table.
+	 */
+	static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
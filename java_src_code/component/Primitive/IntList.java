@@ -0,0 +1,57 @@
+package component.Primitive;
+
+import java.util.Arrays;
+
+/*
+ * A growable list of primitive ints, used in place of ArrayList<Integer> on indexing
+ * and scoring paths to avoid boxing every element.
+ */
+public class IntList {
+	private int[] values;
+	private int size = 0;
+	
+	public IntList() {
+		this(4);
+	}
+	
+	public IntList(int initialCapacity) {
+		values = new int[Math.max(initialCapacity, 1)];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public int get(int i) {
+		return values[i];
+	}
+	
+	public void set(int i, int value) {
+		values[i] = value;
+	}
+	
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, values.length + (values.length >> 1) + 1);
+		}
+		values[size++] = value;
+	}
+	
+	/*
+	 * Removes all elements while keeping the allocated capacity for reuse.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/*
+	 * Returns a copy of the elements as an array.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,147 @@
+package component.Primitive;
+
+import java.util.Arrays;
+
+/*
+ * A lexicon under construction: an open-addressing hash map from terms to dense term ids
+ * (0 to size() - 1), with the terms also kept by id. Terms are looked up by their chars and
+ * String-compatible hash, so a String is only created the first time a term is added.
+ */
+public class TermIdMap {
+	private static final int EMPTY = -1;
+	
+	private int[] slots;
+	private int mask;
+	private String[] terms;
+	private int[] hashes;
+	private int size = 0;
+	
+	public TermIdMap() {
+		this(1024);
+	}
+	
+	public TermIdMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+		slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+		mask = capacity - 1;
+		terms = new String[Math.max(expectedSize, 4)];
+		hashes = new int[terms.length];
+	}
+	
+	/*
+	 * Returns the number of terms (i.e., the next term id).
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/*
+	 * Returns the term of a term id.
+	 */
+	public String getTerm(int termId) {
+		return terms[termId];
+	}
+	
+	/*
+	 * Returns the id of a term, or -1 if the term has no id.
+	 * 
+	 * @param chars		The array holding the term's chars
+	 * @param offset	The index of the term's first char
+	 * @param length	The number of chars in the term
+	 * @param hash		The hashCode of the term's String
+	 */
+	public int get(char[] chars, int offset, int length, int hash) {
+		return slots[findSlot(chars, offset, length, hash)];
+	}
+	
+	/*
+	 * Returns the id of a term, giving it the next id if it does not have one yet.
+	 * 
+	 * @param chars		The array holding the term's chars
+	 * @param offset	The index of the term's first char
+	 * @param length	The number of chars in the term
+	 * @param hash		The hashCode of the term's String
+	 */
+	public int add(char[] chars, int offset, int length, int hash) {
+		int slot = findSlot(chars, offset, length, hash);
+		if (slots[slot] != EMPTY) {
+			return slots[slot];
+		}
+		return insert(slot, new String(chars, offset, length), hash);
+	}
+	
+	/*
+	 * Returns the id of a term, giving it the next id if it does not have one yet.
+	 */
+	public int add(String term) {
+		int hash = term.hashCode();
+		int slot = findSlot(term, hash);
+		if (slots[slot] != EMPTY) {
+			return slots[slot];
+		}
+		return insert(slot, term, hash);
+	}
+	
+	private int insert(int slot, String term, int hash) {
+		if (size == terms.length) {
+			terms = Arrays.copyOf(terms, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		
+		int termId = size;
+		terms[termId] = term;
+		hashes[termId] = hash;
+		slots[slot] = termId;
+		size += 1;
+		growIfNeeded();
+		return termId;
+	}
+	
+	private int findSlot(char[] chars, int offset, int length, int hash) {
+		int slot = IntIntMap.mix(hash) & mask;
+		while (slots[slot] != EMPTY && !matches(slots[slot], chars, offset, length, hash)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private int findSlot(String term, int hash) {
+		int slot = IntIntMap.mix(hash) & mask;
+		while (slots[slot] != EMPTY && (hashes[slots[slot]] != hash || !terms[slots[slot]].equals(term))) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private boolean matches(int termId, char[] chars, int offset, int length, int hash) {
+		String term = terms[termId];
+		if (hashes[termId] != hash || term.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (term.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void growIfNeeded() {
+		if (size * 2 <= slots.length) {
+			return; // Keep the load factor at or below 0.5
+		}
+		
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, EMPTY);
+		mask = slots.length - 1;
+		
+		for (int termId = 0; termId < size; termId++) {
+			int slot = IntIntMap.mix(hashes[termId]) & mask;
+			while (slots[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = termId;
+		}
+	}
+}
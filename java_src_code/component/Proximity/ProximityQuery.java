@@ -0,0 +1,275 @@
+package component.Proximity;
+
+import component.Index.IndexReader;
+import component.Index.PositionalPostingsCursor;
+import component.Index.PostingsCursor;
+import component.Index.PostingsList;
+import component.Index.TermDictionary;
+import component.IndexEngine.IndexEngine;
+import component.Primitive.IntList;
+import component.Stemmer.PorterStemmer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * A phrase or proximity operator over the terms of a query, evaluated on a positional index.
+ * Three operators are supported, written in the query as:
+ * 
+ * 		"w1 w2 ... wn"			a phrase: the terms at consecutive positions
+ * 		#odN(w1 w2 ... wn)		an ordered window: the terms in order, each at most N positions after the previous one
+ * 		#uwN(w1 w2 ... wn)		an unordered window: the terms in any order within a span of N positions
+ * 
+ * A phrase is an ordered window of width 1. The operator matches a document as many times as
+ * it finds non-overlapping occurrences, so its postings (doc id, number of matches) can be
+ * scored like a term's postings. A term repeated in an unordered window may match the same
+ * occurrence twice.
+ * 
+ * The documents holding every term are found by walking the rarest term's postings with a
+ * cursor, and advancing the other terms' cursors to each of its documents through their skip
+ * tables. A term repeated in the operator gets a cursor per occurrence. Positions are only
+ * located (through the positions skip tables, see PostingsWriter) and decoded for the documents
+ * that hold every term, so the work is proportional to the rarest term's postings rather than
+ * to the sum of the terms' document frequencies.
+ */
+public class ProximityQuery {
+	public enum Operator { ORDERED, UNORDERED }
+	
+	// A quoted phrase (the closing quote may be left out), or #odN(...) / #uwN(...)
+	private static final Pattern SYNTAX = Pattern.compile("\"([^\"]*)(\"|$)|#(od|uw)(\\d+)\\(([^)]*)(\\)|$)", Pattern.CASE_INSENSITIVE);
+	
+	private final Operator operator;
+	private final int width;
+	private final ArrayList<String> terms;
+	
+	/*
+	 * @param operator	Whether the terms must occur in order
+	 * @param width		The ordered window's largest gap between consecutive terms, or the unordered window's span
+	 * @param terms		The (analyzed) terms of the operator
+	 */
+	public ProximityQuery(Operator operator, int width, ArrayList<String> terms) {
+		this.operator = operator;
+		this.width = width;
+		this.terms = terms;
+	}
+	
+	/*
+	 * The method extracts the phrase and proximity operators of a query. Operators with a
+	 * single term are not operators, so their term is left in the query like any other term.
+	 * 
+	 * @param query		The query as entered
+	 * @param stem		Whether to apply the Porter Stemmer to the operators' terms
+	 * @param operators	The list receiving the query's operators
+	 * @return 			The query with its operators removed (the terms scored on their own)
+	 */
+	public static String parse(String query, boolean stem, ArrayList<ProximityQuery> operators) {
+		StringBuilder rest = new StringBuilder();
+		Matcher matcher = SYNTAX.matcher(query);
+		int end = 0;
+		
+		while (matcher.find()) {
+			rest.append(query, end, matcher.start()).append(' ');
+			end = matcher.end();
+			
+			Operator operator = Operator.ORDERED;
+			int width = 1;
+			String text = matcher.group(1);
+			if (text == null) {
+				operator = matcher.group(3).equalsIgnoreCase("od") ? Operator.ORDERED : Operator.UNORDERED;
+				width = Math.max(1, parseWidth(matcher.group(4)));
+				text = matcher.group(5);
+			}
+			
+			ArrayList<String> terms = IndexEngine.tokenizeText(text);
+			if (terms.size() < 2) {
+				rest.append(text).append(' ');
+				continue;
+			}
+			if (stem) {
+				for (int i = 0; i < terms.size(); i++) {
+					terms.set(i, PorterStemmer.stem(terms.get(i)));
+				}
+			}
+			operators.add(new ProximityQuery(operator, width, terms));
+		}
+		
+		return rest.append(query, end, query.length()).toString();
+	}
+	
+	private static int parseWidth(String width) {
+		try {
+			return Integer.parseInt(width);
+		} catch (NumberFormatException e) {
+			return Integer.MAX_VALUE; // Too many digits for an int
+		}
+	}
+	
+	public Operator getOperator() {
+		return operator;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public ArrayList<String> getTerms() {
+		return terms;
+	}
+	
+	/*
+	 * The method finds the documents matching the operator.
+	 * 
+	 * @param index		A positional index (see IndexReader.hasPositions)
+	 * @param lexicon	The index's term dictionary
+	 * @return 			The matching internal ids and the number of matches in each
+	 */
+	public PostingsList evaluate(IndexReader index, TermDictionary lexicon) {
+		int n = terms.size();
+		PositionalPostingsCursor[] cursors = new PositionalPostingsCursor[n];
+		for (int j = 0; j < n; j++) {
+			int termId = lexicon.getTermId(terms.get(j));
+			if (termId == -1) {
+				return new PostingsList(new int[0], new int[0]);
+			}
+			cursors[j] = index.getPositionalCursor(termId);
+		}
+		
+		// Walk the rarest term's postings and advance the other terms' cursors in increasing df order
+		PositionalPostingsCursor[] byDocFreq = cursors.clone();
+		Arrays.sort(byDocFreq, (a, b) -> Integer.compare(a.docFreq(), b.docFreq()));
+		PositionalPostingsCursor rarest = byDocFreq[0];
+		
+		int[][] positions = new int[n][16];
+		int[] lengths = new int[n];
+		IntList docIds = new IntList();
+		IntList counts = new IntList();
+		
+		int docId = rarest.nextDoc();
+		candidates:
+		while (docId != PostingsCursor.NO_MORE_DOCS) {
+			if (index.isDeleted(docId)) {
+				docId = rarest.nextDoc();
+				continue;
+			}
+			
+			for (int k = 1; k < n; k++) {
+				int other = byDocFreq[k].advance(docId);
+				if (other == PostingsCursor.NO_MORE_DOCS) {
+					break candidates; // A term has no more documents
+				}
+				if (other != docId) {
+					docId = rarest.advance(other); // No document before the other term's next one can match
+					continue candidates;
+				}
+			}
+			
+			// Every term occurs in the document, so read and merge their positions
+			for (int j = 0; j < n; j++) {
+				int freq = cursors[j].freq();
+				if (positions[j].length < freq) {
+					positions[j] = new int[Math.max(freq, positions[j].length * 2)];
+				}
+				cursors[j].readPositions(positions[j]);
+				lengths[j] = freq;
+			}
+			
+			int count = operator == Operator.ORDERED
+					? countOrdered(positions, lengths, width)
+					: countUnordered(positions, lengths, width);
+			if (count > 0) {
+				docIds.add(docId);
+				counts.add(count);
+			}
+			docId = rarest.nextDoc();
+		}
+		
+		return new PostingsList(docIds.toArray(), counts.toArray());
+	}
+	
+	/*
+	 * The method counts the non-overlapping occurrences of the terms in order, each at most
+	 * width positions after the previous term. For each start of the first term, taking the
+	 * earliest following occurrence of each next term is the best choice, and the earliest
+	 * occurrences only move forward as the start does, so each list is walked once.
+	 * 
+	 * @param positions		The positions of each term in the document, in increasing order
+	 * @param lengths		The number of positions of each term
+	 * @param width			The largest gap between the positions of consecutive terms
+	 * @return 				The number of matches
+	 */
+	static int countOrdered(int[][] positions, int[] lengths, int width) {
+		int n = positions.length;
+		int[] next = new int[n];
+		int count = 0;
+		int matchEnd = -1;
+		
+		starts:
+		for (int s = 0; s < lengths[0]; s++) {
+			int current = positions[0][s];
+			if (current <= matchEnd) {
+				continue; // Overlaps the previous match
+			}
+			
+			for (int j = 1; j < n; j++) {
+				while (next[j] < lengths[j] && positions[j][next[j]] <= current) {
+					next[j]++;
+				}
+				if (next[j] == lengths[j]) {
+					break starts; // No later start can match either
+				}
+				if (positions[j][next[j]] - current > width) {
+					continue starts;
+				}
+				current = positions[j][next[j]];
+			}
+			
+			count += 1;
+			matchEnd = current;
+		}
+		return count;
+	}
+	
+	/*
+	 * The method counts the non-overlapping windows of at most width positions that hold
+	 * every term. The current position of each term is kept, and while they do not fit in the
+	 * window the term at the smallest position is moved to its next occurrence.
+	 * 
+	 * @param positions		The positions of each term in the document, in increasing order
+	 * @param lengths		The number of positions of each term
+	 * @param width			The largest span (last position - first position + 1) of a match
+	 * @return 				The number of matches
+	 */
+	static int countUnordered(int[][] positions, int[] lengths, int width) {
+		int n = positions.length;
+		int[] next = new int[n];
+		int count = 0;
+		
+		while (true) {
+			int first = 0;
+			int last = Integer.MIN_VALUE;
+			for (int j = 0; j < n; j++) {
+				if (next[j] == lengths[j]) {
+					return count;
+				}
+				int position = positions[j][next[j]];
+				if (position < positions[first][next[first]]) {
+					first = j;
+				}
+				last = Math.max(last, position);
+			}
+			
+			if ((long) last - positions[first][next[first]] + 1 <= width) {
+				count += 1;
+				for (int j = 0; j < n; j++) {
+					while (next[j] < lengths[j] && positions[j][next[j]] <= last) {
+						next[j]++;
+					}
+				}
+			} else {
+				next[first]++;
+			}
+		}
+	}
+}
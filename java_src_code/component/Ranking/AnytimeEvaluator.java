@@ -0,0 +1,144 @@
+package component.Ranking;
+
+import java.util.ArrayList;
+
+import component.Index.ImpactOrderedList;
+import component.Index.IndexReader;
+import component.Index.PostingsList;
+
+/*
+ * Finds the top k documents of a BM25 query score-at-a-time from impact-ordered postings (see
+ * PostingsWriter), within an optional budget of postings or time. Every group of postings that
+ * share an impact (in every segment, for every query term) adds the same partial score, its
+ * term's weight times the impact (see ImpactScorer). The groups of all the terms are sorted by
+ * that partial score and scored from the largest down, so the postings that matter most to the
+ * ranking are scored first.
+ * 
+ * Once the budget is spent, the evaluation stops and the top k of the scores summed so far are
+ * returned, so the cost of a query is bounded however common its terms are. The postings budget
+ * is exact (the last group is cut short), while the time budget is checked before each group. A
+ * query evaluated without a budget scores every posting, with the same results as ImpactScorer.
+ * The matches of proximity operators have no impacts, and are scored in full before the budget
+ * applies.
+ */
+public class AnytimeEvaluator {
+	private final IndexReader index;
+	private final ImpactScorer scorer;
+	private final ArrayList<ImpactGroup> groups = new ArrayList<ImpactGroup>();
+	private long postingsBudget = Long.MAX_VALUE;
+	private long timeBudget = Long.MAX_VALUE;
+	private long numScored = 0;
+	private long numPostings = 0;
+	
+	/*
+	 * @param index		An index with impact-ordered postings (see IndexReader.hasImpactOrder)
+	 */
+	public AnytimeEvaluator(IndexReader index) {
+		this.index = index;
+		scorer = new ImpactScorer(index);
+	}
+	
+	/*
+	 * The method limits the number of postings scored (no limit by default).
+	 */
+	public void setPostingsBudget(long postings) {
+		postingsBudget = postings;
+	}
+	
+	/*
+	 * The method limits the time spent scoring postings, in nanoseconds (no limit by default).
+	 */
+	public void setTimeBudget(long nanos) {
+		timeBudget = nanos;
+	}
+	
+	/*
+	 * The method adds a term of the query. A term added twice is scored twice, as with termAtATime.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public void addTerm(int termId) {
+		long weight = scorer.getWeight(index.getDocFreq(termId));
+		for (ImpactOrderedList list : index.getImpactOrderedLists(termId)) {
+			for (int group = 0; group < list.getNumGroups(); group++) {
+				groups.add(new ImpactGroup(list, group, weight * list.getImpact(group)));
+				numPostings += list.getCount(group);
+			}
+		}
+	}
+	
+	/*
+	 * The method scores decoded postings as a term of the query (e.g., the matches of a proximity
+	 * operator), in full and with exact BM25 (see ImpactScorer.addPostings).
+	 * 
+	 * @param postings		The internal ids and term frequencies, in increasing id order
+	 */
+	public void addPostings(PostingsList postings) {
+		scorer.addPostings(postings);
+	}
+	
+	/*
+	 * The method evaluates the query, until every posting is scored or the budget is spent.
+	 * 
+	 * @param k		The number of results to find
+	 * @return 		The top k documents and their scores, in ranked order
+	 */
+	public TopKHeap evaluate(int k) {
+		long startTime = System.nanoTime();
+		
+		// The largest partial scores first (ties keep the order the terms were added in)
+		groups.sort((a, b) -> Long.compare(Math.abs(b.units), Math.abs(a.units)));
+		
+		int[] docIds = new int[1024];
+		for (ImpactGroup group : groups) {
+			if (numScored >= postingsBudget || System.nanoTime() - startTime >= timeBudget) {
+				break;
+			}
+			
+			int count = (int) Math.min(group.list.getCount(group.group), postingsBudget - numScored);
+			if (count > docIds.length) {
+				docIds = new int[Math.max(count, docIds.length * 2)];
+			}
+			group.list.readDocIds(group.group, docIds, count);
+			
+			for (int i = 0; i < count; i++) {
+				if (!index.isDeleted(docIds[i])) {
+					scorer.addUnits(docIds[i], group.units);
+				}
+			}
+			numScored += count;
+		}
+		
+		return scorer.topK(k);
+	}
+	
+	/*
+	 * Returns the number of postings scored by evaluate.
+	 */
+	public long getNumScored() {
+		return numScored;
+	}
+	
+	/*
+	 * Returns the number of postings of the query's terms.
+	 */
+	public long getNumPostings() {
+		return numPostings;
+	}
+	
+	/*
+	 * A group of a term's postings that share an impact, and the partial score (in the scorer's
+	 * units) each of them adds.
+	 */
+	private static class ImpactGroup {
+		private final ImpactOrderedList list;
+		private final int group;
+		private final long units;
+		
+		ImpactGroup(ImpactOrderedList list, int group, long units) {
+			this.list = list;
+			this.group = group;
+			this.units = units;
+		}
+	}
+}
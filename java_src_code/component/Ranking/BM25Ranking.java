@@ -1,12 +1,12 @@
 package component.Ranking;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
+import component.Index.IndexReader;
+import component.Index.PostingsList;
+import component.Index.TermDictionary;
 import component.IndexEngine.IndexEngine;
+import component.Proximity.ProximityQuery;
 
 import component.Stemmer.PorterStemmer;
 
@@ -15,21 +15,29 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.FileInputStream;
 import java.io.FileReader;
-import java.util.Comparator;
 import java.lang.Math;
 
 public class BM25Ranking {
-	@SuppressWarnings({ "unchecked" })
-	public static void main(String[] args) throws ClassNotFoundException, IOException {
+	// The number of results written for each query
+	private static final int NUM_RESULTS = 1000;
+	
+	// The BM25 parameters (also used for the block maxima stored with the postings, see PostingsWriter)
+	public static final double K1 = 1.2;
+	public static final double B = 0.75;
+	
+	public static void main(String[] args) throws IOException {
 		if(args.length < 3) {
 			System.out.println("\nThe BM25 program requires three parameters: <path/root_directory_of_index> <path/queries_text_file> <path/write_output_filename>\n"
 					+ "\nThe first parameter is the path to the location holding the set of documents. The second parameter is the path to the queries file. The"
 					+ " third parameter is the path to where the program should write the results. You can also include an optional fourth parameter <stem> to "
 					+ "apply Porter Stemming to the tokens. You must then ensure that the first parameter leads to directory that includes documents that also"
-					+ " underwent Porter Stemming for best results. \n");
+					+ " underwent Porter Stemming for best results. The optional argument 'exhaustive' scores every document matching a query"
+					+ " term instead of skipping the documents that cannot reach the top 1000 (the results are the same). The optional argument"
+					+ " 'impacts' scores every matching document from the quantized impacts stored in an index built with 'impacts=bits', which"
+					+ " is faster but only approximates the BM25 scores. The optional argument 'anytime' scores the postings of an index built"
+					+ " with 'impactorder' from the highest impact down, and the optional arguments 'postings=n' and 'time=ms' (which imply"
+					+ " 'anytime') stop each query once it has scored n postings or spent ms milliseconds, returning the best documents so far. \n");
 			System.exit(1);
 		};
 			
@@ -54,25 +62,56 @@ public class BM25Ranking {
 		}
 
 		boolean stemming = false;
-		if (args.length == 4) {
-			if(args[3].toLowerCase().equals("stem")) {
+		boolean exhaustive = false;
+		boolean impacts = false;
+		boolean anytime = false;
+		long postingsBudget = Long.MAX_VALUE;
+		long timeBudget = Long.MAX_VALUE;
+		for (int i = 3; i < args.length; i++) {
+			if(args[i].toLowerCase().equals("stem")) {
 				stemming = true;
+			} else if (args[i].toLowerCase().equals("exhaustive")) {
+				exhaustive = true;
+			} else if (args[i].toLowerCase().equals("impacts")) {
+				impacts = true;
+			} else if (args[i].toLowerCase().equals("anytime")) {
+				anytime = true;
+			} else if (args[i].toLowerCase().startsWith("postings=") || args[i].toLowerCase().startsWith("time=")) {
+				long budget;
+				try {
+					budget = Long.parseLong(args[i].substring(args[i].indexOf('=') + 1));
+				} catch (NumberFormatException e) {
+					budget = 0;
+				}
+				if (budget < 1) {
+					System.out.println("\nERROR: '" + args[i] + "' is not a valid budget. Please provide a positive integer (e.g., postings=100000 or time=50).\n");
+					System.exit(5);
+				}
+				if (args[i].toLowerCase().startsWith("postings=")) {
+					postingsBudget = budget;
+				} else {
+					timeBudget = budget * 1000000;
+				}
+				anytime = true;
 			}
 		}
 
 		try {
 			// Reading in the lexicon and inverted index
-            ObjectInputStream lexiconObject = new ObjectInputStream(new FileInputStream(indexDir + "/lexicon.ser"));
-            ObjectInputStream invertedIndexObject = new ObjectInputStream(new FileInputStream(indexDir + "/invertedIndex.ser"));            
-			Map<String, Integer> lexicon = (Map<String, Integer>) lexiconObject.readObject();
-			ArrayList<ArrayList<Integer>> invertedIndex = (ArrayList<ArrayList<Integer>>) invertedIndexObject.readObject();
-            
-            Map <Integer, String> indexMap = new HashMap<>();
-            parseDocIndex(indexDir, indexMap); // Parse index file into a map
-            
-            // Read doc length file
-            Map <Integer, Integer> docLengths = new HashMap<>();
-			Double averageDocLength = getDocLengthData(indexDir, docLengths);
+			TermDictionary lexicon = new TermDictionary(indexDir);
+			
+			// Memory-map the postings, doc lengths and DOCNOs
+			IndexReader invertedIndex = new IndexReader(indexDir);
+			
+			if (impacts && invertedIndex.getImpactBits() == 0) {
+				System.out.println("\nERROR: " + indexDir + " does not store quantized impacts. Please build the index with 'impacts=bits' to use 'impacts'.\n");
+				System.exit(5);
+			}
+			
+			if (anytime && !invertedIndex.hasImpactOrder()) {
+				System.out.println("\nERROR: " + indexDir + " does not store impact-ordered postings. Please build the index with 'impacts=bits impactorder' to use 'anytime'.\n");
+				System.exit(5);
+			}
 
 			// Read query file
 			BufferedReader br = new BufferedReader(new FileReader(args[1]));
@@ -89,12 +128,29 @@ public class BM25Ranking {
 			int topicId;
 			
 			while ((line = br.readLine()) != null) {
-				Map <Integer, Double> docScores = new HashMap<>();
 				topicId = Integer.parseInt(line.replaceAll("\\s", "")); // Removes whitespace preventing integer parsing
 				query = br.readLine();
-				queryTokens = IndexEngine.tokenizeText(query); // Breaking query into tokens
+				// Phrases and proximity windows are scored as a whole, the remaining tokens one by one
+				ArrayList<ProximityQuery> operators = new ArrayList<ProximityQuery>();
+				queryTokens = IndexEngine.tokenizeText(ProximityQuery.parse(query, stemming, operators)); // Breaking query into tokens
 				
-				ArrayList<Integer> postingsList = new ArrayList<Integer>(); 
+				// The postings of each operator and term, in the order their scores are summed
+				ArrayList<PostingsList> operatorMatches = new ArrayList<PostingsList>();
+				ArrayList<Integer> termIds = new ArrayList<Integer>();
+				
+				for (ProximityQuery operator : operators) {
+					if (invertedIndex.hasPositions()) {
+						operatorMatches.add(operator.evaluate(invertedIndex, lexicon));
+					} else {
+						// Without positions, match the (already stemmed) terms separately
+						for (String term : operator.getTerms()) {
+							int tokenId = lexicon.getTermId(term);
+							if (tokenId != -1) {
+								termIds.add(tokenId);
+							}
+						}
+					}
+				}
 				
 				for (int i = 0; i < queryTokens.size(); i++) {
 					String token = queryTokens.get(i);
@@ -102,34 +158,66 @@ public class BM25Ranking {
 						token = PorterStemmer.stem(token);
 					}
 
-					if(lexicon.containsKey(token)) {
-						int tokenId = lexicon.get(token);
-						postingsList = invertedIndex.get(tokenId);
-						termAtATime(docScores, postingsList, docLengths, averageDocLength);
+					int tokenId = lexicon.getTermId(token);
+					if(tokenId != -1) {
+						termIds.add(tokenId);
 					}
 				}
 				
-				// Sort the BM25 scores of each document in descending order
-				ArrayList<Entry<Integer, Double>> sortedDocScores = entriesSortedByValues(docScores);
-				
-				// Limit documents to top 1000 scores
-				int minVal = Math.min(sortedDocScores.size(), 1000);
-				for (int i = 0; i < minVal; i++) {
-		            Entry<Integer, Double> entry = sortedDocScores.get(i);
-		            Integer key = entry.getKey();
-		            Double value = entry.getValue();
-		            String version = "lmtroperBM25noStem";
-		            
-		            if (stemming == true) {
-		            	version = "lmtroperBM25stem";
-		            }
-		           
-					String result = topicId + " Q0 " + indexMap.get(key) + " " + (i+1) + " " + value + " "+ version;
-					queryResults.add(result);
-		        }
-				
+				String version = "lmtroperBM25noStem";
+				if (stemming == true) {
+					version = "lmtroperBM25stem";
+				}
 				
+				TopKHeap topDocs;
+				if (anytime) {
+					// Score the postings from the highest impact down, until the budget is spent (see AnytimeEvaluator)
+					AnytimeEvaluator evaluator = new AnytimeEvaluator(invertedIndex);
+					evaluator.setPostingsBudget(postingsBudget);
+					evaluator.setTimeBudget(timeBudget);
+					for (PostingsList matches : operatorMatches) {
+						evaluator.addPostings(matches);
+					}
+					for (int tokenId : termIds) {
+						evaluator.addTerm(tokenId);
+					}
+					topDocs = evaluator.evaluate(NUM_RESULTS);
+				} else if (impacts) {
+					// Score every document containing a query term from its quantized impacts (see ImpactScorer)
+					ImpactScorer scorer = new ImpactScorer(invertedIndex);
+					for (PostingsList matches : operatorMatches) {
+						scorer.addPostings(matches);
+					}
+					for (int tokenId : termIds) {
+						scorer.addTerm(tokenId);
+					}
+					topDocs = scorer.topK(NUM_RESULTS);
+				} else if (exhaustive) {
+					// Score every document containing a query term, one term at a time
+					ScoreAccumulator docScores = ScoreAccumulator.get(invertedIndex.getNumDocs());
+					for (PostingsList matches : operatorMatches) {
+						termAtATime(docScores, matches, invertedIndex);
+					}
+					for (int tokenId : termIds) {
+						termAtATime(docScores, invertedIndex.getPostings(tokenId), invertedIndex);
+					}
+					topDocs = docScores.topK(NUM_RESULTS);
+				} else {
+					// Score the documents that can reach the top 1000 (see MaxScoreEvaluator)
+					MaxScoreEvaluator evaluator = new MaxScoreEvaluator(invertedIndex);
+					for (PostingsList matches : operatorMatches) {
+						evaluator.addPostings(matches);
+					}
+					for (int tokenId : termIds) {
+						evaluator.addTerm(tokenId);
+					}
+					topDocs = evaluator.evaluate(NUM_RESULTS);
+				}
 				
+				// The top 1000 scores in descending order
+				for (int i = 0; i < topDocs.size(); i++) {
+					queryResults.add(topicId + " Q0 " + invertedIndex.getDocno(topDocs.getDocId(i)) + " " + (i+1) + " " + topDocs.getScore(i) + " " + version);
+				}
 			}
 					
 			// Reading output to the file
@@ -142,9 +230,6 @@ public class BM25Ranking {
 				}
 			}
 			
-			lexiconObject.close();
-			invertedIndexObject.close();
-			
 			br.close();
 			bwResults.close();
 			
@@ -154,60 +239,34 @@ public class BM25Ranking {
 	}
 
 
-	/*
-	 * Method used to sort a Map in descending order based on their value (key-value pair). The entries in the 
-	 * Map are stored into an ArrayList of Entry objects<Integer, Double> where the integer represents the doc
-	 * internal id and double represents their BM25 score for a query.
-	 * 
-	 * @param   Map of key-pair values representing a doc id and their BM25 score
-	 * @return  An ArrayList of Entry objects in descending order by the Double value.
-	 * 
-	 * Code to sort map obtained stack overflow
-	 * https://stackoverflow.com/questions/11647889/sorting-the-mapkey-value-in-descending-order-based-on-the-value
-	 */
-    public static <K, V extends Comparable<? super V>> ArrayList<Entry<K, V>> entriesSortedByValues(Map<K, V> map) {
-        ArrayList<Entry<K, V>> sortedEntries = new ArrayList<>(map.entrySet());
-
-        Collections.sort(sortedEntries, Comparator.comparing((Entry<K, V> e) -> e.getValue()).reversed());
-
-        return sortedEntries;
-    }
-    
     /*
      * The method is used to perform the term at a time algorithm which is used to sum up documents'
      * BM25 for a specific query token. 
      * 
-     * @param docScores			A map used to hold the summations of a document's BM25 score.
+     * @param docScores			The accumulators holding the summations of each document's BM25 score.
      * @param postingsList		The posting list for a query term (includes data on document ids and term frequency in a document)
-     * @param docLengths		A map used to obtain the doc length (value) of a specific document (key)
-     * @param averageDocLength  The average document length in the collection
+     * @param index			The index used to obtain the doc length of a specific document and the average document length
+     * 						(deleted documents are skipped)
      * 
      */
-	public static void termAtATime(Map<Integer, Double> docScores, ArrayList<Integer> postingsList, 
-			Map<Integer, Integer> docLengths, Double averageDocLength) {
-		int collectionSize = docLengths.size();
-		int numDocsWithTerm = postingsList.size()/2;
+	public static void termAtATime(ScoreAccumulator docScores, PostingsList postingsList, IndexReader index) {
+		int collectionSize = index.getNumDocs();
+		int numDocsWithTerm = postingsList.size();
+		double averageDocLength = index.getAverageDocLength();
 		
 
 		for(int i = 0; i < postingsList.size(); i++) {
-			int docId = postingsList.get(i);
-			int tokenFreq = postingsList.get(i+1);
-			int docLength = docLengths.get(docId);
-			
-			Double docPartialScore = calculateBM25 (tokenFreq, collectionSize, numDocsWithTerm, docLength, averageDocLength);
-				
-			// If the map contains the document internal id 
-			if (docScores.containsKey(docId)) {
-				Double prevScore = docScores.get(docId);
-				docScores.put(docId, prevScore + docPartialScore);
-
-			} else {
-				// Else, add the new document id and its partial score to the map
-				docScores.put(docId, docPartialScore);
-
+			int docId = postingsList.getDocId(i);
+			if (index.isDeleted(docId)) {
+				continue;
 			}
+			int tokenFreq = postingsList.getFreq(i);
+			int docLength = index.getDocLength(docId);
 			
-			i++;
+			double docPartialScore = calculateBM25 (tokenFreq, collectionSize, numDocsWithTerm, docLength, averageDocLength);
+				
+			// Add the partial score to the document's sum (starting a new sum if the document has none)
+			docScores.add(docId, docPartialScore);
 		}
 	}
 	
@@ -222,86 +281,22 @@ public class BM25Ranking {
 	 * @return 					The partial BM25 score for a token in a document 
 	 * 
 	 */
-	public static Double calculateBM25(int freq, int N, int n, int docLength, Double avgDocLength) {
-		Double k1 = 1.2;
-		Double b = 0.75;
+	public static double calculateBM25(int freq, int N, int n, int docLength, double avgDocLength) {
+		double k1 = K1;
+		double b = B;
 		
 		// Length normalization
-		Double K = k1*((1-b)+b*docLength/avgDocLength);
+		double K = k1*((1-b)+b*docLength/avgDocLength);
 		
 		// Term Frequency
-		Double tf = freq/(freq + K);
+		double tf = freq/(freq + K);
 		
 		// Inverse Document Frequency
-		Double idf_numerator = N - n + 0.5;
-		Double idf_denom = n + 0.5;
-		Double idf = Math.log(idf_numerator/idf_denom);
+		double idf_numerator = N - n + 0.5;
+		double idf_denom = n + 0.5;
+		double idf = Math.log(idf_numerator/idf_denom);
 				
 		return tf*idf;
 	}
-
-	
-	/*
-	 * The method parses the doc index file to populate a map of internal ids to
-	 * DOCNOs. The code segment is taken from GetDoc.java.
-
-	 * @param dir  		  The file representing the directory location of the index.
-	 * @param indexMap 	  The map holding the mapping between internal ID and DOCNO.
-	 */
-	public static void parseDocIndex(File dir, Map <Integer, String> indexMap) {
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(dir+"/index.txt"));
-			
-			String line;
-			int count = 0;
-			
-			while ((line = br.readLine()) != null) {
-				indexMap.put(count, line);
-				count += 1;
-			}
-			
-			br.close();
-			
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-		}	
-	}
-	
-	/*
-	 * Method used to create the mapping of doc length to doc internal id.
-	 * 
-	 * @param indexDir		Root directory where the doc-lengths.txt file is stored.
-	 * @param docLengths 	Map used to store the internal id to doc length data.
-	 * @return 				The average length of a document in the document collection.
-	 * 
-	 */
-	public static Double getDocLengthData(File indexDir, Map <Integer, Integer> docLengths) {
-		Double averageDocLength = 0.0;
-		
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(indexDir+"/doc-lengths.txt"));
-			
-			String line;
-			int count = 0;
-			
-			while ((line = br.readLine()) != null) {
-				if (line.equals("")) {
-					continue; // Used to ignore empty line at end of text file
-				} else {
-					int docLength = Integer.parseInt(line);
-					averageDocLength += docLength;
-					docLengths.put(count, docLength);
-					count += 1;
-				}
-			}
-			
-			averageDocLength = averageDocLength / count;
-			
-			br.close();
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-		}	
-		return averageDocLength;
-	}
 	
 }
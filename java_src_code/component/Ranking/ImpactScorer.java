@@ -0,0 +1,136 @@
+package component.Ranking;
+
+import component.Index.IndexReader;
+import component.Index.PostingsList;
+
+/*
+ * Scores BM25 queries term-at-a-time from the quantized impacts stored with the postings (see
+ * PostingsWriter.quantizeImpact) instead of their term frequencies. Each term's idf is turned
+ * into an integer weight once per query, scaled so that the weight times an impact is the
+ * term's partial score in units of 2^-SCALE_BITS. Scoring a posting is then an integer multiply
+ * and add, with no doc length lookup or BM25 arithmetic. The sums are integers well below 2^53,
+ * so they are exact in the accumulators (see ScoreAccumulator) whatever order they are added in.
+ * 
+ * The scores differ from exact BM25 by the quantization error of the impacts and weights, and
+ * each segment's impacts are normalized with that segment's average document length rather
+ * than the collection's. The ImpactEval program measures how much this changes the rankings.
+ * The matches of proximity operators have no impacts and are scored exactly.
+ */
+public class ImpactScorer {
+	// The partial scores are summed as integers in units of 2^-SCALE_BITS
+	private static final int SCALE_BITS = 32;
+	
+	private final IndexReader index;
+	private final int maxImpact;
+	private final ScoreAccumulator docScores;
+	
+	/*
+	 * @param index		An index with quantized impacts (see IndexReader.getImpactBits)
+	 */
+	public ImpactScorer(IndexReader index) {
+		this(index, index.getImpactBits());
+	}
+	
+	/*
+	 * @param index		The index to score the query against
+	 * @param bits		The number of bits of the impacts added with addImpacts
+	 */
+	public ImpactScorer(IndexReader index, int bits) {
+		this.index = index;
+		maxImpact = (1 << bits) - 1;
+		docScores = ScoreAccumulator.get(index.getNumDocs());
+	}
+	
+	/*
+	 * The method scores a term of the query from the impacts stored in the index. A term added
+	 * twice is scored twice, as with BM25Ranking.termAtATime.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public void addTerm(int termId) {
+		addImpacts(index.getPostings(termId), index.getImpacts(termId));
+	}
+	
+	/*
+	 * The method scores a term of the query from the given impacts (e.g., quantized at another
+	 * number of bits than the index's).
+	 * 
+	 * @param postings		The term's postings
+	 * @param impacts		The quantized impact of each posting
+	 */
+	public void addImpacts(PostingsList postings, int[] impacts) {
+		long weight = getWeight(postings.size());
+		
+		for (int i = 0; i < postings.size(); i++) {
+			int docId = postings.getDocId(i);
+			if (index.isDeleted(docId)) {
+				continue;
+			}
+			docScores.add(docId, weight * impacts[i]);
+		}
+	}
+	
+	/*
+	 * Returns the integer weight of a term, which times an impact is the term's partial score in
+	 * units of 2^-SCALE_BITS.
+	 * 
+	 * @param numDocsWithTerm	The number of documents where the term is found
+	 */
+	long getWeight(int numDocsWithTerm) {
+		int collectionSize = index.getNumDocs();
+		double idf = Math.log((collectionSize - numDocsWithTerm + 0.5) / (numDocsWithTerm + 0.5));
+		return Math.round(Math.scalb(idf, SCALE_BITS) / maxImpact);
+	}
+	
+	/*
+	 * The method adds a partial score, in units of 2^-SCALE_BITS, to a document's score.
+	 */
+	void addUnits(int docId, long units) {
+		docScores.add(docId, units);
+	}
+	
+	/*
+	 * The method scores decoded postings that have no impacts (e.g., the matches of a proximity
+	 * operator) with exact BM25, rounded to the units of the impact scores.
+	 * 
+	 * @param postings		The internal ids and term frequencies, in increasing id order
+	 */
+	public void addPostings(PostingsList postings) {
+		int collectionSize = index.getNumDocs();
+		double averageDocLength = index.getAverageDocLength();
+		
+		for (int i = 0; i < postings.size(); i++) {
+			int docId = postings.getDocId(i);
+			if (index.isDeleted(docId)) {
+				continue;
+			}
+			double score = BM25Ranking.calculateBM25(postings.getFreq(i), collectionSize, postings.size(), index.getDocLength(docId), averageDocLength);
+			docScores.add(docId, Math.round(Math.scalb(score, SCALE_BITS)));
+		}
+	}
+	
+	/*
+	 * Returns a document's score, or 0 if it holds none of the query's terms.
+	 */
+	public double getScore(int docId) {
+		return Math.scalb(docScores.get(docId, 0.0), -SCALE_BITS);
+	}
+	
+	/*
+	 * The method selects the best scored documents.
+	 * 
+	 * @param k		The number of results to find
+	 * @return 		The top k documents and their scores, in ranked order
+	 */
+	public TopKHeap topK(int k) {
+		TopKHeap sums = docScores.topK(k);
+		
+		// Scaling by a power of two is exact, so the ranking is unchanged
+		TopKHeap top = new TopKHeap(k);
+		for (int i = 0; i < sums.size(); i++) {
+			top.offer(sums.getDocId(i), Math.scalb(sums.getScore(i), -SCALE_BITS));
+		}
+		top.sort();
+		return top;
+	}
+}
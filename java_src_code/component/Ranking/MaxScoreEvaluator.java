@@ -0,0 +1,286 @@
+package component.Ranking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import component.Index.IndexReader;
+import component.Index.PostingsCursor;
+import component.Index.PostingsList;
+
+/*
+ * Finds the top k documents of a BM25 query document-at-a-time, using MaxScore dynamic
+ * pruning with block-max bounds to skip documents that cannot enter the top k. The query's
+ * terms (and the matches of its proximity operators) are walked together in doc id order.
+ * 
+ * The doc ids are processed in windows that end with the shortest of the terms' postings
+ * blocks at the window's start, so every term has a bound on the score it can add to any
+ * document of the window: its idf times the block's largest BM25 term frequency component,
+ * read from the block max tables stored with the postings (see PostingsWriter) without
+ * decoding the block. A term with a negative idf never adds more than 0, and the matches of a
+ * proximity operator are bounded by their largest score.
+ * 
+ * With the terms sorted by their bounds in the window, the terms whose bounds add up to no
+ * more than the score of the k-th result so far are non-essential: a document holding only
+ * those terms cannot enter the top k. If every term is non-essential, the whole window is
+ * skipped. Otherwise candidates are only taken from the essential terms' postings, and the
+ * non-essential terms are looked up (skipping ahead with their cursors) from the largest bound
+ * down, stopping as soon as the candidate's score so far plus the remaining bounds can no longer
+ * beat the k-th score. As the k-th score grows, more terms become non-essential, so the long
+ * postings lists of common terms are mostly skipped rather than decoded.
+ * 
+ * The results are the same as scoring every document with termAtATime and keeping the top k
+ * (see ScoreAccumulator): a document's partial scores are summed in the order the terms were
+ * added (as termAtATime would add them), deleted documents are skipped, and ties are broken by
+ * ascending doc id.
+ */
+public class MaxScoreEvaluator {
+	// Relative margin on the bounds, so the rounding of sums taken in another order never prunes a document
+	private static final double SLACK = 1e-9;
+	
+	private final IndexReader index;
+	private final ArrayList<QueryTerm> terms = new ArrayList<QueryTerm>();
+	
+	/*
+	 * @param index		The index to evaluate the query against
+	 */
+	public MaxScoreEvaluator(IndexReader index) {
+		this.index = index;
+	}
+	
+	/*
+	 * The method adds a term of the query, whose postings are read with a cursor. A term added
+	 * twice is scored twice, as with termAtATime.
+	 * 
+	 * @param termId	The term id from the lexicon
+	 */
+	public void addTerm(int termId) {
+		PostingsCursor cursor = index.getCursor(termId);
+		terms.add(new QueryTerm(cursor, null, cursor.docFreq()));
+	}
+	
+	/*
+	 * The method adds decoded postings to score as a term of the query (e.g., the matches of a
+	 * proximity operator, with the number of matches as the term frequency).
+	 * 
+	 * @param postings		The internal ids and term frequencies, in increasing id order
+	 */
+	public void addPostings(PostingsList postings) {
+		terms.add(new QueryTerm(null, postings, postings.size()));
+	}
+	
+	/*
+	 * The method evaluates the query.
+	 * 
+	 * @param k		The number of results to find
+	 * @return 		The top k documents and their scores, in ranked order
+	 */
+	public TopKHeap evaluate(int k) {
+		TopKHeap top = new TopKHeap(k);
+		int n = terms.size();
+		if (n == 0 || k <= 0) {
+			top.sort();
+			return top;
+		}
+		
+		int collectionSize = index.getNumDocs();
+		double averageDocLength = index.getAverageDocLength();
+		
+		double slack = 1.0;
+		for (QueryTerm term : terms) {
+			term.idf = Math.log((collectionSize - term.docFreq + 0.5) / (term.docFreq + 0.5));
+			if (term.cursor == null && term.idf > 0) {
+				term.maxScore = term.getMaxScore(index, collectionSize, averageDocLength);
+			}
+			slack += Math.abs(term.idf);
+		}
+		slack *= SLACK;
+		
+		// The terms by increasing block bound in the current window, and the sum of the bounds of each term and those before it
+		QueryTerm[] byBound = terms.toArray(new QueryTerm[n]);
+		double[] boundSums = new double[n];
+		int windowStart = 0;
+		
+		while (windowStart != PostingsCursor.NO_MORE_DOCS) {
+			// The window ends with the shortest of the terms' blocks at its start
+			int windowEnd = PostingsCursor.NO_MORE_DOCS;
+			for (QueryTerm term : byBound) {
+				windowEnd = Math.min(windowEnd, term.shallowAdvance(windowStart));
+			}
+			
+			for (int i = 1; i < n; i++) {
+				QueryTerm term = byBound[i];
+				int j = i;
+				while (j > 0 && byBound[j - 1].blockBound > term.blockBound) {
+					byBound[j] = byBound[j - 1];
+					j--;
+				}
+				byBound[j] = term;
+			}
+			double sum = 0.0;
+			for (int i = 0; i < n; i++) {
+				sum += byBound[i].blockBound;
+				boundSums[i] = sum;
+			}
+			
+			// The terms whose bounds add up to no more than the k-th score are non-essential in the window (all of them if it can be skipped)
+			double threshold = top.getThreshold() - slack;
+			int firstEssential = 0;
+			while (firstEssential < n && boundSums[firstEssential] <= threshold) {
+				firstEssential += 1;
+			}
+			
+			for (int i = firstEssential; i < n; i++) {
+				byBound[i].advance(windowStart);
+			}
+			
+			while (firstEssential < n) {
+				// The next candidate is the smallest doc id among the essential terms
+				int docId = PostingsCursor.NO_MORE_DOCS;
+				for (int i = firstEssential; i < n; i++) {
+					docId = Math.min(docId, byBound[i].docId);
+				}
+				if (docId > windowEnd || docId == PostingsCursor.NO_MORE_DOCS) {
+					break;
+				}
+				
+				if (!index.isDeleted(docId)) {
+					int docLength = index.getDocLength(docId);
+					double score = 0.0;
+					
+					for (int i = firstEssential; i < n; i++) {
+						if (byBound[i].docId == docId) {
+							score += byBound[i].score(collectionSize, docLength, averageDocLength);
+						}
+					}
+					
+					boolean pruned = false;
+					for (int i = firstEssential - 1; i >= 0; i--) {
+						if (score + boundSums[i] <= threshold) {
+							pruned = true;
+							break;
+						}
+						if (byBound[i].advance(docId) == docId) {
+							score += byBound[i].score(collectionSize, docLength, averageDocLength);
+						}
+					}
+					
+					if (!pruned && score > threshold) {
+						// Sum the partial scores again in query order, so the score matches termAtATime's
+						score = 0.0;
+						for (int i = 0; i < n; i++) {
+							QueryTerm term = terms.get(i);
+							if (term.docId == docId) {
+								score += term.partialScore;
+							}
+						}
+						
+						if (top.offer(docId, score) && top.isFull()) {
+							threshold = top.getThreshold() - slack;
+							while (firstEssential < n && boundSums[firstEssential] <= threshold) {
+								firstEssential += 1;
+							}
+						}
+					}
+				}
+				
+				for (int i = firstEssential; i < n; i++) {
+					if (byBound[i].docId == docId) {
+						byBound[i].nextDoc();
+					}
+				}
+			}
+			
+			windowStart = windowEnd == PostingsCursor.NO_MORE_DOCS ? windowEnd : windowEnd + 1;
+		}
+		
+		top.sort();
+		return top;
+	}
+	
+	/*
+	 * A term of the query, read either with a postings cursor or from decoded postings.
+	 */
+	private static class QueryTerm {
+		private final PostingsCursor cursor;
+		private final PostingsList postings;
+		private final int docFreq;
+		private int next = 0; // The index of the next posting (decoded postings only)
+		private int freq;
+		private int docId = -1;
+		private double idf;
+		private double maxScore = 0.0; // Decoded postings only
+		private double blockBound;
+		private double partialScore;
+		
+		QueryTerm(PostingsCursor cursor, PostingsList postings, int docFreq) {
+			this.cursor = cursor;
+			this.postings = postings;
+			this.docFreq = docFreq;
+		}
+		
+		int nextDoc() {
+			if (cursor != null) {
+				docId = cursor.nextDoc();
+				freq = cursor.freq();
+			} else if (next < postings.size()) {
+				docId = postings.getDocId(next);
+				freq = postings.getFreq(next);
+				next += 1;
+			} else {
+				docId = PostingsCursor.NO_MORE_DOCS;
+			}
+			return docId;
+		}
+		
+		int advance(int target) {
+			if (docId >= target) {
+				return docId;
+			}
+			if (cursor != null) {
+				docId = cursor.advance(target);
+				freq = cursor.freq();
+				return docId;
+			}
+			// Decoded postings are only an operator's matches, so a linear scan will do
+			while (docId < target) {
+				nextDoc();
+			}
+			return docId;
+		}
+		
+		/*
+		 * Returns the most the term's decoded postings can add to a document's score (they have no
+		 * block maxima, but are few enough to score).
+		 */
+		double getMaxScore(IndexReader index, int collectionSize, double averageDocLength) {
+			double max = 0.0;
+			for (int i = 0; i < postings.size(); i++) {
+				int docLength = index.getDocLength(postings.getDocId(i));
+				max = Math.max(max, BM25Ranking.calculateBM25(postings.getFreq(i), collectionSize, docFreq, docLength, averageDocLength));
+			}
+			return max;
+		}
+		
+		/*
+		 * The method sets blockBound to the most the term can add to the score of a document from
+		 * the target up to the returned id (see PostingsCursor.advanceShallow).
+		 */
+		int shallowAdvance(int target) {
+			if (idf <= 0 || cursor == null) {
+				blockBound = maxScore;
+				return PostingsCursor.NO_MORE_DOCS;
+			}
+			int blockEnd = cursor.advanceShallow(target);
+			blockBound = cursor.getShallowMaxImpact() * idf;
+			return blockEnd;
+		}
+		
+		/*
+		 * The method computes (and keeps) the term's partial score in the current document.
+		 */
+		double score(int collectionSize, int docLength, double averageDocLength) {
+			partialScore = BM25Ranking.calculateBM25(freq, collectionSize, docFreq, docLength, averageDocLength);
+			return partialScore;
+		}
+	}
+}
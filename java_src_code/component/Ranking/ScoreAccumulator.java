@@ -0,0 +1,101 @@
+package component.Ranking;
+
+import java.util.Arrays;
+
+import component.Primitive.IntList;
+
+/*
+ * Dense per-document score accumulators for term-at-a-time scoring. Scores are summed into an
+ * array indexed by internal id, and the ids touched by the current query are kept in a list,
+ * so adding a partial score is an array update and selecting the top k only visits the touched
+ * documents. Each array slot is stamped with the query it was last touched by, so starting a
+ * new query takes constant time instead of clearing the arrays.
+ *
+ * The arrays are sized to the collection and reused by every query on the same thread (see
+ * get), so scoring a query allocates nothing in proportion to its number of candidates. Scores
+ * are kept as doubles so that sums match the exhaustive results written before.
+ */
+public class ScoreAccumulator {
+	private static final ThreadLocal<ScoreAccumulator> ACCUMULATORS = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+	private double[] scores = new double[0];
+	private int[] stamps = new int[0];
+	private int stamp = 0;
+	private final IntList touched = new IntList(1024);
+
+	/*
+	 * Returns the calling thread's accumulator, emptied and large enough for a collection.
+	 *
+	 * @param numDocs	The number of internal ids in the collection
+	 */
+	public static ScoreAccumulator get(int numDocs) {
+		ScoreAccumulator accumulator = ACCUMULATORS.get();
+		accumulator.reset(numDocs);
+		return accumulator;
+	}
+
+	/*
+	 * The method empties the accumulator for a new query.
+	 *
+	 * @param numDocs	The number of internal ids in the collection
+	 */
+	public void reset(int numDocs) {
+		if (scores.length < numDocs) {
+			scores = new double[numDocs];
+			stamps = new int[numDocs];
+			stamp = 0;
+		}
+
+		stamp += 1;
+		if (stamp == Integer.MAX_VALUE) {
+			// Start the stamps over rather than let an old stamp come round again
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		touched.clear();
+	}
+
+	/*
+	 * Adds delta to a document's score, starting its score at delta if the query has not touched it.
+	 */
+	public void add(int docId, double delta) {
+		if (stamps[docId] != stamp) {
+			stamps[docId] = stamp;
+			scores[docId] = delta;
+			touched.add(docId);
+		} else {
+			scores[docId] += delta;
+		}
+	}
+
+	/*
+	 * Returns a document's score, or defaultValue if the query has not touched it.
+	 */
+	public double get(int docId, double defaultValue) {
+		return stamps[docId] == stamp ? scores[docId] : defaultValue;
+	}
+
+	/*
+	 * Returns the number of documents touched by the query.
+	 */
+	public int size() {
+		return touched.size();
+	}
+
+	/*
+	 * The method selects the best scored documents with a bounded heap, so only k of them are
+	 * ever sorted.
+	 *
+	 * @param k		The number of results to find
+	 * @return 		The top k documents and their scores, in ranked order
+	 */
+	public TopKHeap topK(int k) {
+		TopKHeap top = new TopKHeap(k);
+		for (int i = 0; i < touched.size(); i++) {
+			int docId = touched.get(i);
+			top.offer(docId, scores[docId]);
+		}
+		top.sort();
+		return top;
+	}
+}
@@ -0,0 +1,143 @@
+package component.Ranking;
+
+/*
+ * Keeps the k best (doc id, score) pairs seen so far, ranked by descending score with ties
+ * broken by ascending doc id (see ranksBefore), so the top k of a query are the same whether
+ * it is scored exhaustively or with pruning.
+ * 
+ * The pairs are held in a binary min-heap whose root is the worst of the k, which is the
+ * score a new document has to beat once the heap is full (see getThreshold).
+ */
+public class TopKHeap {
+	private final int k;
+	private final int[] docIds;
+	private final double[] scores;
+	private int size = 0;
+	private boolean sorted = false;
+	
+	/*
+	 * @param k		The number of results to keep
+	 */
+	public TopKHeap(int k) {
+		this.k = k;
+		docIds = new int[Math.max(k, 0)];
+		scores = new double[Math.max(k, 0)];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isFull() {
+		return size == k;
+	}
+	
+	/*
+	 * Returns the score of the worst result kept once the heap is full, or negative infinity
+	 * before then. Documents are offered in increasing doc id order during evaluation, so a
+	 * document only enters a full heap if its score is greater than the threshold.
+	 */
+	public double getThreshold() {
+		return size == k && k > 0 ? scores[0] : Double.NEGATIVE_INFINITY;
+	}
+	
+	/*
+	 * The method offers a document, which is kept if it ranks among the k best so far.
+	 * 
+	 * @param docId		The internal id of the document
+	 * @param score		The document's score
+	 * @return 			Whether the document was kept
+	 */
+	public boolean offer(int docId, double score) {
+		if (size < k) {
+			docIds[size] = docId;
+			scores[size] = score;
+			size += 1;
+			siftUp(size - 1);
+			return true;
+		}
+		if (k == 0 || !ranksBefore(docId, score, docIds[0], scores[0])) {
+			return false;
+		}
+		docIds[0] = docId;
+		scores[0] = score;
+		siftDown(0, size);
+		return true;
+	}
+	
+	/*
+	 * The method puts the results in ranked order (best first) for getDocId and getScore. No
+	 * more documents can be offered afterwards.
+	 */
+	public void sort() {
+		if (sorted) {
+			return;
+		}
+		
+		// Repeatedly move the worst remaining result to the end of the heap
+		for (int end = size - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+		sorted = true;
+	}
+	
+	/*
+	 * Returns the internal id at a rank (from 0), once the results are sorted.
+	 */
+	public int getDocId(int rank) {
+		return docIds[rank];
+	}
+	
+	/*
+	 * Returns the score at a rank (from 0), once the results are sorted.
+	 */
+	public double getScore(int rank) {
+		return scores[rank];
+	}
+	
+	/*
+	 * Returns true if (docId1, score1) ranks before (docId2, score2).
+	 */
+	public static boolean ranksBefore(int docId1, double score1, int docId2, double score2) {
+		return score1 > score2 || (score1 == score2 && docId1 < docId2);
+	}
+	
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!worse(i, parent)) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+	
+	private void siftDown(int i, int end) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= end) {
+				return;
+			}
+			if (child + 1 < end && worse(child + 1, child)) {
+				child += 1;
+			}
+			if (!worse(child, i)) {
+				return;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+	
+	// Whether the result at i ranks after the result at j
+	private boolean worse(int i, int j) {
+		return ranksBefore(docIds[j], scores[j], docIds[i], scores[i]);
+	}
+	
+	private void swap(int i, int j) {
+		int docId = docIds[i]; docIds[i] = docIds[j]; docIds[j] = docId;
+		double score = scores[i]; scores[i] = scores[j]; scores[j] = score;
+	}
+}
@@ -0,0 +1,114 @@
+/* Description: This program rewrites gzipped TREC documents as a gzipped file of independently
+ * decompressible members, each holding whole documents and recording its compressed size, so that
+ * IndexEngine can decompress the members on several threads. The output is still an ordinary gzip
+ * file (gzip tools read it as one stream of the documents).
+ * Input: The file path of the gzipped file (or a directory of gzipped files), the file path of the
+ * file to write, and optionally the uncompressed size of each member in megabytes.
+ * Output: The re-chunked gzipped file and a line with its number of documents and members.
+*/
+
+package component.Rechunk;
+
+import component.Parser.DocumentSplitter;
+import component.Parser.GzipMemberWriter;
+import component.Parser.GzipMembers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class Rechunk {
+	// The default uncompressed size of a member
+	private static final int DEFAULT_MEMBER_SIZE = 4 * 1024 * 1024;
+	
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("\nThe Rechunk program requires two parameters: <path/read/latimes.gz> <path/write/chunked.gz> <size=MB>\n"
+					+ "\nThe first parameter is the path to the gzipped file of documents (or a directory of gzipped files, read in"
+					+ " name order). The second parameter is the path of the gzipped file to write. The optional argument 'size=MB' sets"
+					+ " the uncompressed size of each member in megabytes (defaults to 4). \n");
+			System.exit(1);
+		}
+		
+		File input = new File(args[0]);
+		File output = new File(args[1]);
+		int memberSize = DEFAULT_MEMBER_SIZE;
+		
+		if (!input.exists()) {
+			System.out.println("\nERROR: Could not find " + args[0] + ". Please provide the correct file path to the gzipped file.\n");
+			System.exit(2);
+		}
+		
+		if (output.exists()) {
+			System.out.println("\nERROR: " + output + " is a file that already exists. Please provide a new file name.\n");
+			System.exit(3);
+		}
+		
+		for (int i = 2; i < args.length; i++) {
+			String option = args[i].toLowerCase();
+			if (option.startsWith("size=")) {
+				try {
+					memberSize = Integer.parseInt(option.substring("size=".length())) * 1024 * 1024;
+				} catch (NumberFormatException e) {
+					memberSize = 0;
+				}
+			}
+			if (!option.startsWith("size=") || memberSize < 1) {
+				System.out.println("\nERROR: '" + args[i] + "' is not a valid option. Please provide a member size in megabytes between 1 and 1023 (e.g., size=4).\n");
+				System.exit(5);
+			}
+		}
+		
+		rechunk(GzipMembers.listInputFiles(input), output, memberSize);
+	}
+	
+	/*
+	 * The method copies the documents of gzipped files into a new gzipped file, starting a new
+	 * member whenever the current one reaches the member size. A member only ever holds whole
+	 * documents (a single document larger than the member size gets a member of its own), and
+	 * anything between documents is left out.
+	 * 
+	 * @param files			The gzipped files to read, in order
+	 * @param output		The file to write
+	 * @param memberSize	The number of uncompressed bytes after which a member is closed
+	 */
+	public static void rechunk(File[] files, File output, int memberSize) {
+		try {
+			GzipMemberWriter writer = new GzipMemberWriter(output);
+			ByteArrayOutputStream member = new ByteArrayOutputStream(memberSize + (1 << 16));
+			int numDocs = 0;
+			int numMembers = 0;
+			
+			for (GzipMembers.Chunk chunk : GzipMembers.split(files)) {
+				InputStream in = chunk.open();
+				DocumentSplitter splitter = new DocumentSplitter(in);
+				
+				byte[] doc;
+				while ((doc = splitter.next()) != null) {
+					member.write(doc);
+					member.write('\n');
+					numDocs += 1;
+					
+					if (member.size() >= memberSize) {
+						writer.writeMember(member.toByteArray(), 0, member.size());
+						member.reset();
+						numMembers += 1;
+					}
+				}
+				in.close();
+			}
+			
+			if (member.size() > 0) {
+				writer.writeMember(member.toByteArray(), 0, member.size());
+				numMembers += 1;
+			}
+			writer.close();
+			
+			System.out.println("Wrote " + numDocs + " documents in " + numMembers + " members to " + output);
+		
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+}
@@ -1,30 +1,34 @@
 package component.Retrieval;
+import component.DocStore.DocStoreReader;
+import component.DocStore.StoredDocument;
 import component.GetDoc.GetDoc;
+import component.Index.PostingsList;
+import component.Index.TermDictionary;
+import component.Parser.TokenStream;
+import component.Proximity.ProximityQuery;
 import component.IndexEngine.IndexEngine;
 import component.Ranking.*;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.Map.Entry;
 import java.util.PriorityQueue;
 
 public class Retrieval {
-	@SuppressWarnings("unchecked")
-	public static void main(String[] args) throws ClassNotFoundException, IOException {	
+	public static void main(String[] args) throws IOException {	
 		if(args.length < 1) {
-			System.out.println("\nThe Retrieval program requires one parameter: <path/root_directory_of_index>\n"
-					+ "\nThe first parameter is the path to the location holding the set of documents. \n");
+			System.out.println("\nThe Retrieval program requires one parameter: <path/root_directory_of_index> <postings=n> <time=ms>\n"
+					+ "\nThe first parameter is the path to the location holding the set of documents. For an index built with 'impactorder',"
+					+ " the optional arguments 'postings=n' and 'time=ms' stop each query once it has scored n postings or spent ms"
+					+ " milliseconds, scoring the postings from the highest impact down, so no query takes much longer than the budget. \n");
 			System.exit(1);
 		};
 
@@ -37,25 +41,48 @@ public class Retrieval {
 			System.exit(2);
 		}
 		
+		long postingsBudget = Long.MAX_VALUE;
+		long timeBudget = Long.MAX_VALUE;
+		for (int i = 1; i < args.length; i++) {
+			String option = args[i].toLowerCase();
+			long budget = 0;
+			if (option.startsWith("postings=") || option.startsWith("time=")) {
+				try {
+					budget = Long.parseLong(option.substring(option.indexOf('=') + 1));
+				} catch (NumberFormatException e) {
+					budget = 0;
+				}
+			}
+			if (budget < 1) {
+				System.out.println("\nERROR: '" + args[i] + "' is not a valid option. Valid options are 'postings=<n>' and 'time=<ms>', with a positive integer.\n");
+				System.exit(3);
+			}
+			if (option.startsWith("postings=")) {
+				postingsBudget = budget;
+			} else {
+				timeBudget = budget * 1000000;
+			}
+		}
+		
 		try {
 			// Reading in the lexicon and inverted index
-            ObjectInputStream lexiconObject = new ObjectInputStream(new FileInputStream(indexDir + "/lexicon.ser"));
-            ObjectInputStream invertedIndexObject = new ObjectInputStream(new FileInputStream(indexDir + "/invertedIndex.ser")); 
-            Map<String, Integer> lexicon = (Map<String, Integer>) lexiconObject.readObject();
-			ArrayList<ArrayList<Integer>> invertedIndex = (ArrayList<ArrayList<Integer>>) invertedIndexObject.readObject();
-	        
-			// Mapping doc internal ID to DOCNO
-			Map <Integer, String> indexMap = new HashMap<>();
-	        BM25Ranking.parseDocIndex(indexDir, indexMap); // Parse index file into a map
-	        
-	        // Mapping internal id to doc length + obtaining average doc length in collection
-	        Map <Integer, Integer> docLengths = new HashMap<>();
-			Double averageDocLength = BM25Ranking.getDocLengthData(indexDir, docLengths);
-
-			interactiveRetrieval(indexDir, lexicon, invertedIndex, indexMap, docLengths, averageDocLength);
+			TermDictionary lexicon = new TermDictionary(indexDir);
+			
+			// Memory-mapped postings, doc tables and stored documents, with one set of segments per query
+			SearcherManager searcherManager = new SearcherManager(indexDir);
 			
-			lexiconObject.close();
-			invertedIndexObject.close();
+			boolean budgeted = postingsBudget != Long.MAX_VALUE || timeBudget != Long.MAX_VALUE;
+			SearcherManager.Searcher searcher = searcherManager.acquire();
+			boolean impactOrdered = searcher.getIndex().hasImpactOrder();
+			searcherManager.release(searcher);
+			if (budgeted && !impactOrdered) {
+				System.out.println("\nERROR: " + indexDir + " does not store impact-ordered postings. Please build the index with 'impacts=bits impactorder' to use a budget.\n");
+				System.exit(4);
+			}
+			
+			interactiveRetrieval(indexDir, lexicon, searcherManager, postingsBudget, timeBudget);
+			
+			searcherManager.close();
 		} catch (IOException e) {
 			System.err.println(e.getMessage());
 		}
@@ -68,23 +95,35 @@ public class Retrieval {
 	 * The top results are ordered by highest to lowest BM25 score.
      * 
      * @param indexDir			File of index directory (root)
-     * @param lexicon			Loaded lexicon object (hashmap mapping of token to token id)
-     * @param invertedIndex		Loaded inverted index object (array list of posting lists)
-     * @param docLengths  		A mapping of doc internal id to doc length
-     * @param avgDocLength		The average document length in the collection
+     * @param lexicon			Memory-mapped term dictionary (mapping of token to token id)
+     * @param searcherManager	Provides the current index (postings, doc tables and document store) for each query
      * 
      */
-	public static void interactiveRetrieval(File indexDir, Map<String, Integer> lexicon, 
-			ArrayList<ArrayList<Integer>> invertedIndex, Map<Integer, String> indexMap, 
-			Map<Integer, Integer> docLengths, Double avgDocLength) throws FileNotFoundException, IOException {
+	public static void interactiveRetrieval(File indexDir, TermDictionary lexicon, 
+			SearcherManager searcherManager) throws FileNotFoundException, IOException {
+		interactiveRetrieval(indexDir, lexicon, searcherManager, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+	
+	/*
+	 * The method enables interactive search retrieval like the method above, scoring each query
+	 * within a budget (see AnytimeEvaluator) if one is given.
+	 * 
+	 * @param indexDir			File of index directory (root)
+	 * @param lexicon			Memory-mapped term dictionary (mapping of token to token id)
+	 * @param searcherManager	Provides the current index (postings, doc tables and document store) for each query
+	 * @param postingsBudget	The number of postings a query may score (Long.MAX_VALUE for no limit)
+	 * @param timeBudget		The nanoseconds a query may spend scoring postings (Long.MAX_VALUE for no limit)
+	 */
+	public static void interactiveRetrieval(File indexDir, TermDictionary lexicon, 
+			SearcherManager searcherManager, long postingsBudget, long timeBudget) throws FileNotFoundException, IOException {
 		
 		Scanner scanner = new Scanner(System.in);
 		String userInput;		
 
 		Boolean newQuery = true;
 		
-		// Stores mapping of doc rank k to doc's internal id (for doc retrieval)
-		Map <Integer, Integer> topResults = new HashMap<Integer, Integer>();
+		// Stores mapping of doc rank k to doc's DOCNO (for doc retrieval, as internal ids change when deletions are merged away)
+		Map <Integer, String> topResults = new HashMap<Integer, String>();
 		
 		ArrayList<String> queryTokens = new ArrayList<String>();
 
@@ -106,7 +145,7 @@ public class Retrieval {
 	                    
 	                    if (rank >= 1 && rank <= 10) {
 	                    	System.out.println("\n");
-	                    	GetDoc.getDocnoById(indexDir, topResults.get(rank));
+	                    	showDocument(searcherManager, topResults.get(rank));
 	                    } else {
 	                    	System.out.println("Not a valid rank number.");
 	                    }
@@ -126,36 +165,77 @@ public class Retrieval {
         		
         		long startTime = System.currentTimeMillis();
         	
-	        	queryTokens = IndexEngine.tokenizeText(userInput);
-	        	Map <Integer, Double> docScores = new HashMap<>();
+	        	// Phrases and proximity windows are scored as a whole, the remaining tokens one by one
+	        	ArrayList<ProximityQuery> operators = new ArrayList<ProximityQuery>();
+	        	ArrayList<String> termTokens = IndexEngine.tokenizeText(ProximityQuery.parse(userInput, false, operators));
+	        	
+	        	// Use one view of the index for the whole query, even if a merge is swapped in meanwhile
+	        	SearcherManager.Searcher searcher = searcherManager.acquire();
+	        	
+	        	queryTokens = new ArrayList<String>(termTokens);
+	        	for (ProximityQuery operator : operators) {
+	        		queryTokens.addAll(operator.getTerms());
+	        	}
+	        	
+	        	if (!operators.isEmpty() && !searcher.getIndex().hasPositions()) {
+	        		System.out.println("The index has no positions (see the IndexEngine 'positions' option), so phrases are matched as separate terms.\n");
+	        		termTokens = queryTokens;
+	        		operators.clear();
+	        	}
+	        	
+	        	ArrayList<PostingsList> operatorMatches = new ArrayList<PostingsList>();
+	        	for (ProximityQuery operator : operators) {
+	        		operatorMatches.add(operator.evaluate(searcher.getIndex(), lexicon));
+	        	}
 	        	
 	        	// Iterate through all the query tokens
-	        	for (int i = 0; i < queryTokens.size(); i++) {
-					String token = queryTokens.get(i);
+	        	ArrayList<Integer> termIds = new ArrayList<Integer>();
+	        	for (int i = 0; i < termTokens.size(); i++) {
+					String token = termTokens.get(i);
 					// Check if tokens are in lexicon
-					if(lexicon.containsKey(token)) {
-						int tokenId = lexicon.get(token);
-						// Get posting list for token and obtain BM25 score
-						ArrayList<Integer> postingsList = invertedIndex.get(tokenId);
-						BM25Ranking.termAtATime(docScores, postingsList, docLengths, avgDocLength);
+					int tokenId = lexicon.getTermId(token);
+					if(tokenId != -1) {
+						termIds.add(tokenId);
 					}
 				}
-	        	// Sort results in descending order by their BM25 scores
-	        	ArrayList<Entry<Integer, Double>> sortedDocScores = BM25Ranking.entriesSortedByValues(docScores);
+	        	
+	        	TopKHeap topDocs;
+	        	if (postingsBudget != Long.MAX_VALUE || timeBudget != Long.MAX_VALUE) {
+	        		// Score the postings from the highest impact down, until the budget is spent (see AnytimeEvaluator)
+	        		AnytimeEvaluator evaluator = new AnytimeEvaluator(searcher.getIndex());
+	        		evaluator.setPostingsBudget(postingsBudget);
+	        		evaluator.setTimeBudget(timeBudget);
+	        		for (PostingsList matches : operatorMatches) {
+	        			evaluator.addPostings(matches);
+	        		}
+	        		for (int tokenId : termIds) {
+	        			evaluator.addTerm(tokenId);
+	        		}
+	        		topDocs = evaluator.evaluate(10);
+	        	} else {
+	        		// Score the documents that can reach the top 10, in the order termAtATime would sum them (see MaxScoreEvaluator)
+	        		MaxScoreEvaluator evaluator = new MaxScoreEvaluator(searcher.getIndex());
+	        		for (PostingsList matches : operatorMatches) {
+	        			evaluator.addPostings(matches);
+	        		}
+	        		for (int tokenId : termIds) {
+	        			evaluator.addTerm(tokenId);
+	        		}
+	        		topDocs = evaluator.evaluate(10);
+	        	}
 	        	
 	        	// Generate and output result summaries for the top 10 ranked docs
-				int minVal = Math.min(sortedDocScores.size(), 10);
-	        	for (int i = 0; i < minVal; i++) {
-		            Entry<Integer, Double> entry = sortedDocScores.get(i);
-		            Integer key = entry.getKey();
+	        	for (int i = 0; i < topDocs.size(); i++) {
+		            int key = topDocs.getDocId(i);
 		            
-		            // Put rank and doc's internal id in map for user retrieval
-	        		topResults.put(i+1, key);
+		            // Put rank and doc's DOCNO in map for user retrieval
+	        		topResults.put(i+1, searcher.getIndex().getDocno(key));
 
-	        		printDocResultSummary(indexDir, i+1, indexMap.get(key), queryTokens);
+	        		printDocResultSummary(searcher.getDocStore(), i+1, key, queryTokens);
 		            System.out.println("\n");
 		            
 		        }
+	        	searcherManager.release(searcher);
 	        	
 	        	long endTime = System.currentTimeMillis();
 	        	long elapsedTime = endTime - startTime;
@@ -169,30 +249,57 @@ public class Retrieval {
 		
 	}
 	
+	/*
+	 * The method outputs a document from the current view of the index. The document is looked
+	 * up by DOCNO in the open document store (its internal id may have changed if a merge was
+	 * swapped in since the query ran), so the store is not reopened for every document shown.
+	 * 
+	 * @param searcherManager	Provides the current index and document store
+	 * @param docno				The DOCNO of the document
+	 */
+	public static void showDocument(SearcherManager searcherManager, String docno) throws IOException {
+		SearcherManager.Searcher searcher = searcherManager.acquire();
+		try {
+			DocStoreReader docStore = searcher.getDocStore();
+			int docId = docno == null ? -1 : docStore.getInternalId(docno);
+			
+			if (docId == -1) {
+				System.out.println("ERROR: There is no document corresponding to the DOCNO: '" + docno + "'");
+				return;
+			}
+			GetDoc.printDocument(docStore.getDocument(docId), docId);
+		} finally {
+			searcherManager.release(searcher);
+		}
+	}
+	
 	/*
 	 * The method takes the top results and outputs their metadata (date and docno) along with
 	 * their result summary (two sentences).
 	 *      
-     * @param indexDir			File of index directory (root)
+     * @param docStore			The document store
      * @param rank				The rank of a document
-     * @param docno				The docno of a document
+     * @param docId				The internal id of a document
      * @param queryTokens  		The query tokens from the user's query
      * 
      */
-	public static void printDocResultSummary(File indexDir, int rank, String docno, ArrayList<String> queryTokens) throws FileNotFoundException, IOException {
-		String month = docno.substring(2,4);
-		String day = docno.substring(4,6);
-		String year = docno.substring(6,8);
+	public static void printDocResultSummary(DocStoreReader docStore, int rank, int docId, ArrayList<String> queryTokens) throws FileNotFoundException, IOException {
+		StoredDocument doc = docStore.getDocument(docId); // Single read of the document and its metadata
 		
+		String docno = "";
 		String date = "";
 		String headline = "";
 		
-		String docPath = indexDir+"/"+year+"/"+month+"/"+day+"/";
-		BufferedReader brMeta = new BufferedReader(new FileReader(docPath+docno+"-metadata.txt"));
+		BufferedReader brMeta = new BufferedReader(new StringReader(doc.getMetadata()));
 		
 		String line;
 		while((line = brMeta.readLine()) != null){
 			int data = line.indexOf(":");
+			// Extract the docno from metadata
+			if (line.substring(0, data).equals("docno")) {
+				docno = line.substring(data + 2, line.length());
+			}
+			
 			// Extract the date from metadata
 			if (line.substring(0, data).equals("date")) {
 				date = line.substring(data + 2, line.length());
@@ -208,7 +315,7 @@ public class Retrieval {
 	
 		brMeta.close();
 		
-		PriorityQueue<String> scoredSentences = generateResultSummary(docPath, docno, queryTokens);
+		PriorityQueue<String> scoredSentences = generateResultSummary(doc.getContent(), queryTokens);
 		
 		String firstSentence = scoredSentences.poll();
 		firstSentence = firstSentence.substring(firstSentence.indexOf('-') + 1).trim();
@@ -234,13 +341,12 @@ public class Retrieval {
 	 * and extracting the document content to be scored. The score is appended into a
 	 * Priority Queue.
 	 *      
-     * @param docPath				Path to document within root index directory
-     * @param docno					The docno of document
+     * @param content				The raw text of the document
      * @param queryTerms			The list of query terms inputed by the user
      * @return scoredSentences  	Returns a Priority Queue of sentences sorted by highest to lowest score
 	 */
-	public static PriorityQueue<String> generateResultSummary(String docPath, String docno, ArrayList<String> queryTerms) throws IOException {
-		BufferedReader brDoc = new BufferedReader(new FileReader(docPath+docno+".txt"));
+	public static PriorityQueue<String> generateResultSummary(String content, ArrayList<String> queryTerms) throws IOException {
+		BufferedReader brDoc = new BufferedReader(new StringReader(content));
 		PriorityQueue<String> scoredSentences = new PriorityQueue<>((s1, s2) -> Integer.compare(
 		        Integer.parseInt(s2.split(" - ")[0].trim()),
 		        Integer.parseInt(s1.split(" - ")[0].trim())
@@ -324,46 +430,43 @@ public class Retrieval {
      * @return score			The score of the sentence
 	 */
 	public static int scoreSentence(String sentence, ArrayList<String> queryTerms) {
-		ArrayList<String> tokenizedText = IndexEngine.tokenizeText(sentence);
-		Map<String, Integer> termCounts = new HashMap<>();
+		// Occurrences of each query term, counted at the term's first position in the query
+		int[] termCounts = new int[queryTerms.size()];
     	
-		boolean termFound = false;
-		ArrayList<String> contiguousTerms = new ArrayList<String>();
+		int contiguousTerms = 0;
 		int contiguousTermCount = 0;
 
-		for (String token: tokenizedText) {
-			for (String term : queryTerms) {
-				termFound = false;					
-	            if (token.equals(term)) {
+		// Walk the sentence's tokens in place instead of splitting it into Strings
+		TokenStream tokenStream = new TokenStream().reset(sentence);
+		while (tokenStream.next()) {
+			boolean termFound = false;
+			for (int i = 0; i < termCounts.length; i++) {
+	            if (tokenStream.termEquals(queryTerms.get(i))) {
 	            	termFound = true;
-	            	contiguousTerms.add(term);
-	            	if(termCounts.containsKey(term)) {
-	            		int prevScore = termCounts.get(term);
-	            		termCounts.put(term, prevScore + 1);
-	            	}else {
-	            		termCounts.put(term, 1);
-	            	}
+	            	contiguousTerms += 1;
+	            	termCounts[i] += 1;
 	                break;
 	            }
 	        }
 			
 			if (!termFound) {
 				// Only factor into score when there's at least two terms in the list
-				if (contiguousTerms.size() >= 2) {
-					contiguousTermCount = Math.max(contiguousTermCount, contiguousTerms.size());
+				if (contiguousTerms >= 2) {
+					contiguousTermCount = Math.max(contiguousTermCount, contiguousTerms);
 				}
-				contiguousTerms.clear();
+				contiguousTerms = 0;
 			}
 		}
 		
-		// Count up the total number of query terms found
+		// Count up the total number of query terms found, and the number of distinct query terms found
 		int c = 0;
-        for (int value : termCounts.values()) {
-            c += value;
+		int d = 0;
+        for (int count : termCounts) {
+            c += count;
+            if (count > 0) {
+            	d += 1;
+            }
         }
-		
-        // Number of distinct query terms found
-		int d = termCounts.size();		
 
 		return c+d+contiguousTermCount;
 		
@@ -0,0 +1,96 @@
+package component.Retrieval;
+
+import component.DocStore.DocStoreReader;
+import component.Index.IndexReader;
+import component.Index.SegmentInfos;
+import component.Merge.MergeScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Keeps an open view of the index (postings and stored documents over one set of segments)
+ * that can be replaced while queries are running. A query acquires the current searcher,
+ * uses it and releases it; when the segments change (e.g., after a background merge) a new
+ * searcher is opened and swapped in, and the old one is closed once its last query releases
+ * it. Queries are never blocked by the swap.
+ */
+public class SearcherManager implements MergeScheduler.Listener {
+	private final File indexDir;
+	private volatile Searcher current;
+	
+	public SearcherManager(File indexDir) throws IOException {
+		this.indexDir = indexDir;
+		this.current = new Searcher(indexDir, SegmentInfos.read(indexDir));
+	}
+	
+	/*
+	 * Returns the current searcher, which must be passed to release once the query is done.
+	 */
+	public Searcher acquire() {
+		while (true) {
+			Searcher searcher = current;
+			if (searcher.tryIncRef()) {
+				return searcher;
+			}
+			// The searcher was swapped out and closed in the meantime, so retry with the new one
+		}
+	}
+	
+	public void release(Searcher searcher) throws IOException {
+		searcher.decRef();
+	}
+	
+	/*
+	 * The method opens a searcher over the new segments and swaps it in.
+	 */
+	public synchronized void segmentsChanged(SegmentInfos segmentInfos) throws IOException {
+		Searcher old = current;
+		current = new Searcher(indexDir, segmentInfos);
+		old.decRef();
+	}
+	
+	public synchronized void close() throws IOException {
+		current.decRef();
+	}
+	
+	/*
+	 * A reference counted view of the index over one set of segments.
+	 */
+	public static class Searcher {
+		private final IndexReader index;
+		private final DocStoreReader docStore;
+		private final AtomicInteger refCount = new AtomicInteger(1);
+		
+		Searcher(File indexDir, SegmentInfos segmentInfos) throws IOException {
+			index = new IndexReader(indexDir, segmentInfos);
+			docStore = new DocStoreReader(indexDir, segmentInfos, DocStoreReader.DEFAULT_CACHE_BLOCKS);
+		}
+		
+		public IndexReader getIndex() {
+			return index;
+		}
+		
+		public DocStoreReader getDocStore() {
+			return docStore;
+		}
+		
+		boolean tryIncRef() {
+			int count;
+			do {
+				count = refCount.get();
+				if (count == 0) {
+					return false;
+				}
+			} while (!refCount.compareAndSet(count, count + 1));
+			return true;
+		}
+		
+		void decRef() throws IOException {
+			if (refCount.decrementAndGet() == 0) {
+				docStore.close();
+			}
+		}
+	}
+}
@@ -10,376 +10,304 @@ package component.Stemmer;
     is fully described in "An algorithm for suffix stripping",
     M.F. Porter (1980), _Program_, Vol. 14, No. 3, pp. 130-137
 
+    The steps work in place on a char buffer and return the new
+    length of the word, so stemming a word does not create any
+    intermediate Strings. The rules (including the measure each
+    rule tests) are the same as in the original String version,
+    so stems are unchanged.
+
 ***************************************************************
 */
 
 public class PorterStemmer {
 
+    // Reusable buffer for stem(String), one per thread
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[64]);
+
         /**
          * Returns the stemed version of str
          *
          *@param str - word to stem
          *
-         *@return If the word can not be stemmed or there
-         * is some sort of error str is returned.
+         *@return If the word can not be stemmed str is returned
+         * (the same instance when stemming does not change it).
          */
         public static String stem(String str)
         {
-            try
-            {
-                String results = internalStem( str );
-                if (results != null)
-                    return results;
-                else
-                    return str;
+            int length = str.length();
+            char[] buffer = BUFFER.get();
+            if (buffer.length < length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+                BUFFER.set(buffer);
             }
-            catch ( Throwable t ) // best way in Java to catch all
-            {
+
+            str.getChars(0, length, buffer, 0);
+            int stemLength = stem(buffer, length);
+
+            if (stemLength == length && sameChars(str, buffer, length))
                 return str;
-            }
+            return new String(buffer, 0, stemLength);
         }
 
-        private static String internalStem(String str) 
+        /**
+         * Stems the word held at the start of a buffer in place.
+         * A word never grows when it is stemmed.
+         *
+         *@param b - buffer holding the word in b[0..length)
+         *@param length - number of chars in the word
+         *
+         *@return The length of the stem in b. If the word can not
+         * be stemmed (it is empty or not all letters) length is returned.
+         */
+        public static int stem(char[] b, int length)
         {
-          // check for zero length
-          if (str.length() > 0) {
-              // all characters must be letters
-              char[] c = str.toCharArray();
-              for (int i = 0; i < c.length; i++) {
-                  if (!Character.isLetter(c[i]))
-                      return null;
-              }
-        } else {
-            return "No term entered";
+            // check for zero length
+            if (length == 0)
+                return length;
+
+            // all characters must be letters
+            for (int i = 0; i < length; i++) {
+                if (!Character.isLetter(b[i]))
+                    return length;
+            }
+
+            int len = length;
+            len = step1a(b, len);
+            len = step1b(b, len);
+            len = step1c(b, len);
+            len = step2(b, len);
+            len = step3(b, len);
+            len = step4(b, len);
+            len = step5a(b, len);
+            len = step5b(b, len);
+            return len;
+        } // end stem
+
+    private static boolean sameChars(String str, char[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) != b[i])
+                return false;
         }
+        return true;
+    }
+
+    /*
+       Rules of steps 2 - 4, tried in order. A rule applies when the
+       word ends with SUFFIX and the measure of the word without its
+       last CUT chars is greater than the step's minimum; the last CUT
+       chars are then replaced by ADD.
+    */
+
+    private static final char[][] STEP2_SUFFIX = chars(new String[] {
+        "ational", "tional", "enci", "anci", "izer", "abli", "alli",
+        "entli", "eli", "ousli", "ization", "ation", "ator", "alism",
+        "iveness", "fulness", "ousness", "aliti", "iviti", "biliti" });
+    private static final int[] STEP2_CUT = {
+        5, 2, 2, 1, 1, 1, 2,
+        2, 2, 2, 5, 3, 2, 3,
+        4, 4, 4, 3, 3, 5 };
+    private static final char[][] STEP2_ADD = chars(new String[] {
+        "e", "", "", "e", "", "e", "",
+        "", "", "", "e", "e", "e", "",
+        "", "", "", "", "e", "le" });
+    private static final int[][] STEP2_BY_LAST = byLastChar(STEP2_SUFFIX);
+
+    private static final char[][] STEP3_SUFFIX = chars(new String[] {
+        "icate", "ative", "alize", "iciti", "ical", "ful", "ness" });
+    private static final int[] STEP3_CUT = {
+        3, 5, 3, 3, 2, 3, 4 };
+    private static final int[][] STEP3_BY_LAST = byLastChar(STEP3_SUFFIX);
 
-        str = step1a(str);
-        str = step1b(str);
-        str = step1c(str);
-        str = step2(str);
-        str = step3(str);
-        str = step4(str);
-        str = step5a(str);
-        str = step5b(str);
-        return str;
-    } // end stem
-
-    protected static String step1a (String str) {
+    private static final char[][] STEP4_SUFFIX = chars(new String[] {
+        "al", "ance", "ence", "er", "ic", "able", "ible", "ant", "ement",
+        "ment", "ent", "sion", "tion", "ou", "ism", "ate", "iti", "ous",
+        "ive", "ize" });
+    private static final int[] STEP4_CUT = {
+        2, 4, 4, 2, 2, 4, 4, 3, 5,
+        4, 3, 3, 3, 2, 3, 3, 3, 3,
+        3, 3 };
+    private static final int[][] STEP4_BY_LAST = byLastChar(STEP4_SUFFIX);
+
+    protected static int step1a (char[] b, int len) {
         // SSES -> SS
-        if (str.endsWith("sses")) {
-            return str.substring(0, str.length() - 2);
+        if (endsWith(b, len, "sses")) {
+            return len - 2;
         // IES -> I
-        } else if (str.endsWith("ies")) {
-            return str.substring(0, str.length() - 2);
+        } else if (endsWith(b, len, "ies")) {
+            return len - 2;
         // SS -> S
-        } else if (str.endsWith("ss")) {
-            return str;
+        } else if (endsWith(b, len, "ss")) {
+            return len;
         // S ->
-        } else if (str.endsWith("s")) {
-            return str.substring(0, str.length() - 1);
+        } else if (endsWith(b, len, "s")) {
+            return len - 1;
         } else {
-            return str;
+            return len;
         }
     } // end step1a
 
-    protected static String step1b (String str) {
+    protected static int step1b (char[] b, int len) {
         // (m > 0) EED -> EE
-        if (str.endsWith("eed")) {
-            if (stringMeasure(str.substring(0, str.length() - 3)) > 0)
-                return str.substring(0, str.length() - 1);
+        if (endsWith(b, len, "eed")) {
+            if (stringMeasure(b, len - 3) > 0)
+                return len - 1;
             else
-                return str;
+                return len;
         // (*v*) ED ->
-        } else if ((str.endsWith("ed")) &&
-                   (containsVowel(str.substring(0, str.length() - 2)))) {
-            return step1b2(str.substring(0, str.length() - 2));
+        } else if (endsWith(b, len, "ed") && containsVowel(b, len - 2)) {
+            return step1b2(b, len - 2);
         // (*v*) ING ->
-        } else if ((str.endsWith("ing")) &&
-                   (containsVowel(str.substring(0, str.length() - 3)))) {
-            return step1b2(str.substring(0, str.length() - 3));
+        } else if (endsWith(b, len, "ing") && containsVowel(b, len - 3)) {
+            return step1b2(b, len - 3);
         } // end if
-        return str;
+        return len;
     } // end step1b
 
-    protected static String step1b2 (String str) {
+    protected static int step1b2 (char[] b, int len) {
         // AT -> ATE
-        if (str.endsWith("at") ||
-            str.endsWith("bl") ||
-            str.endsWith("iz")) {
-            return str + "e";
-        } else if ((endsWithDoubleConsonent(str)) &&
-                   (!(str.endsWith("l") || str.endsWith("s") || str.endsWith("z")))) {
-            return str.substring(0, str.length() - 1);
-        } else if ((stringMeasure(str) == 1) &&
-                   (endsWithCVC(str))) {
-            return str + "e";
+        if (endsWith(b, len, "at") ||
+            endsWith(b, len, "bl") ||
+            endsWith(b, len, "iz")) {
+            b[len] = 'e';
+            return len + 1;
+        } else if (endsWithDoubleConsonent(b, len) &&
+                   !(endsWith(b, len, "l") || endsWith(b, len, "s") || endsWith(b, len, "z"))) {
+            return len - 1;
+        } else if ((stringMeasure(b, len) == 1) && endsWithCVC(b, len)) {
+            b[len] = 'e';
+            return len + 1;
         } else {
-            return str;
+            return len;
         }
     } // end step1b2
 
-    protected static String step1c(String str) {
+    protected static int step1c (char[] b, int len) {
         // (*v*) Y -> I
-        if (str.endsWith("y")) {
-            if (containsVowel(str.substring(0, str.length() - 1)))
-                return str.substring(0, str.length() - 1) + "i";
+        if (endsWith(b, len, "y")) {
+            if (containsVowel(b, len - 1))
+                b[len - 1] = 'i';
         } // end if
-        return str;
+        return len;
     } // end step1c
 
-    protected static String step2 (String str) {
-        // (m > 0) ATIONAL -> ATE
-        if ((str.endsWith("ational")) &&
-            (stringMeasure(str.substring(0, str.length() - 5)) > 0)) {
-            return str.substring(0, str.length() - 5) + "e";
-        // (m > 0) TIONAL -> TION
-        } else if ((str.endsWith("tional")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) ENCI -> ENCE
-        } else if ((str.endsWith("enci")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) ANCI -> ANCE
-        } else if ((str.endsWith("anci")) &&
-            (stringMeasure(str.substring(0, str.length() - 1)) > 0)) {
-            return str.substring(0, str.length() - 1) + "e";
-        // (m > 0) IZER -> IZE
-        } else if ((str.endsWith("izer")) &&
-            (stringMeasure(str.substring(0, str.length() - 1)) > 0)) {
-            return str.substring(0, str.length() - 1);
-        // (m > 0) ABLI -> ABLE
-        } else if ((str.endsWith("abli")) &&
-            (stringMeasure(str.substring(0, str.length() - 1)) > 0)) {
-            return str.substring(0, str.length() - 1) + "e";
-        // (m > 0) ENTLI -> ENT
-        } else if ((str.endsWith("alli")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) ELI -> E
-        } else if ((str.endsWith("entli")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) OUSLI -> OUS
-        } else if ((str.endsWith("eli")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) IZATION -> IZE
-        } else if ((str.endsWith("ousli")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) IZATION -> IZE
-        } else if ((str.endsWith("ization")) &&
-            (stringMeasure(str.substring(0, str.length() - 5)) > 0)) {
-            return str.substring(0, str.length() - 5) + "e";
-        // (m > 0) ATION -> ATE
-        } else if ((str.endsWith("ation")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3) + "e";
-        // (m > 0) ATOR -> ATE
-        } else if ((str.endsWith("ator")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2) + "e";
-        // (m > 0) ALISM -> AL
-        } else if ((str.endsWith("alism")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-           return str.substring(0, str.length() - 3);
-        // (m > 0) IVENESS -> IVE
-        } else if ((str.endsWith("iveness")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 0)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 0) FULNESS -> FUL
-        } else if ((str.endsWith("fulness")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 0)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 0) OUSNESS -> OUS
-        } else if ((str.endsWith("ousness")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 0)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 0) ALITII -> AL
-        } else if ((str.endsWith("aliti")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 0) IVITI -> IVE
-        } else if ((str.endsWith("iviti")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3) + "e";
-        // (m > 0) BILITI -> BLE
-        } else if ((str.endsWith("biliti")) &&
-            (stringMeasure(str.substring(0, str.length() - 5)) > 0)) {
-            return str.substring(0, str.length() - 5) + "le";
-        } // end if
-        return str;
+    protected static int step2 (char[] b, int len) {
+        return applyRules(b, len, STEP2_SUFFIX, STEP2_CUT, STEP2_ADD, STEP2_BY_LAST, 0);
     } // end step2
 
-
-    protected static String step3 (String str) {
-        // (m > 0) ICATE -> IC
-        if ((str.endsWith("icate")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 0) ATIVE ->
-        } else if ((str.endsWith("ative")) &&
-            (stringMeasure(str.substring(0, str.length() - 5)) > 0)) {
-            return str.substring(0, str.length() - 5);
-        // (m > 0) ALIZE -> AL
-        } else if ((str.endsWith("alize")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 0) ICITI -> IC
-        } else if ((str.endsWith("iciti")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 0) ICAL -> IC
-        } else if ((str.endsWith("ical")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 0)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 0) FUL ->
-        } else if ((str.endsWith("ful")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 0)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 0) NESS ->
-        } else if ((str.endsWith("ness")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 0)) {
-            return str.substring(0, str.length() - 4);
-        } // end if
-        return str;
+    protected static int step3 (char[] b, int len) {
+        return applyRules(b, len, STEP3_SUFFIX, STEP3_CUT, null, STEP3_BY_LAST, 0);
     } // end step3
 
-
-    protected static String step4 (String str) {
-        if ((str.endsWith("al")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 1)) {
-            return str.substring(0, str.length() - 2);
-            // (m > 1) ANCE ->
-        } else if ((str.endsWith("ance")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 1)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 1) ENCE ->
-        } else if ((str.endsWith("ence")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 1)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 1) ER ->
-        } else if ((str.endsWith("er")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 1)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 1) IC ->
-        } else if ((str.endsWith("ic")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 1)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 1) ABLE ->
-        } else if ((str.endsWith("able")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 1)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 1) IBLE ->
-        } else if ((str.endsWith("ible")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 1)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 1) ANT ->
-        } else if ((str.endsWith("ant")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) EMENT ->
-        } else if ((str.endsWith("ement")) &&
-            (stringMeasure(str.substring(0, str.length() - 5)) > 1)) {
-            return str.substring(0, str.length() - 5);
-        // (m > 1) MENT ->
-        } else if ((str.endsWith("ment")) &&
-            (stringMeasure(str.substring(0, str.length() - 4)) > 1)) {
-            return str.substring(0, str.length() - 4);
-        // (m > 1) ENT ->
-        } else if ((str.endsWith("ent")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) and (*S or *T) ION ->
-        } else if ((str.endsWith("sion") || str.endsWith("tion")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) OU ->
-        } else if ((str.endsWith("ou")) &&
-            (stringMeasure(str.substring(0, str.length() - 2)) > 1)) {
-            return str.substring(0, str.length() - 2);
-        // (m > 1) ISM ->
-        } else if ((str.endsWith("ism")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) ATE ->
-        } else if ((str.endsWith("ate")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) ITI ->
-        } else if ((str.endsWith("iti")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) OUS ->
-        } else if ((str.endsWith("ous")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) IVE ->
-        } else if ((str.endsWith("ive")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        // (m > 1) IZE ->
-        } else if ((str.endsWith("ize")) &&
-            (stringMeasure(str.substring(0, str.length() - 3)) > 1)) {
-            return str.substring(0, str.length() - 3);
-        } // end if
-        return str;
+    protected static int step4 (char[] b, int len) {
+        return applyRules(b, len, STEP4_SUFFIX, STEP4_CUT, null, STEP4_BY_LAST, 1);
     } // end step4
 
-
-    protected static String step5a (String str) {
-        if (str.length() == 0) return str;  //gets rid of an exception...
+    protected static int step5a (char[] b, int len) {
+        if (len == 0) return len;
         // (m > 1) E ->
-        if ((stringMeasure(str.substring(0, str.length() - 1)) > 1) &&
-            str.endsWith("e"))
-            return str.substring(0, str.length() -1);
+        if ((stringMeasure(b, len - 1) > 1) && endsWith(b, len, "e"))
+            return len - 1;
         // (m = 1 and not *0) E ->
-        else if ((stringMeasure(str.substring(0, str.length() - 1)) == 1) &&
-                 (!endsWithCVC(str.substring(0, str.length() - 1))) &&
-                 (str.endsWith("e")))
-            return str.substring(0, str.length() - 1);
+        else if ((stringMeasure(b, len - 1) == 1) &&
+                 (!endsWithCVC(b, len - 1)) &&
+                 endsWith(b, len, "e"))
+            return len - 1;
         else
-            return str;
+            return len;
     } // end step5a
 
-
-    protected static String step5b (String str) {
-      if (str.length() == 0) return str;
+    protected static int step5b (char[] b, int len) {
+        if (len == 0) return len;
         // (m > 1 and *d and *L) ->
-        if (str.endsWith("l") &&
-            endsWithDoubleConsonent(str) &&
-            (stringMeasure(str.substring(0, str.length() - 1)) > 1)) {
-            return str.substring(0, str.length() - 1);
+        if (endsWith(b, len, "l") &&
+            endsWithDoubleConsonent(b, len) &&
+            (stringMeasure(b, len - 1) > 1)) {
+            return len - 1;
         } else {
-            return str;
+            return len;
         }
     } // end step5b
 
 
     /*
        -------------------------------------------------------
-       The following are functions to help compute steps 1 - 5
+       The following are functions to help compute steps 1 - 5.
+       Each looks at the word held in b[0..len).
        -------------------------------------------------------
     */
 
-    // does string end with 's'?
-    protected static boolean endsWithS(String str) {
-        return str.endsWith("s");
+    // apply the first matching rule of a step
+    private static int applyRules(char[] b, int len, char[][] suffixes, int[] cuts, char[][] adds,
+                                  int[][] byLast, int minMeasure) {
+        if (len == 0 || b[len - 1] >= byLast.length)
+            return len;
+        // only the rules whose suffix ends with the word's last char can apply
+        for (int i : byLast[b[len - 1]]) {
+            if (endsWith(b, len, suffixes[i]) && stringMeasure(b, len - cuts[i]) > minMeasure) {
+                int stemLength = len - cuts[i];
+                if (adds == null)
+                    return stemLength;
+                System.arraycopy(adds[i], 0, b, stemLength, adds[i].length);
+                return stemLength + adds[i].length;
+            }
+        }
+        return len;
     } // end function
 
-    // does string contain a vowel?
-    protected static boolean containsVowel(String str) {
-        char[] strchars = str.toCharArray();
-        for (int i = 0; i < strchars.length; i++) {
-            if (isVowel(strchars[i]))
-                return true;
+    // the rules of a step that end with each (ASCII) char, in order
+    private static int[][] byLastChar(char[][] suffixes) {
+        int[][] result = new int[128][];
+        for (char c = 0; c < 128; c++) {
+            int n = 0;
+            for (char[] suffix : suffixes)
+                if (suffix[suffix.length - 1] == c) n++;
+            result[c] = new int[n];
+            n = 0;
+            for (int i = 0; i < suffixes.length; i++)
+                if (suffixes[i][suffixes[i].length - 1] == c) result[c][n++] = i;
         }
-        // no aeiou but there is y
-        if (str.indexOf('y') > -1)
-            return true;
-        else
+        return result;
+    } // end function
+
+    private static char[][] chars(String[] strs) {
+        char[][] result = new char[strs.length][];
+        for (int i = 0; i < strs.length; i++)
+            result[i] = strs[i].toCharArray();
+        return result;
+    } // end function
+
+    // does the word end with suffix?
+    protected static boolean endsWith(char[] b, int len, String suffix) {
+        int start = len - suffix.length();
+        if (start < 0)
             return false;
+        for (int i = suffix.length() - 1; i >= 0; i--) {
+            if (b[start + i] != suffix.charAt(i))
+                return false;
+        }
+        return true;
+    } // end function
+
+    // does the word end with suffix? (compared from the end, where most suffixes already differ)
+    private static boolean endsWith(char[] b, int len, char[] suffix) {
+        int start = len - suffix.length;
+        if (start < 0)
+            return false;
+        for (int i = suffix.length - 1; i >= 0; i--) {
+            if (b[start + i] != suffix[i])
+                return false;
+        }
+        return true;
+    } // end function
+
+    // does the word contain a vowel?
+    protected static boolean containsVowel(char[] b, int len) {
+        for (int i = 0; i < len; i++) {
+            // no aeiou but there is y
+            if (isVowel(b[i]) || b[i] == 'y')
+                return true;
+        }
+        return false;
     } // end function
 
     // is char a vowel?
@@ -394,25 +322,20 @@ public class PorterStemmer {
             return false;
     } // end function
 
-    // does string end with a double consonent?
-    protected static boolean endsWithDoubleConsonent(String str) {
-	if (str.length() < 2) return false;
-        char c = str.charAt(str.length() - 1);
-        if (c == str.charAt(str.length() - 2))
-            if (!containsVowel(str.substring(str.length() - 2))) {
-                return true;
-        }
-        return false;
+    // does the word end with a double consonent?
+    protected static boolean endsWithDoubleConsonent(char[] b, int len) {
+        if (len < 2) return false;
+        char c = b[len - 1];
+        return c == b[len - 2] && !isVowel(c) && c != 'y';
     } // end function
 
-    // returns a CVC measure for the string
-    protected static int stringMeasure(String str) {
+    // returns a CVC measure for the word
+    protected static int stringMeasure(char[] b, int len) {
         int count = 0;
         boolean vowelSeen = false;
-        char[] strchars = str.toCharArray();
 
-        for (int i = 0; i < strchars.length; i++) {
-            if (isVowel(strchars[i])) {
+        for (int i = 0; i < len; i++) {
+            if (isVowel(b[i])) {
                 vowelSeen = true;
             } else if (vowelSeen) {
                 count++;
@@ -422,13 +345,13 @@ public class PorterStemmer {
         return count;
     } // end function
 
-    // does stem end with CVC?
-    protected static boolean endsWithCVC (String str) {
+    // does the word end with CVC?
+    protected static boolean endsWithCVC (char[] b, int len) {
         char c, v, c2 = ' ';
-        if (str.length() >= 3) {
-            c = str.charAt(str.length() - 1);
-            v = str.charAt(str.length() - 2);
-            c2 = str.charAt(str.length() - 3);
+        if (len >= 3) {
+            c = b[len - 1];
+            v = b[len - 2];
+            c2 = b[len - 3];
         } else {
             return false;
         }
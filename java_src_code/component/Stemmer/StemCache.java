@@ -0,0 +1,98 @@
+package component.Stemmer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * A bounded cache of Porter stems, shared by threads. Term frequencies are Zipfian, so a
+ * small cache answers most lookups and only rare words are stemmed. The cache is a fixed
+ * array of slots addressed by the word's hash (a newer word simply replaces the word in its
+ * slot), so it never grows, takes no locks and does not allocate on a hit.
+ */
+public class StemCache {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	
+	private final AtomicReferenceArray<Entry> slots;
+	private final int mask;
+	
+	public StemCache() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/*
+	 * @param capacity	The number of slots (rounded up to a power of two)
+	 */
+	public StemCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+	
+	/*
+	 * The method returns the stem of a word, stemming it only if it is not cached.
+	 * 
+	 * @param word		The word to stem
+	 * @return 			The word's Porter stem
+	 */
+	public String stem(String word) {
+		int slot = slotOf(word.hashCode());
+		
+		Entry entry = slots.get(slot);
+		if (entry != null && entry.word.equals(word)) {
+			return entry.stem;
+		}
+		
+		String stem = PorterStemmer.stem(word);
+		slots.lazySet(slot, new Entry(word, stem));
+		return stem;
+	}
+	
+	/*
+	 * The method stems a word held in a char buffer in place, stemming it only if it is not
+	 * cached. Strings are only created when the word has to be added to the cache.
+	 * 
+	 * @param word		The buffer holding the word in [0, length)
+	 * @param length	The number of chars in the word
+	 * @param hash		The hashCode of the word's String
+	 * @return 			The length of the stem in the buffer
+	 */
+	public int stem(char[] word, int length, int hash) {
+		int slot = slotOf(hash);
+		
+		Entry entry = slots.get(slot);
+		if (entry != null && entry.matches(word, length)) {
+			entry.stem.getChars(0, entry.stem.length(), word, 0);
+			return entry.stem.length();
+		}
+		
+		String original = new String(word, 0, length);
+		int stemLength = PorterStemmer.stem(word, length);
+		slots.lazySet(slot, new Entry(original, new String(word, 0, stemLength)));
+		return stemLength;
+	}
+	
+	private int slotOf(int hash) {
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+	
+	private static class Entry {
+		final String word;
+		final String stem;
+		
+		Entry(String word, String stem) {
+			this.word = word;
+			this.stem = stem;
+		}
+		
+		boolean matches(char[] chars, int length) {
+			if (word.length() != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (word.charAt(i) != chars[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}